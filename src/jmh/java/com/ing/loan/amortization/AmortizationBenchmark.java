@@ -0,0 +1,56 @@
+package com.ing.loan.amortization;
+
+import com.ing.loan.money.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule generation from a cached per-unit template against computing the template for every loan.
+ * @author Suleyman Yildirim
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AmortizationBenchmark {
+
+    @Param({"FLAT", "ANNUITY", "DECLINING_BALANCE"})
+    public AmortizationMethod method;
+
+    @Param({"12", "24"})
+    public int installments;
+
+    private AmortizationEngine engine;
+    private AmortizationStrategy strategy;
+    private BigDecimal principal;
+    private BigDecimal interestRate;
+    private LocalDate originationDate;
+
+    @Setup
+    public void setUp() {
+        List<AmortizationStrategy> strategies = List.of(new FlatAmortization(), new AnnuityAmortization(), new DecliningBalanceAmortization());
+        engine = new AmortizationEngine(strategies, 100);
+        strategy = strategies.stream().filter(s -> s.method() == method).findFirst().orElseThrow();
+        principal = new BigDecimal("10000.00");
+        interestRate = new BigDecimal("0.2");
+        originationDate = LocalDate.now();
+    }
+
+    @Benchmark
+    public LoanSchedule cachedTemplate() {
+        return engine.schedule(method, principal, interestRate, installments, originationDate);
+    }
+
+    @Benchmark
+    public LoanSchedule computedTemplate() {
+        ScheduleTemplate template = strategy.template(interestRate, installments, YearMonth.from(originationDate));
+        return new LoanSchedule(template, Money.of(principal.multiply(template.repaymentFactor())));
+    }
+}
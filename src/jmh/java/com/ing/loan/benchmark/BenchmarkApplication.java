@@ -0,0 +1,58 @@
+package com.ing.loan.benchmark;
+
+import com.ing.loan.LoanApiApplication;
+import com.ing.loan.entity.Customer;
+import com.ing.loan.repository.CustomerRepository;
+import com.ing.loan.request.LoanRequest;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application against a private in-memory H2 database for the end-to-end benchmarks.
+ * @author Suleyman Yildirim
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(LoanApiApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN",
+                        "logging.level.org.hibernate.SQL=WARN",
+                        "logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN")
+                .properties(properties)
+                .run();
+    }
+
+    // A customer whose credit limit is never the bottleneck of a benchmark
+    static Customer createCustomer(ConfigurableApplicationContext context) {
+        return context.getBean(CustomerRepository.class).save(Customer.builder()
+                .name("Benchmark")
+                .surname("Customer")
+                .creditLimit(new BigDecimal("9000000000000.00"))
+                .usedCreditLimit(BigDecimal.ZERO)
+                .build());
+    }
+
+    static List<LoanRequest> loanRequests(Long customerId, int count, int installments) {
+        List<LoanRequest> loanRequests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            loanRequests.add(LoanRequest.builder()
+                    .customerId(customerId)
+                    .loanAmount(new BigDecimal("1000.00"))
+                    .interestRate(new BigDecimal("0.1"))
+                    .installments(installments)
+                    .build());
+        }
+        return loanRequests;
+    }
+}
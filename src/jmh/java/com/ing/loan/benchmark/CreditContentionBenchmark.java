@@ -0,0 +1,66 @@
+package com.ing.loan.benchmark;
+
+import com.ing.loan.request.LoanRequest;
+import com.ing.loan.response.LoanResponse;
+import com.ing.loan.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single-loan origination throughput with 8 concurrent threads, all borrowing from one customer or spread
+ * over many. With credit reserved in the in-memory ledger instead of on the customer row, the single-customer
+ * case should stay close to the spread one.
+ * @author Suleyman Yildirim
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class CreditContentionBenchmark {
+
+    @Param({"1", "64"})
+    public int customers;
+
+    private ConfigurableApplicationContext context;
+    private LoanService loanService;
+    private LoanRequest[] loanRequests;
+    private final AtomicInteger nextThread = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Borrower {
+        LoanRequest loanRequest;
+
+        @Setup(Level.Trial)
+        public void setUp(CreditContentionBenchmark benchmark) {
+            int thread = benchmark.nextThread.getAndIncrement();
+            loanRequest = benchmark.loanRequests[thread % benchmark.loanRequests.length];
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        loanService = context.getBean(LoanService.class);
+        loanRequests = new LoanRequest[customers];
+        for (int i = 0; i < customers; i++) {
+            Long customerId = BenchmarkApplication.createCustomer(context).getId();
+            loanRequests[i] = BenchmarkApplication.loanRequests(customerId, 1, 12).get(0);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public LoanResponse createLoan(Borrower borrower) {
+        return loanService.createLoan(borrower.loanRequest);
+    }
+}
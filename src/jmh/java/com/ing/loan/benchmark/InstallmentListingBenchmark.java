@@ -0,0 +1,73 @@
+package com.ing.loan.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ing.loan.entity.LoanInstallment;
+import com.ing.loan.response.BulkLoanResponse;
+import com.ing.loan.service.LoanService;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Installment listing as served by /v1/installments: loading entities and serializing them, against
+ * selecting response DTOs. Run with {@code -PjmhProfilers=gc} to compare the allocation per request.
+ * @author Suleyman Yildirim
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InstallmentListingBenchmark {
+
+    @Param({"6", "24"})
+    public int installments;
+
+    private ConfigurableApplicationContext context;
+    private LoanService loanService;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+    private ObjectMapper objectMapper;
+    private Long loanId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        loanService = context.getBean(LoanService.class);
+        entityManager = context.getBean(EntityManager.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        objectMapper = context.getBean(ObjectMapper.class);
+        Long customerId = BenchmarkApplication.createCustomer(context).getId();
+        BulkLoanResponse response = loanService.createLoans(BenchmarkApplication.loanRequests(customerId, 1, installments));
+        loanId = response.getResults().get(0).getLoanId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // What the endpoint did before: managed entities, serialized while the persistence context is open
+    @Benchmark
+    public byte[] entities() {
+        return transactionTemplate.execute(status -> {
+            try {
+                return objectMapper.writeValueAsBytes(entityManager.createQuery(
+                                "select i from LoanInstallment i where i.loan.id = :loanId order by i.dueDate asc", LoanInstallment.class)
+                        .setParameter("loanId", loanId)
+                        .getResultList());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @Benchmark
+    public byte[] projection() throws Exception {
+        return objectMapper.writeValueAsBytes(loanService.listInstallmentsByLoan(loanId));
+    }
+}
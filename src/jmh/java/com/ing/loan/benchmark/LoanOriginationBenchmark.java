@@ -0,0 +1,61 @@
+package com.ing.loan.benchmark;
+
+import com.ing.loan.request.LoanRequest;
+import com.ing.loan.response.BulkLoanResponse;
+import com.ing.loan.response.LoanResponse;
+import com.ing.loan.service.LoanService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end origination throughput against in-memory H2, in loans per second.
+ * Compares the single-loan path with bulk origination, with and without JDBC insert batching.
+ * @author Suleyman Yildirim
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoanOriginationBenchmark {
+
+    private static final int BULK_SIZE = 1000;
+
+    // 1 effectively disables insert batching
+    @Param({"1", "50"})
+    public String jdbcBatchSize;
+
+    private ConfigurableApplicationContext context;
+    private LoanService loanService;
+    private LoanRequest loanRequest;
+    private List<LoanRequest> bulkLoanRequests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("spring.jpa.properties.hibernate.jdbc.batch_size=" + jdbcBatchSize);
+        loanService = context.getBean(LoanService.class);
+        Long customerId = BenchmarkApplication.createCustomer(context).getId();
+        loanRequest = BenchmarkApplication.loanRequests(customerId, 1, 24).get(0);
+        bulkLoanRequests = BenchmarkApplication.loanRequests(customerId, BULK_SIZE, 24);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public LoanResponse createLoan() {
+        return loanService.createLoan(loanRequest);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public BulkLoanResponse createLoans() {
+        return loanService.createLoans(bulkLoanRequests);
+    }
+}
@@ -0,0 +1,90 @@
+package com.ing.loan.benchmark;
+
+import com.ing.loan.response.BulkLoanResponse;
+import com.ing.loan.response.BulkLoanRowResponse;
+import com.ing.loan.response.LoanPaymentResponse;
+import com.ing.loan.service.LoanService;
+import com.ing.loan.service.PaymentService;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end payment latency against in-memory H2. Every invocation pays one installment of the next loan;
+ * latency should not depend on the number of installments of the loan.
+ * <p>
+ * Each iteration is a batch of exactly one payment per loan, timed as a whole, and the payments are reset before the
+ * next one, so no invocation runs out of payable installments. The score is the time of a batch of {@code LOANS}
+ * payments.
+ * @author Suleyman Yildirim
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, batchSize = PaymentEndToEndBenchmark.LOANS)
+@Measurement(iterations = 5, batchSize = PaymentEndToEndBenchmark.LOANS)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentEndToEndBenchmark {
+
+    // Each loan has three installments inside the payment window; a batch makes one payment per loan
+    static final int LOANS = 20_000;
+    private static final int BULK_SIZE = 1000;
+
+    @Param({"6", "24"})
+    public int installments;
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private JdbcTemplate jdbcTemplate;
+    private long[] loanIds;
+    private BigDecimal paymentAmount;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start();
+        paymentService = context.getBean(PaymentService.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        LoanService loanService = context.getBean(LoanService.class);
+        Long customerId = BenchmarkApplication.createCustomer(context).getId();
+
+        loanIds = new long[LOANS];
+        for (int offset = 0; offset < LOANS; offset += BULK_SIZE) {
+            BulkLoanResponse response = loanService.createLoans(BenchmarkApplication.loanRequests(customerId, BULK_SIZE, installments));
+            for (BulkLoanRowResponse row : response.getResults()) {
+                loanIds[offset + row.getIndex()] = row.getLoanId();
+            }
+        }
+        // Enough to pay exactly one installment of a 1100.00 loan
+        paymentAmount = new BigDecimal("1100.00").divide(BigDecimal.valueOf(installments), 2, RoundingMode.UP);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPayments() {
+        jdbcTemplate.update("UPDATE loan_installment SET is_paid = FALSE, paid_amount = 0, payment_date = NULL");
+        // The balance summary back to the schedule, as V10 backfills it, so no loan looks paid off
+        jdbcTemplate.update("UPDATE loan l SET is_paid = FALSE, paid_installments = 0, " +
+                "remaining_amount = (SELECT SUM(i.amount) FROM loan_installment i WHERE i.loan_id = l.id), " +
+                "next_due_date = (SELECT MIN(i.due_date) FROM loan_installment i WHERE i.loan_id = l.id), " +
+                "next_due_amount = (SELECT i.amount FROM loan_installment i WHERE i.loan_id = l.id " +
+                "ORDER BY i.due_date, i.id FETCH FIRST 1 ROW ONLY)");
+        context.getBean(EntityManagerFactory.class).getCache().evictAll();
+        next = 0;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public LoanPaymentResponse payLoan() {
+        long loanId = loanIds[next++];
+        return paymentService.payLoan(loanId, paymentAmount);
+    }
+}
@@ -0,0 +1,162 @@
+package com.ing.loan.benchmark;
+
+import com.ing.loan.response.BulkLoanResponse;
+import com.ing.loan.response.BulkLoanRowResponse;
+import com.ing.loan.service.LoanService;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput and latency distribution of the REST layer with 1024 concurrent clients, on Tomcat's platform
+ * thread pool and on virtual threads. Compare the {@code p0.99} and {@code p0.999} rows of the sample-time
+ * results between the two values of {@code virtualThreads}.
+ * <p>
+ * Tokens are signed with a throwaway key served from a local JWK set endpoint, so requests go through the
+ * same security filter chain as in production. In-memory H2 never waits for I/O; run against a real database
+ * with {@code -Dspring.datasource.url=...} to see the effect of threads blocked in JDBC.
+ * @author Suleyman Yildirim
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Djdk.tracePinnedThreads=short")
+@Threads(1024)
+@State(Scope.Benchmark)
+public class RequestConcurrencyBenchmark {
+
+    private static final int LOANS = 10_000;
+    private static final int BULK_SIZE = 1000;
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    @Param({"10"})
+    public int poolSize;
+
+    private HttpServer jwkServer;
+    private ConfigurableApplicationContext context;
+    private HttpClient httpClient;
+    private String baseUrl;
+    private String authorization;
+    private long[] loanIds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        RSAKey signingKey = new RSAKeyGenerator(2048).keyID("benchmark").generate();
+        jwkServer = startJwkServer(new JWKSet(signingKey.toPublicJWK()));
+
+        context = BenchmarkApplication.start(
+                "spring.security.oauth2.resourceserver.jwt.jwk-set-uri=http://localhost:" + jwkServer.getAddress().getPort() + "/jwks",
+                "spring.profiles.active=" + (virtualThreads ? "virtual-threads" : "default"),
+                "loan.db.pool-size=" + poolSize);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port;
+        authorization = "Bearer " + adminToken(signingKey);
+
+        LoanService loanService = context.getBean(LoanService.class);
+        Long customerId = BenchmarkApplication.createCustomer(context).getId();
+        loanIds = new long[LOANS];
+        for (int offset = 0; offset < LOANS; offset += BULK_SIZE) {
+            BulkLoanResponse response = loanService.createLoans(BenchmarkApplication.loanRequests(customerId, BULK_SIZE, 12));
+            for (BulkLoanRowResponse row : response.getResults()) {
+                loanIds[offset + row.getIndex()] = row.getLoanId();
+            }
+        }
+
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        jwkServer.stop(0);
+    }
+
+    // A payment below the installment amount reads the loan and its payable installments but pays nothing,
+    // so the database state stays the same across iterations
+    @Benchmark
+    public int payLoan() throws Exception {
+        String body = "{\"loanId\":" + nextLoanId() + ",\"paymentAmount\":0.01}";
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/v1/pay-loan"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)));
+    }
+
+    @Benchmark
+    public int listInstallments() throws Exception {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/v1/installments?loanId=" + nextLoanId())).GET());
+    }
+
+    private long nextLoanId() {
+        return loanIds[Math.floorMod(next.getAndIncrement(), loanIds.length)];
+    }
+
+    private int send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        HttpResponse<Void> response = httpClient.send(request.header("Authorization", authorization).build(),
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+
+    private static HttpServer startJwkServer(JWKSet jwkSet) throws IOException {
+        byte[] body = jwkSet.toString().getBytes(StandardCharsets.UTF_8);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/jwks", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static String adminToken(RSAKey signingKey) throws JOSEException {
+        Instant now = Instant.now();
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(),
+                new JWTClaimsSet.Builder()
+                        .subject("benchmark")
+                        .claim("scope", List.of("ADMIN"))
+                        .issueTime(Date.from(now))
+                        .expirationTime(Date.from(now.plus(1, ChronoUnit.DAYS)))
+                        .build());
+        jwt.sign(new RSASSASigner(signingKey));
+        return jwt.serialize();
+    }
+}
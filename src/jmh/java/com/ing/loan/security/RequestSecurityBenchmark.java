@@ -0,0 +1,146 @@
+package com.ing.loan.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.expression.Expression;
+import org.springframework.security.access.expression.ExpressionUtils;
+import org.springframework.security.access.expression.method.DefaultMethodSecurityExpressionHandler;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.util.SimpleMethodInvocation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The security work of a request that lists a customer's loans: verifying the bearer token, turning it into an
+ * authentication and checking that the caller may act for the customer. {@code spel*} is the previous setup, a
+ * plain {@link NimbusJwtDecoder}, {@link JwtAuthenticationConverter} and a {@code @PreAuthorize} expression;
+ * {@code compiled*} is {@link CachingJwtDecoder}, {@link LoanJwtAuthenticationConverter} and {@link LoanAuthorization}.
+ * The {@code *Check} pair isolates the ownership check, and {@code compiledLoanCheck} checks the owner of a loan
+ * against {@link LoanOwnershipIndex}.
+ * @author Suleyman Yildirim
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestSecurityBenchmark {
+
+    private static final Long CUSTOMER_ID = 1L;
+    private static final Long LOAN_ID = 1L;
+
+    private String token;
+
+    private JwtDecoder nimbusDecoder;
+    private JwtAuthenticationConverter springConverter;
+    private DefaultMethodSecurityExpressionHandler expressionHandler;
+    private Expression ownershipExpression;
+    private SimpleMethodInvocation invocation;
+    private Authentication springAuthentication;
+
+    private JwtDecoder cachingDecoder;
+    private LoanJwtAuthenticationConverter loanConverter;
+    private LoanAuthorization authorization;
+
+    @Setup
+    public void setUp() throws Exception {
+        RSAKey signingKey = new RSAKeyGenerator(2048).keyID("benchmark").generate();
+        token = customerToken(signingKey);
+
+        nimbusDecoder = NimbusJwtDecoder.withPublicKey(signingKey.toRSAPublicKey()).build();
+        springConverter = new JwtAuthenticationConverter();
+        springConverter.setJwtGrantedAuthoritiesConverter(jwt -> {
+            List<String> scope = jwt.getClaimAsStringList("scope");
+            return scope != null ? scope.stream().<GrantedAuthority>map(SimpleGrantedAuthority::new).toList() : Collections.emptyList();
+        });
+        // Parsed once, as method security caches the expression of each method
+        expressionHandler = new DefaultMethodSecurityExpressionHandler();
+        ownershipExpression = expressionHandler.getExpressionParser().parseExpression(
+                "hasAuthority('ADMIN') or (hasAuthority('CUSTOMER') and #customerId == principal.claims['customer_id'])");
+        invocation = new SimpleMethodInvocation(this, RequestSecurityBenchmark.class.getMethod("listLoans", Long.class), CUSTOMER_ID);
+        springAuthentication = springConverter.convert(nimbusDecoder.decode(token));
+
+        cachingDecoder = new CachingJwtDecoder(nimbusDecoder, 1000, Duration.ofMinutes(10));
+        loanConverter = new LoanJwtAuthenticationConverter(1000);
+        // The loan is in the index, so no check reaches the database
+        LoanOwnershipIndex ownershipIndex = new LoanOwnershipIndex(null, 1000);
+        ownershipIndex.put(LOAN_ID, CUSTOMER_ID);
+        authorization = new LoanAuthorization(ownershipIndex);
+        SecurityContextHolder.getContext().setAuthentication(loanConverter.convert(cachingDecoder.decode(token)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // The method whose @PreAuthorize expression is evaluated
+    public void listLoans(Long customerId) {
+    }
+
+    @Benchmark
+    public boolean spelRequest() {
+        Authentication authentication = springConverter.convert(nimbusDecoder.decode(token));
+        return ExpressionUtils.evaluateAsBoolean(ownershipExpression, expressionHandler.createEvaluationContext(authentication, invocation));
+    }
+
+    @Benchmark
+    public Authentication compiledRequest() {
+        Authentication authentication = loanConverter.convert(cachingDecoder.decode(token));
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+        authorization.checkCustomer(CUSTOMER_ID);
+        return authentication;
+    }
+
+    @Benchmark
+    public boolean spelCheck() {
+        return ExpressionUtils.evaluateAsBoolean(ownershipExpression, expressionHandler.createEvaluationContext(springAuthentication, invocation));
+    }
+
+    @Benchmark
+    public boolean compiledCheck() {
+        authorization.checkCustomer(CUSTOMER_ID);
+        return true;
+    }
+
+    @Benchmark
+    public boolean compiledLoanCheck() {
+        authorization.checkLoan(LOAN_ID);
+        return true;
+    }
+
+    private static String customerToken(RSAKey signingKey) throws JOSEException {
+        Instant now = Instant.now();
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(signingKey.getKeyID()).build(),
+                new JWTClaimsSet.Builder()
+                        .subject("benchmark")
+                        .claim("scope", List.of("CUSTOMER"))
+                        .claim(LoanPrincipal.CUSTOMER_ID_CLAIM, CUSTOMER_ID)
+                        .issueTime(Date.from(now))
+                        .expirationTime(Date.from(now.plus(1, ChronoUnit.DAYS)))
+                        .build());
+        jwt.sign(new RSASSASigner(signingKey));
+        return jwt.serialize();
+    }
+}
@@ -0,0 +1,99 @@
+package com.ing.loan.service;
+
+import com.ing.loan.amortization.AmortizationEngine;
+import com.ing.loan.amortization.FlatAmortization;
+import com.ing.loan.amortization.LoanSchedule;
+import com.ing.loan.entity.Customer;
+import com.ing.loan.entity.Loan;
+import com.ing.loan.entity.LoanInstallment;
+import com.ing.loan.money.Money;
+import com.ing.loan.request.LoanRequest;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-benchmarks for the installment schedule generation done on every loan origination.
+ * The {@code bigDecimal*} methods keep the arithmetic that {@link Money} replaced, as a baseline;
+ * run with {@code -PjmhProfilers=gc} to compare allocation.
+ * @author Suleyman Yildirim
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoanScheduleBenchmark {
+
+    @Param({"6", "12", "24"})
+    public int installments;
+
+    private LoanServiceImpl loanService;
+    private LoanRequest loanRequest;
+    private Customer customer;
+    private Money loanAmount;
+    private LoanSchedule schedule;
+
+    @Setup
+    public void setUp() {
+        // The schedule helpers do not touch the repositories
+        AmortizationEngine amortizationEngine = new AmortizationEngine(List.of(new FlatAmortization()), 100);
+        loanService = new LoanServiceImpl(null, null, null, null, null, amortizationEngine, null, null, null, null);
+        loanRequest = LoanRequest.builder()
+                .customerId(1L)
+                .loanAmount(new BigDecimal("10000.00"))
+                .interestRate(new BigDecimal("0.2"))
+                .installments(installments)
+                .build();
+        customer = Customer.builder()
+                .id(1L)
+                .creditLimit(new BigDecimal("100000.00"))
+                .usedCreditLimit(BigDecimal.ZERO)
+                .build();
+        loanAmount = Money.of(new BigDecimal("12000.00"));
+        schedule = loanService.scheduleFor(loanRequest);
+    }
+
+    @Benchmark
+    public Money calculateLoanAmount() {
+        return loanService.scheduleFor(loanRequest).total();
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalCalculateLoanAmount() {
+        return loanRequest.getLoanAmount().multiply(BigDecimal.ONE.add(loanRequest.getInterestRate()));
+    }
+
+    @Benchmark
+    public long splitInstallments() {
+        return loanAmount.evenShare(installments).minorUnits() + loanAmount.lastShare(installments).minorUnits();
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalSplitInstallments() {
+        BigDecimal amount = loanAmount.toBigDecimal();
+        BigDecimal installmentAmount = amount.divide(BigDecimal.valueOf(installments), RoundingMode.HALF_UP);
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < installments; i++) {
+            total = total.add(installmentAmount);
+        }
+        return total;
+    }
+
+    @Benchmark
+    public List<LoanInstallment> getLoanInstallments() {
+        return LoanServiceImpl.getLoanInstallments(schedule);
+    }
+
+    @Benchmark
+    public Loan buildLoanAndAttachInstallments() {
+        LoanSchedule loanSchedule = loanService.scheduleFor(loanRequest);
+        Loan loan = loanService.buildLoanEntity(customer, loanRequest, loanSchedule);
+        loanService.attachInstallments(loan, loanSchedule);
+        return loan;
+    }
+}
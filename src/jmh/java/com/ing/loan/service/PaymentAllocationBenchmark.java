@@ -0,0 +1,65 @@
+package com.ing.loan.service;
+
+import com.ing.loan.money.Money;
+import com.ing.loan.repository.PayableInstallment;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro-benchmark for deciding how many payable installments a payment covers and what they add up to.
+ * {@code bigDecimalAllocation} keeps the BigDecimal arithmetic that {@link Money} replaced, as a baseline;
+ * run with {@code -PjmhProfilers=gc} to compare allocation.
+ * @author Suleyman Yildirim
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PaymentAllocationBenchmark {
+
+    // Number of installments inside the payment window
+    @Param({"1", "3", "24"})
+    public int payableInstallments;
+
+    private List<PayableInstallment> installments;
+    private Money paymentAmount;
+    private BigDecimal bigDecimalPaymentAmount;
+    private BigDecimal bigDecimalInstallmentAmount;
+
+    @Setup
+    public void setUp() {
+        installments = new ArrayList<>(payableInstallments);
+        for (long id = 1; id <= payableInstallments; id++) {
+            installments.add(new PayableInstallment(id, new BigDecimal("916.67")));
+        }
+        bigDecimalPaymentAmount = new BigDecimal("2000.00");
+        bigDecimalInstallmentAmount = new BigDecimal("916.67");
+        paymentAmount = Money.of(bigDecimalPaymentAmount);
+    }
+
+    @Benchmark
+    public long allocation() {
+        int count = PaymentServiceImpl.payableCount(paymentAmount, installments);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += installments.get(i).amount().minorUnits();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalAllocation() {
+        int count = Math.min(bigDecimalPaymentAmount.divideToIntegralValue(bigDecimalInstallmentAmount).intValue(), installments.size());
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < count; i++) {
+            total = total.add(bigDecimalInstallmentAmount);
+        }
+        return total;
+    }
+}
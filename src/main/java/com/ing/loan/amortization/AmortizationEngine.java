@@ -0,0 +1,64 @@
+package com.ing.loan.amortization;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ing.loan.money.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds loan repayment schedules from the registered {@link AmortizationStrategy} beans.
+ * <p>
+ * Most loans share a handful of rate and tenor combinations, so the per-unit {@link ScheduleTemplate}
+ * of each (method, rate, tenor, start month) is computed once and cached. Originating a loan then only
+ * scales the cached template by its principal.
+ * @author Suleyman Yildirim
+ */
+@Service
+public class AmortizationEngine implements MeterBinder {
+
+    private final Map<AmortizationMethod, AmortizationStrategy> strategies = new EnumMap<>(AmortizationMethod.class);
+    private final Cache<TemplateKey, ScheduleTemplate> templates;
+
+    public AmortizationEngine(List<AmortizationStrategy> strategies,
+                              @Value("${loan.amortization.template-cache-size:1000}") long templateCacheSize) {
+        strategies.forEach(strategy -> this.strategies.put(strategy.method(), strategy));
+        this.templates = Caffeine.newBuilder()
+                .maximumSize(templateCacheSize)
+                .recordStats()
+                .build();
+    }
+
+    public LoanSchedule schedule(AmortizationMethod method, BigDecimal principal, BigDecimal interestRate, int installments, LocalDate originationDate) {
+        ScheduleTemplate template = template(method, interestRate, installments, YearMonth.from(originationDate));
+        return new LoanSchedule(template, Money.of(principal.multiply(template.repaymentFactor())));
+    }
+
+    ScheduleTemplate template(AmortizationMethod method, BigDecimal interestRate, int installments, YearMonth startMonth) {
+        AmortizationStrategy strategy = strategies.get(method);
+        if (strategy == null) {
+            throw new IllegalArgumentException("No amortization strategy registered for " + method);
+        }
+        // 0.1 and 0.10 are the same rate
+        TemplateKey key = new TemplateKey(method, interestRate.stripTrailingZeros(), installments, startMonth);
+        return templates.get(key, k -> strategy.template(k.interestRate(), k.installments(), k.startMonth()));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, templates, "amortization.templates");
+    }
+
+    private record TemplateKey(AmortizationMethod method, BigDecimal interestRate, int installments, YearMonth startMonth) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.ing.loan.amortization;
+
+/**
+ * How a loan is repaid over its installments.
+ * @author Suleyman Yildirim
+ */
+public enum AmortizationMethod {
+
+    /**
+     * Equal installments of principal plus flat interest; the interest rate applies once to the whole loan.
+     */
+    FLAT,
+
+    /**
+     * Equal installments that repay principal and interest on the outstanding balance (French amortization);
+     * the interest rate is a nominal annual rate, compounded monthly.
+     */
+    ANNUITY,
+
+    /**
+     * Equal principal repayments plus interest on the outstanding balance, so installments decrease over time;
+     * the interest rate is a nominal annual rate.
+     */
+    DECLINING_BALANCE
+}
@@ -0,0 +1,17 @@
+package com.ing.loan.amortization;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+/**
+ * Computes the repayment schedule of one {@link AmortizationMethod} for one unit of principal.
+ * Implementations are Spring beans picked up by {@link AmortizationEngine}; templates are cached,
+ * so they are computed once per method, rate, tenor and start month.
+ * @author Suleyman Yildirim
+ */
+public interface AmortizationStrategy {
+
+    AmortizationMethod method();
+
+    ScheduleTemplate template(BigDecimal interestRate, int installments, YearMonth startMonth);
+}
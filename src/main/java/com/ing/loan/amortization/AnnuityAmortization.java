@@ -0,0 +1,38 @@
+package com.ing.loan.amortization;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+
+/**
+ * French amortization: equal installments {@code r / (1 - (1 + r)^-n)} per unit of principal,
+ * with {@code r} the monthly rate.
+ * @author Suleyman Yildirim
+ */
+@Component
+public class AnnuityAmortization implements AmortizationStrategy {
+
+    private static final BigDecimal MONTHS_PER_YEAR = BigDecimal.valueOf(12);
+
+    @Override
+    public AmortizationMethod method() {
+        return AmortizationMethod.ANNUITY;
+    }
+
+    @Override
+    public ScheduleTemplate template(BigDecimal interestRate, int installments, YearMonth startMonth) {
+        BigDecimal monthlyRate = interestRate.divide(MONTHS_PER_YEAR, MathContext.DECIMAL64);
+        BigDecimal repaymentFactor;
+        if (monthlyRate.signum() == 0) {
+            repaymentFactor = BigDecimal.ONE;
+        } else {
+            BigDecimal discount = BigDecimal.ONE.divide(BigDecimal.ONE.add(monthlyRate).pow(installments, MathContext.DECIMAL64), MathContext.DECIMAL64);
+            BigDecimal installmentFactor = monthlyRate.divide(BigDecimal.ONE.subtract(discount), MathContext.DECIMAL64);
+            repaymentFactor = installmentFactor.multiply(BigDecimal.valueOf(installments), MathContext.DECIMAL64);
+        }
+        return ScheduleTemplate.equalInstallments(repaymentFactor.setScale(12, RoundingMode.HALF_UP), installments, startMonth);
+    }
+}
@@ -0,0 +1,41 @@
+package com.ing.loan.amortization;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.time.YearMonth;
+
+/**
+ * Equal principal repayments plus a month of interest on the outstanding balance. Installment {@code k}
+ * of {@code n} is {@code (1 + (n - k + 1) * r) / n} per unit of principal, with {@code r} the monthly rate.
+ * @author Suleyman Yildirim
+ */
+@Component
+public class DecliningBalanceAmortization implements AmortizationStrategy {
+
+    private static final BigDecimal MONTHS_PER_YEAR = BigDecimal.valueOf(12);
+
+    // Installment weights are kept to six decimal places; the exact total is carried by the repayment factor
+    private static final long WEIGHT_SCALE = 1_000_000L;
+
+    @Override
+    public AmortizationMethod method() {
+        return AmortizationMethod.DECLINING_BALANCE;
+    }
+
+    @Override
+    public ScheduleTemplate template(BigDecimal interestRate, int installments, YearMonth startMonth) {
+        BigDecimal monthlyRate = interestRate.divide(MONTHS_PER_YEAR, MathContext.DECIMAL64);
+        long[] weights = new long[installments];
+        for (int k = 1; k <= installments; k++) {
+            BigDecimal weight = BigDecimal.ONE.add(monthlyRate.multiply(BigDecimal.valueOf(installments - k + 1L)));
+            weights[k - 1] = weight.multiply(BigDecimal.valueOf(WEIGHT_SCALE)).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+        // Sum of all installments: 1 + r * (n + 1) / 2
+        BigDecimal repaymentFactor = BigDecimal.ONE.add(monthlyRate.multiply(BigDecimal.valueOf(installments + 1L))
+                .divide(BigDecimal.valueOf(2), MathContext.DECIMAL64));
+        return new ScheduleTemplate(repaymentFactor.setScale(12, RoundingMode.HALF_UP), weights, startMonth);
+    }
+}
@@ -0,0 +1,24 @@
+package com.ing.loan.amortization;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+/**
+ * Principal plus flat interest, split into equal installments.
+ * @author Suleyman Yildirim
+ */
+@Component
+public class FlatAmortization implements AmortizationStrategy {
+
+    @Override
+    public AmortizationMethod method() {
+        return AmortizationMethod.FLAT;
+    }
+
+    @Override
+    public ScheduleTemplate template(BigDecimal interestRate, int installments, YearMonth startMonth) {
+        return ScheduleTemplate.equalInstallments(BigDecimal.ONE.add(interestRate), installments, startMonth);
+    }
+}
@@ -0,0 +1,47 @@
+package com.ing.loan.amortization;
+
+import com.ing.loan.money.Money;
+
+import java.time.LocalDate;
+
+/**
+ * A {@link ScheduleTemplate} scaled to a loan: the total to repay and the amount of every installment.
+ * Installments are rounded down to a cent and the last one carries the remainder, so they add up
+ * exactly to the total.
+ * @author Suleyman Yildirim
+ */
+public final class LoanSchedule {
+
+    private final ScheduleTemplate template;
+    private final Money total;
+    private final long[] installments;
+
+    LoanSchedule(ScheduleTemplate template, Money total) {
+        this.template = template;
+        this.total = total;
+        this.installments = new long[template.size()];
+        long allocated = 0;
+        int last = installments.length - 1;
+        for (int i = 0; i < last; i++) {
+            installments[i] = total.proportion(template.weight(i), template.weightSum()).minorUnits();
+            allocated += installments[i];
+        }
+        installments[last] = total.minorUnits() - allocated;
+    }
+
+    public Money total() {
+        return total;
+    }
+
+    public int size() {
+        return installments.length;
+    }
+
+    public long installmentMinorUnits(int index) {
+        return installments[index];
+    }
+
+    public LocalDate dueDate(int index) {
+        return template.dueDate(index);
+    }
+}
@@ -0,0 +1,61 @@
+package com.ing.loan.amortization;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+
+/**
+ * A repayment schedule for one unit of principal: the amount repaid per unit, how that amount is
+ * weighted across the installments, and their due dates. Immutable and shared between loans.
+ * @author Suleyman Yildirim
+ */
+public final class ScheduleTemplate {
+
+    private final BigDecimal repaymentFactor;
+    private final long[] weights;
+    private final long weightSum;
+    private final LocalDate[] dueDates;
+
+    /**
+     * @param repaymentFactor total amount repaid per unit of principal
+     * @param weights         relative size of each installment
+     * @param startMonth      the month the loan is originated; the first installment is due on the first day of the next month
+     */
+    public ScheduleTemplate(BigDecimal repaymentFactor, long[] weights, YearMonth startMonth) {
+        this.repaymentFactor = repaymentFactor;
+        this.weights = weights.clone();
+        this.weightSum = Arrays.stream(weights).sum();
+        this.dueDates = new LocalDate[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            dueDates[i] = startMonth.plusMonths(i + 1L).atDay(1);
+        }
+    }
+
+    // Equal installments, as used by the flat and annuity methods
+    public static ScheduleTemplate equalInstallments(BigDecimal repaymentFactor, int installments, YearMonth startMonth) {
+        long[] weights = new long[installments];
+        Arrays.fill(weights, 1L);
+        return new ScheduleTemplate(repaymentFactor, weights, startMonth);
+    }
+
+    public BigDecimal repaymentFactor() {
+        return repaymentFactor;
+    }
+
+    public int size() {
+        return weights.length;
+    }
+
+    long weight(int index) {
+        return weights[index];
+    }
+
+    long weightSum() {
+        return weightSum;
+    }
+
+    public LocalDate dueDate(int index) {
+        return dueDates[index];
+    }
+}
@@ -0,0 +1,365 @@
+package com.ing.loan.analytics;
+
+import com.ing.loan.money.Money;
+import com.ing.loan.repository.CustomerExposure;
+import com.ing.loan.repository.LoanInstallmentRepository;
+import com.ing.loan.repository.LoanRepository;
+import com.ing.loan.repository.PaymentStatusTotals;
+import com.ing.loan.response.CustomerExposureResponse;
+import com.ing.loan.response.DueMonthOutstandingResponse;
+import com.ing.loan.response.PortfolioAnalyticsResponse;
+import com.ing.loan.response.UtilizationBandResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Portfolio-wide figures for risk: unpaid installments per due month, paid versus unpaid installments, and the
+ * exposure of each customer against their credit limit.
+ * <p>
+ * Installments are counted and totalled by the database. Exposure is totalled per customer by the database too,
+ * from the balance summaries of the loans, but banding and ranking the customers is done here: their rows are read
+ * from a cursor in chunks of {@code chunk-size}, and each chunk is summarized on a fork-join pool of
+ * {@code parallelism} threads while the next ones are read. At most two chunks per thread are held in memory.
+ * <p>
+ * The figures are computed on request, and then served until they are older than {@code refresh-interval}, so the
+ * tables are only scanned while someone reads the figures. The request finding them stale recomputes them; requests
+ * arriving meanwhile are served the previous figures rather than waiting, except before the first computation
+ * finished. If a refresh fails, the previous figures keep being served.
+ * @author Suleyman Yildirim
+ */
+@Slf4j
+@Service
+public class PortfolioAnalytics implements MeterBinder, DisposableBean {
+
+    // Slices of a chunk up to this many rows are summarized by one task rather than split further
+    private static final int SPLIT_THRESHOLD = 1024;
+
+    // Highest utilization last; ties are broken by customer id so the ranking does not depend on the chunking
+    private static final Comparator<CustomerExposure> BY_UTILIZATION = Comparator
+            .comparingDouble(CustomerExposure::utilization)
+            .thenComparing(CustomerExposure::customerId, Comparator.reverseOrder());
+
+    private final LoanRepository loanRepository;
+    private final LoanInstallmentRepository loanInstallmentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration refreshInterval;
+    private final int chunkSize;
+    private final int topCustomers;
+    private final ForkJoinPool pool;
+
+    // Serializes computations, so requests arriving before the first one finished wait for it
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    // Null until the first computation finished
+    private volatile PortfolioAnalyticsResponse report;
+    // System.nanoTime() when the report was computed, or last failed to be
+    private volatile long refreshedAt;
+    private Timer refreshTimer;
+
+    public PortfolioAnalytics(LoanRepository loanRepository, LoanInstallmentRepository loanInstallmentRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${loan.analytics.refresh-interval:PT5M}") Duration refreshInterval,
+                              @Value("${loan.analytics.parallelism:4}") int parallelism,
+                              @Value("${loan.analytics.chunk-size:10000}") int chunkSize,
+                              @Value("${loan.analytics.top-customers:100}") int topCustomers) {
+        this.loanRepository = loanRepository;
+        this.loanInstallmentRepository = loanInstallmentRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.refreshInterval = refreshInterval;
+        this.chunkSize = chunkSize;
+        this.topCustomers = topCustomers;
+        this.pool = new ForkJoinPool(parallelism, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("portfolio-analytics-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * The figures as of the last refresh, recomputed on the calling thread if there are none yet or they are older
+     * than the refresh interval.
+     */
+    public PortfolioAnalyticsResponse getReport() {
+        PortfolioAnalyticsResponse current = report;
+        if (current == null) {
+            refreshLock.lock();
+            try {
+                if (report == null) {
+                    refresh();
+                }
+                return report;
+            } finally {
+                refreshLock.unlock();
+            }
+        }
+        // Stale figures are recomputed by one request at a time; the others are served them meanwhile
+        if (isStale() && refreshLock.tryLock()) {
+            try {
+                if (isStale()) {
+                    refreshQuietly();
+                }
+            } finally {
+                refreshLock.unlock();
+            }
+        }
+        return report;
+    }
+
+    private boolean isStale() {
+        return System.nanoTime() - refreshedAt >= refreshInterval.toNanos();
+    }
+
+    /**
+     * Computes the figures and replaces the ones served. Package-private for the tests.
+     */
+    void refresh() {
+        refreshLock.lock();
+        Timer.Sample sample = Timer.start();
+        try {
+            long startedAt = System.nanoTime();
+            PortfolioAnalyticsResponse computed = transactionTemplate.execute(transaction -> compute());
+            report = computed;
+            refreshedAt = System.nanoTime();
+            log.info("Portfolio analytics of {} customers with an outstanding balance computed in {} ms",
+                    computed.getCustomersWithExposure(), (System.nanoTime() - startedAt) / 1_000_000);
+        } finally {
+            if (refreshTimer != null) {
+                sample.stop(refreshTimer);
+            }
+            refreshLock.unlock();
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (RuntimeException e) {
+            // Not retried before the next interval, so a failing database is not scanned on every request
+            refreshedAt = System.nanoTime();
+            PortfolioAnalyticsResponse current = report;
+            log.warn("Failed to refresh the portfolio analytics, serving the ones computed at {}: {}",
+                    current != null ? current.getComputedAt() : "never", e.getMessage());
+        }
+    }
+
+    private PortfolioAnalyticsResponse compute() {
+        LocalDateTime computedAt = LocalDateTime.now();
+        List<DueMonthOutstandingResponse> outstandingByDueMonth = loanInstallmentRepository.findOutstandingByDueMonth().stream()
+                .map(totals -> DueMonthOutstandingResponse.builder()
+                        .dueMonth(YearMonth.of(totals.year(), totals.month()))
+                        .installments(totals.installments())
+                        .amount(totals.amount())
+                        .build())
+                .toList();
+
+        long paidInstallments = 0;
+        long unpaidInstallments = 0;
+        BigDecimal paidAmount = BigDecimal.ZERO;
+        BigDecimal unpaidAmount = BigDecimal.ZERO;
+        for (PaymentStatusTotals totals : loanInstallmentRepository.findPaymentStatusTotals()) {
+            if (Boolean.TRUE.equals(totals.paid())) {
+                paidInstallments += totals.installments();
+                paidAmount = paidAmount.add(totals.amount());
+            } else {
+                unpaidInstallments += totals.installments();
+                unpaidAmount = unpaidAmount.add(totals.amount());
+            }
+        }
+
+        ExposureSummary exposures;
+        try (Stream<CustomerExposure> rows = loanRepository.streamCustomerExposures()) {
+            exposures = summarize(rows);
+        }
+
+        return PortfolioAnalyticsResponse.builder()
+                .computedAt(computedAt)
+                .paidInstallments(paidInstallments)
+                .paidAmount(paidAmount)
+                .unpaidInstallments(unpaidInstallments)
+                .unpaidAmount(unpaidAmount)
+                .outstandingByDueMonth(outstandingByDueMonth)
+                .customersWithExposure(exposures.customers())
+                .creditLimit(new Money(exposures.creditLimit).toBigDecimal())
+                .utilizationBands(exposures.bands())
+                .topExposures(exposures.topExposures())
+                .build();
+    }
+
+    /**
+     * Bands and ranks the customers, reading the rows in chunks that are summarized on the pool. Package-private
+     * for the tests.
+     */
+    ExposureSummary summarize(Stream<CustomerExposure> exposures) {
+        ExposureSummary total = new ExposureSummary(topCustomers);
+        Deque<ForkJoinTask<ExposureSummary>> inFlight = new ArrayDeque<>();
+        List<CustomerExposure> chunk = new ArrayList<>(chunkSize);
+        Iterator<CustomerExposure> rows = exposures.iterator();
+        while (rows.hasNext()) {
+            chunk.add(rows.next());
+            if (chunk.size() == chunkSize) {
+                inFlight.add(pool.submit(new SummarizeTask(chunk, 0, chunk.size(), topCustomers)));
+                chunk = new ArrayList<>(chunkSize);
+                // Bounds the rows held in memory: reading waits for the oldest chunk once every thread has two
+                if (inFlight.size() >= 2 * pool.getParallelism()) {
+                    total.merge(inFlight.removeFirst().join());
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            inFlight.add(pool.submit(new SummarizeTask(chunk, 0, chunk.size(), topCustomers)));
+        }
+        for (ForkJoinTask<ExposureSummary> task : inFlight) {
+            total.merge(task.join());
+        }
+        return total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        refreshTimer = Timer.builder("loan.analytics.refresh")
+                .description("Time taken to compute the portfolio analytics")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Customers per utilization band, with their exposure in minor units, and the ones using the largest share of
+     * their credit limit. Summaries of disjoint rows are merged into the summary of all of them.
+     */
+    static final class ExposureSummary {
+
+        private final int topCustomers;
+        private final long[] customers = new long[UtilizationBand.values().length];
+        private final long[] exposure = new long[UtilizationBand.values().length];
+        private long creditLimit;
+
+        // Its head is the first customer to drop out when one with a higher utilization is offered
+        private final PriorityQueue<CustomerExposure> top;
+
+        ExposureSummary(int topCustomers) {
+            this.topCustomers = topCustomers;
+            this.top = new PriorityQueue<>(Math.max(1, topCustomers), BY_UTILIZATION);
+        }
+
+        void add(CustomerExposure row) {
+            int band = UtilizationBand.of(row.utilization()).ordinal();
+            customers[band]++;
+            exposure[band] = Math.addExact(exposure[band], row.outstanding().minorUnits());
+            creditLimit = Math.addExact(creditLimit, row.creditLimit().minorUnits());
+            offer(row);
+        }
+
+        ExposureSummary merge(ExposureSummary other) {
+            for (int band = 0; band < customers.length; band++) {
+                customers[band] += other.customers[band];
+                exposure[band] = Math.addExact(exposure[band], other.exposure[band]);
+            }
+            creditLimit = Math.addExact(creditLimit, other.creditLimit);
+            other.top.forEach(this::offer);
+            return this;
+        }
+
+        private void offer(CustomerExposure row) {
+            if (top.size() < topCustomers) {
+                top.add(row);
+            } else if (topCustomers > 0 && BY_UTILIZATION.compare(row, top.peek()) > 0) {
+                top.poll();
+                top.add(row);
+            }
+        }
+
+        long customers() {
+            long total = 0;
+            for (long count : customers) {
+                total += count;
+            }
+            return total;
+        }
+
+        List<UtilizationBandResponse> bands() {
+            List<UtilizationBandResponse> bands = new ArrayList<>(customers.length);
+            for (UtilizationBand band : UtilizationBand.values()) {
+                bands.add(UtilizationBandResponse.builder()
+                        .band(band)
+                        .customers(customers[band.ordinal()])
+                        .exposure(new Money(exposure[band.ordinal()]).toBigDecimal())
+                        .build());
+            }
+            return bands;
+        }
+
+        List<CustomerExposureResponse> topExposures() {
+            return top.stream()
+                    .sorted(BY_UTILIZATION.reversed())
+                    .map(row -> CustomerExposureResponse.builder()
+                            .customerId(row.customerId())
+                            .creditLimit(row.creditLimit().toBigDecimal())
+                            .exposure(row.outstanding().toBigDecimal())
+                            .utilization(row.utilization())
+                            .build())
+                    .toList();
+        }
+    }
+
+    // Summarizes rows [from, to) of a chunk, splitting it in halves down to SPLIT_THRESHOLD rows
+    private static final class SummarizeTask extends RecursiveTask<ExposureSummary> {
+
+        private final List<CustomerExposure> rows;
+        private final int from;
+        private final int to;
+        private final int topCustomers;
+
+        private SummarizeTask(List<CustomerExposure> rows, int from, int to, int topCustomers) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.topCustomers = topCustomers;
+        }
+
+        @Override
+        protected ExposureSummary compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                ExposureSummary summary = new ExposureSummary(topCustomers);
+                for (int i = from; i < to; i++) {
+                    summary.add(rows.get(i));
+                }
+                return summary;
+            }
+            int middle = (from + to) >>> 1;
+            SummarizeTask left = new SummarizeTask(rows, from, middle, topCustomers);
+            left.fork();
+            ExposureSummary right = new SummarizeTask(rows, middle, to, topCustomers).compute();
+            return left.join().merge(right);
+        }
+    }
+}
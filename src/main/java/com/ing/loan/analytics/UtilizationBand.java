@@ -0,0 +1,27 @@
+package com.ing.loan.analytics;
+
+/**
+ * Share of a customer's credit limit used by the outstanding balance of their loans.
+ * @author Suleyman Yildirim
+ */
+public enum UtilizationBand {
+
+    UP_TO_25,
+    UP_TO_50,
+    UP_TO_75,
+    UP_TO_100,
+    OVER_LIMIT;
+
+    public static UtilizationBand of(double utilization) {
+        if (utilization <= 0.25) {
+            return UP_TO_25;
+        }
+        if (utilization <= 0.5) {
+            return UP_TO_50;
+        }
+        if (utilization <= 0.75) {
+            return UP_TO_75;
+        }
+        return utilization <= 1 ? UP_TO_100 : OVER_LIMIT;
+    }
+}
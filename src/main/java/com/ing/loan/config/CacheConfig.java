@@ -0,0 +1,46 @@
+package com.ing.loan.config;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+
+/**
+ * Second-level cache for Customer, Loan and LoanInstallment.
+ * Regions are Caffeine caches whose size and TTL are configured in application.conf.
+ *
+ * @author Suleyman Yildirim
+ */
+@Configuration
+public class CacheConfig {
+
+    // Shared with Hibernate so the metrics below observe the same caches the regions live in
+    @Bean(destroyMethod = "close")
+    public CacheManager jcacheManager() {
+        CachingProvider cachingProvider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        return cachingProvider.getCacheManager(cachingProvider.getDefaultURI(), getClass().getClassLoader());
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheManagerCustomizer(CacheManager jcacheManager) {
+        return hibernateProperties -> hibernateProperties.put(ConfigSettings.CACHE_MANAGER, jcacheManager);
+    }
+
+    // Evictions from the Caffeine caches; hit/miss/put counts per region come from the Hibernate metrics Spring Boot
+    // binds when hibernate.generate_statistics is on
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(CacheManager jcacheManager) {
+        return registry -> {
+            for (String cacheName : jcacheManager.getCacheNames()) {
+                JCacheMetrics.monitor(registry, jcacheManager.getCache(cacheName));
+            }
+        };
+    }
+}
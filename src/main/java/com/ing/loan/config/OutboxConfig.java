@@ -0,0 +1,33 @@
+package com.ing.loan.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ing.loan.outbox.FileOutboxSink;
+import com.ing.loan.outbox.LoggingOutboxSink;
+import com.ing.loan.outbox.OutboxSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * The sink that outbox events are relayed to, selected with {@code loan.outbox.sink}.
+ *
+ * @author Suleyman Yildirim
+ */
+@Configuration
+public class OutboxConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "loan.outbox.sink", havingValue = "log", matchIfMissing = true)
+    public OutboxSink loggingOutboxSink() {
+        return new LoggingOutboxSink();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "loan.outbox.sink", havingValue = "file")
+    public OutboxSink fileOutboxSink(@Value("${loan.outbox.file:loan-events.ndjson}") Path file, ObjectMapper objectMapper) {
+        return new FileOutboxSink(file, objectMapper);
+    }
+}
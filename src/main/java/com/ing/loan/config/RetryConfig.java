@@ -0,0 +1,15 @@
+package com.ing.loan.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.retry.annotation.EnableRetry;
+
+/**
+ * Enables @Retryable on the service layer. The retry advice is ordered before the transaction advice,
+ * so every attempt runs in a fresh transaction and reads the current state of the rows it conflicted on.
+ *
+ * @author Suleyman Yildirim
+ */
+@Configuration
+@EnableRetry
+public class RetryConfig {
+}
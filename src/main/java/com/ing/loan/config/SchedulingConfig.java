@@ -0,0 +1,17 @@
+package com.ing.loan.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Background housekeeping jobs, e.g. purging expired idempotency records.
+ * Disable with {@code loan.scheduling.enabled=false}, for instance in tests.
+ *
+ * @author Suleyman Yildirim
+ */
+@Configuration
+@EnableScheduling
+@ConditionalOnProperty(name = "loan.scheduling.enabled", havingValue = "true", matchIfMissing = true)
+public class SchedulingConfig {
+}
@@ -1,25 +1,35 @@
 package com.ing.loan.config;
 
+import com.ing.loan.security.CachingJwtDecoder;
+import com.ing.loan.security.LoanJwtAuthenticationConverter;
+import com.ing.loan.security.RefreshingJwkSource;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.ConfigurableJWTProcessor;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.HeadersConfigurer;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
 
 import static org.springframework.boot.autoconfigure.security.servlet.PathRequest.toH2Console;
-import static org.springframework.security.config.Customizer.withDefaults;
 
 /**
  * @author Suleyman Yildirim
@@ -34,12 +44,14 @@ public class SecurityConfig {
     String jwkSetUri;
 
     @Bean
-    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+    public SecurityFilterChain securityFilterChain(HttpSecurity http, LoanJwtAuthenticationConverter jwtAuthenticationConverter) throws Exception {
         http.authorizeHttpRequests(authz -> authz
                         .requestMatchers("/v1/**").hasAnyAuthority("ADMIN", "CUSTOMER")
-                        .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html", "/h2-console/**")
+                        // Metrics carry business figures and customer-related tags, so scrapers need an ADMIN token
+                        .requestMatchers("/actuator/prometheus", "/actuator/metrics/**").hasAuthority("ADMIN")
+                        .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html", "/h2-console/**", "/actuator/health")
 
-                        .permitAll() // Allow Swagger UI and related resources
+                        .permitAll() // Allow Swagger UI, related resources and health checks
                         .anyRequest().authenticated())
 //                .authorizeHttpRequests(auth -> auth
 //                        .requestMatchers(toH2Console()).permitAll()
@@ -50,25 +62,44 @@ public class SecurityConfig {
                         .disable()
                 )
                 .oauth2ResourceServer(oauth2 -> oauth2
-                        .jwt(withDefaults())); // Use withDefaults() for default configuration
+                        .jwt(jwt -> jwt.jwtAuthenticationConverter(jwtAuthenticationConverter)));
         return http.build();
     }
 
     @Bean
-    public JwtAuthenticationConverter jwtAuthenticationConverter() {
-        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
-        converter.setJwtGrantedAuthoritiesConverter(jwt -> {
-            List<String> scope = (List<String>) jwt.getClaims().get("scope");
-            return scope != null ? scope.stream().map(SimpleGrantedAuthority::new).collect(Collectors.toList()) : Collections.emptyList();
-        });
-        return converter;
+    public LoanJwtAuthenticationConverter jwtAuthenticationConverter(@Value("${loan.security.token-cache-size:10000}") long tokenCacheSize) {
+        return new LoanJwtAuthenticationConverter(tokenCacheSize);
     }
 
+    // Keys fetched from the authorization server in the background, see RefreshingJwkSource
+    @Bean
+    @ConditionalOnProperty(name = "loan.security.jwk-source", havingValue = "remote", matchIfMissing = true)
+    public RefreshingJwkSource refreshingJwkSource(@Value("${loan.security.jwk-refresh-interval:PT5M}") Duration refreshInterval,
+                                                   @Value("${loan.security.jwk-max-stale:PT1H}") Duration maxStale,
+                                                   @Value("${loan.security.jwk-min-refresh-gap:PT30S}") Duration minRefreshGap,
+                                                   @Value("${loan.security.jwk-request-timeout:PT2S}") Duration requestTimeout) {
+        return new RefreshingJwkSource(URI.create(this.jwkSetUri), refreshInterval, maxStale, minRefreshGap, requestTimeout);
+    }
 
+    // Keys provisioned with the node, for hosts that cannot reach the authorization server; rotating them means
+    // replacing the file and restarting
+    @Bean
+    @ConditionalOnProperty(name = "loan.security.jwk-source", havingValue = "file")
+    public JWKSource<SecurityContext> preloadedJwkSource(@Value("${loan.security.jwk-set-file}") Path jwkSetFile) throws IOException, ParseException {
+        return new ImmutableJWKSet<>(JWKSet.load(jwkSetFile.toFile()));
+    }
 
     @Bean
-    JwtDecoder jwtDecoder() {
-        return NimbusJwtDecoder.withJwkSetUri(this.jwkSetUri).build();
+    CachingJwtDecoder jwtDecoder(JWKSource<SecurityContext> jwkSource,
+                                 @Value("${loan.security.token-cache-size:10000}") long tokenCacheSize,
+                                 @Value("${loan.security.token-cache-max-ttl:PT10M}") Duration tokenCacheMaxTtl) {
+        // RS256 only, like NimbusJwtDecoder.withJwkSetUri
+        ConfigurableJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
+        jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, jwkSource));
+        // Expiry and not-before are checked by NimbusJwtDecoder's default validators instead
+        jwtProcessor.setJWTClaimsSetVerifier((claims, context) -> {
+        });
+        return new CachingJwtDecoder(new NimbusJwtDecoder(jwtProcessor), tokenCacheSize, tokenCacheMaxTtl);
     }
 }
 
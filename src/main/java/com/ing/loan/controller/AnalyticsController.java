@@ -0,0 +1,48 @@
+package com.ing.loan.controller;
+
+import com.ing.loan.analytics.PortfolioAnalytics;
+import com.ing.loan.response.PortfolioAnalyticsResponse;
+import com.ing.loan.security.LoanAuthorization;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Portfolio analytics for risk, admins only.
+ * @author Suleyman Yildirim
+ */
+
+@RestController
+@RequestMapping("/v1")
+public class AnalyticsController {
+
+    private final PortfolioAnalytics portfolioAnalytics;
+
+    private final LoanAuthorization authorization;
+
+    @Autowired
+    public AnalyticsController(PortfolioAnalytics portfolioAnalytics, LoanAuthorization authorization) {
+        this.portfolioAnalytics = portfolioAnalytics;
+        this.authorization = authorization;
+    }
+
+    @Operation(summary = "Get Portfolio Analytics", description = "Get portfolio-wide figures: unpaid installments per due month, paid versus unpaid installments, and customer exposure against credit limits. The figures are refreshed every loan.analytics.refresh-interval.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the figures",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = PortfolioAnalyticsResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @GetMapping("/analytics/portfolio")
+    public ResponseEntity<PortfolioAnalyticsResponse> getPortfolioAnalytics() {
+        authorization.checkAdmin();
+        return ResponseEntity.ok(portfolioAnalytics.getReport());
+    }
+}
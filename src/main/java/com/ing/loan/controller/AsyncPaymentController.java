@@ -0,0 +1,93 @@
+package com.ing.loan.controller;
+
+import com.ing.loan.payment.AsyncPaymentPipeline;
+import com.ing.loan.request.PaymentRequest;
+import com.ing.loan.response.PaymentTrackingResponse;
+import com.ing.loan.security.LoanAuthorization;
+import com.ing.loan.service.IdempotencyService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Size;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.ErrorResponse;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.UUID;
+
+/**
+ * Asynchronous payments, enabled with {@code loan.payments.async.enabled=true}.
+ * @author Suleyman Yildirim
+ */
+
+@RestController
+@RequestMapping("/v1")
+@Validated
+@ConditionalOnProperty(name = "loan.payments.async.enabled", havingValue = "true")
+public class AsyncPaymentController {
+
+    private final AsyncPaymentPipeline asyncPaymentPipeline;
+
+    private final IdempotencyService idempotencyService;
+
+    private final LoanAuthorization authorization;
+
+    @Autowired
+    public AsyncPaymentController(AsyncPaymentPipeline asyncPaymentPipeline, IdempotencyService idempotencyService,
+                                  LoanAuthorization authorization) {
+        this.asyncPaymentPipeline = asyncPaymentPipeline;
+        this.idempotencyService = idempotencyService;
+        this.authorization = authorization;
+    }
+
+    @Operation(summary = "Pay Loan Asynchronously", description = "Queue a payment for a given loan and return immediately with a tracking id.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Payment queued",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = PaymentTrackingResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid input data",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
+            @ApiResponse(responseCode = "503", description = "Payment queue full, retry later",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))})
+    })
+    @Parameter(name = "paymentRequest", description = "Request object containing loanId and paymentAmount.", required = true,
+            schema = @Schema(implementation = PaymentRequest.class))
+    @Parameter(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, description = "Optional client-generated key; retries with the same key return the same tracking id instead of queueing the payment again.")
+
+    @PostMapping("/pay-loan/async")
+    public ResponseEntity<?> payLoanAsync(@Valid @RequestBody PaymentRequest paymentRequest,
+                                          @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) @Size(max = 255) String idempotencyKey) {
+        authorization.checkLoan(paymentRequest.getLoanId());
+        return idempotencyService.execute("pay-loan-async", idempotencyKey, paymentRequest, () -> {
+            PaymentTrackingResponse queued = asyncPaymentPipeline.submit(paymentRequest.getLoanId(), paymentRequest.getPaymentAmount());
+            return ResponseEntity.accepted()
+                    .location(URI.create("/v1/payments/" + queued.getTrackingId()))
+                    .body(queued);
+        });
+    }
+
+    @Operation(summary = "Payment Status", description = "Status of a payment queued with /v1/pay-loan/async, and its result once applied.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Payment found",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = PaymentTrackingResponse.class))}),
+            @ApiResponse(responseCode = "404", description = "Unknown or expired tracking id", content = @Content)
+    })
+    @GetMapping("/payments/{trackingId}")
+    public ResponseEntity<PaymentTrackingResponse> paymentStatus(@PathVariable UUID trackingId) {
+        // The loan, and so who may see the payment, is only known once the payment has been found
+        return asyncPaymentPipeline.status(trackingId)
+                .map(status -> {
+                    authorization.checkLoan(status.getLoanId());
+                    return ResponseEntity.ok(status);
+                })
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+    }
+}
@@ -0,0 +1,55 @@
+package com.ing.loan.controller;
+
+import com.ing.loan.export.ExportMode;
+import com.ing.loan.export.SnapshotExporter;
+import com.ing.loan.response.SnapshotExportResponse;
+import com.ing.loan.security.LoanAuthorization;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.ErrorResponse;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Snapshot exports of the loan and loan_installment tables for the data warehouse, admins only.
+ * @author Suleyman Yildirim
+ */
+
+@RestController
+@RequestMapping("/v1")
+public class ExportController {
+
+    private final SnapshotExporter snapshotExporter;
+
+    private final LoanAuthorization authorization;
+
+    @Autowired
+    public ExportController(SnapshotExporter snapshotExporter, LoanAuthorization authorization) {
+        this.snapshotExporter = snapshotExporter;
+        this.authorization = authorization;
+    }
+
+    @Operation(summary = "Export Snapshot", description = "Export the loan and loan_installment tables to compressed Arrow IPC files in loan.export.directory on the server. An incremental export writes the rows changed since the last export. Returns once both files are written.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Snapshot exported",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = SnapshotExportResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content),
+            @ApiResponse(responseCode = "409", description = "An export is already running",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @Parameter(name = "mode", description = "FULL to export every row, INCREMENTAL to export the rows changed since the last export", example = "INCREMENTAL")
+    @PostMapping("/exports")
+    public ResponseEntity<SnapshotExportResponse> export(@RequestParam(defaultValue = "INCREMENTAL") ExportMode mode) {
+        authorization.checkAdmin();
+        return ResponseEntity.ok(snapshotExporter.export(mode));
+    }
+}
@@ -1,9 +1,19 @@
 package com.ing.loan.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.ing.loan.entity.Loan;
-import com.ing.loan.entity.LoanInstallment;
+import com.ing.loan.request.LoanFilter;
 import com.ing.loan.request.LoanRequest;
+import com.ing.loan.response.BulkLoanResponse;
+import com.ing.loan.response.LoanInstallmentResponse;
+import com.ing.loan.response.LoanListItemResponse;
+import com.ing.loan.response.LoanPageResponse;
 import com.ing.loan.response.LoanResponse;
+import com.ing.loan.response.LoanSummaryResponse;
+import com.ing.loan.security.LoanAuthorization;
+import com.ing.loan.service.IdempotencyService;
 import com.ing.loan.service.LoanService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,14 +23,22 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
@@ -34,9 +52,20 @@ public class LoanController {
 
     private LoanService loanService;
 
+    private final IdempotencyService idempotencyService;
+
+    private final LoanAuthorization authorization;
+
+    // Writes one loan per line; the response stream stays open between rows
+    private final ObjectWriter ndjsonWriter;
+
     @Autowired
-    public LoanController(LoanService loanService) {
+    public LoanController(LoanService loanService, IdempotencyService idempotencyService, LoanAuthorization authorization,
+                          ObjectMapper objectMapper) {
         this.loanService = loanService;
+        this.idempotencyService = idempotencyService;
+        this.authorization = authorization;
+        this.ndjsonWriter = objectMapper.writerFor(LoanListItemResponse.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     @Operation(summary = "Create Loan", description = "Create a new loan for a given customer, amount, interest rate, and number of installments.")
@@ -46,18 +75,42 @@ public class LoanController {
             @ApiResponse(responseCode = "400", description = "Invalid input data",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
             @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content),
+            @ApiResponse(responseCode = "409", description = "A request with the same Idempotency-Key is still being processed, or concurrent changes to the customer's credit conflicted",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key already used for a different request",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     @Parameters({
             @Parameter(name = "loanRequest", description = "Loan request object containing customerId, loanAmount, interestRate, and number of installments.", required = true,
-                    schema = @Schema(implementation = LoanRequest.class))
+                    schema = @Schema(implementation = LoanRequest.class)),
+            @Parameter(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, description = "Optional client-generated key; retries with the same key return the first response instead of creating another loan.")
     })
 
-    @PreAuthorize("hasAuthority('ADMIN') or (hasAuthority('CUSTOMER') and #loanRequest.customerId == principal.id)")
     @PostMapping("/create-loan")
-    public ResponseEntity<LoanResponse> createLoan(@Valid @RequestBody LoanRequest loanRequest) {
-        LoanResponse loanResponse = loanService.createLoan(loanRequest);
-        return new ResponseEntity<>(loanResponse, HttpStatus.CREATED);
+    public ResponseEntity<?> createLoan(@Valid @RequestBody LoanRequest loanRequest,
+                                        @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) @Size(max = 255) String idempotencyKey) {
+        authorization.checkCustomer(loanRequest.getCustomerId());
+        return idempotencyService.execute("create-loan", idempotencyKey, loanRequest,
+                () -> new ResponseEntity<>(loanService.createLoan(loanRequest), HttpStatus.CREATED));
+    }
+
+    @Operation(summary = "Create Loans in Bulk", description = "Originate a batch of loans in one request. Each row is validated against the customer's credit limit and reported individually.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed, see per-row results",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = BulkLoanResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid input data",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @Parameter(name = "loanRequests", description = "List of loan requests, each containing customerId, loanAmount, interestRate, and number of installments.", required = true)
+
+    @PostMapping("/create-loans")
+    public ResponseEntity<BulkLoanResponse> createLoans(@RequestBody @NotEmpty List<@Valid LoanRequest> loanRequests) {
+        authorization.checkAdmin();
+        BulkLoanResponse bulkLoanResponse = loanService.createLoans(loanRequests);
+        return ResponseEntity.ok(bulkLoanResponse);
     }
 
     @Operation(summary = "List Loans", description = "List loans for a given customer.")
@@ -70,10 +123,10 @@ public class LoanController {
     })
     @Parameter(name = "customerId", description = "ID of the customer whose loans are being retrieved", required = true, example = "1")
 
-    @PreAuthorize("hasAuthority('ADMIN') or (hasAuthority('CUSTOMER') and #customerId == principal.id)")
     @GetMapping("/loans")
     public ResponseEntity<List<Loan>> listLoans(
             @RequestParam Long customerId) {
+        authorization.checkCustomer(customerId);
         List<Loan> loans = loanService.listLoansByCustomer(customerId);
         if (loans.isEmpty()) {
             return ResponseEntity.noContent().build();
@@ -81,24 +134,92 @@ public class LoanController {
         return ResponseEntity.ok(loans);
     }
 
+    @Operation(summary = "List Loans by Page", description = "List a page of a customer's loans in loan ID order, without installments. Pass the returned nextCursor as 'after' to get the next page.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the page",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = LoanPageResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid page size",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @Parameters({
+            @Parameter(name = "customerId", description = "ID of the customer whose loans are being retrieved", required = true, example = "1"),
+            @Parameter(name = "after", description = "Cursor from the previous page; omit for the first page", example = "12345"),
+            @Parameter(name = "size", description = "Maximum number of loans on the page, 1 to 1000", example = "100")
+    })
+
+    @GetMapping("/loans/page")
+    public ResponseEntity<LoanPageResponse> listLoansPage(
+            @RequestParam Long customerId,
+            @ParameterObject LoanFilter filter,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int size) {
+        authorization.checkCustomer(customerId);
+        return ResponseEntity.ok(loanService.listLoansPage(customerId, filter, after, size));
+    }
+
+    @Operation(summary = "Stream Loans", description = "Stream all of a customer's loans in loan ID order as newline-delimited JSON, one loan per line, without installments.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Loans are streamed as they are read",
+                    content = {@Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = LoanListItemResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @Parameter(name = "customerId", description = "ID of the customer whose loans are being retrieved", required = true, example = "1")
+
+    @GetMapping(value = "/loans/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamLoans(
+            @RequestParam Long customerId,
+            @ParameterObject LoanFilter filter) {
+        authorization.checkCustomer(customerId);
+        StreamingResponseBody body = out -> loanService.streamLoansByCustomer(customerId, filter, loan -> {
+            try {
+                ndjsonWriter.writeValue(out, loan);
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @Operation(summary = "List Installments", description = "List installments for a given loan.")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Successfully retrieved installments",
-                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = LoanInstallment.class))}),
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = LoanInstallmentResponse.class))}),
             @ApiResponse(responseCode = "204", description = "No installments found", content = @Content),
             @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     @Parameter(name = "loanId", description = "ID of the loan whose installments are being retrieved", required = true, example = "1")
-    @PreAuthorize("hasAuthority('ADMIN') or (hasAuthority('CUSTOMER') and #loanId == principal.id)")
     @GetMapping("/installments")
-    public ResponseEntity<List<LoanInstallment>> listInstallments(
+    public ResponseEntity<List<LoanInstallmentResponse>> listInstallments(
             @RequestParam Long loanId) {
-        List<LoanInstallment> installments = loanService.listInstallmentsByLoan(loanId);
+        authorization.checkLoan(loanId);
+        List<LoanInstallmentResponse> installments = loanService.listInstallmentsByLoan(loanId);
         if (installments.isEmpty()) {
             return ResponseEntity.noContent().build();
         }
         return ResponseEntity.ok(installments);
     }
 
+    @Operation(summary = "Get Loan Summary", description = "Get the balance of a loan: paid installments, remaining amount, and the next installment due, without reading its installments.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Successfully retrieved the summary",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = LoanSummaryResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content),
+            @ApiResponse(responseCode = "404", description = "Loan not found",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @Parameter(name = "loanId", description = "ID of the loan whose summary is being retrieved", required = true, example = "1")
+    @GetMapping("/loans/{loanId}/summary")
+    public ResponseEntity<LoanSummaryResponse> getLoanSummary(@PathVariable Long loanId) {
+        authorization.checkLoan(loanId);
+        return ResponseEntity.ok(loanService.getLoanSummary(loanId));
+    }
+
 }
@@ -1,9 +1,18 @@
 package com.ing.loan.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.ing.loan.exception.LoanInstallmentNotFoundException;
 import com.ing.loan.exception.LoanNotFoundException;
 import com.ing.loan.request.PaymentRequest;
+import com.ing.loan.response.BulkPaymentRowResponse;
 import com.ing.loan.response.LoanPaymentResponse;
+import com.ing.loan.security.LoanAuthorization;
+import com.ing.loan.service.BulkPaymentService;
+import com.ing.loan.service.IdempotencyService;
 import com.ing.loan.service.PaymentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -11,17 +20,32 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.ErrorResponse;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * @author Suleyman Yildirim
@@ -34,9 +58,25 @@ public class PaymentController {
 
     private final PaymentService paymentService;
 
+    private final IdempotencyService idempotencyService;
+
+    private final BulkPaymentService bulkPaymentService;
+
+    private final LoanAuthorization authorization;
+
+    // Read and write one payment per line; the streams stay open between rows
+    private final ObjectReader ndjsonReader;
+    private final ObjectWriter ndjsonWriter;
+
     @Autowired
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, IdempotencyService idempotencyService,
+                             BulkPaymentService bulkPaymentService, LoanAuthorization authorization, ObjectMapper objectMapper) {
         this.paymentService = paymentService;
+        this.idempotencyService = idempotencyService;
+        this.bulkPaymentService = bulkPaymentService;
+        this.authorization = authorization;
+        this.ndjsonReader = objectMapper.readerFor(PaymentRequest.class);
+        this.ndjsonWriter = objectMapper.writerFor(BulkPaymentRowResponse.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
 
     @Operation(summary = "Pay Loan", description = "Process a payment for a given loan.")
@@ -45,14 +85,87 @@ public class PaymentController {
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = LoanPaymentResponse.class))}),
             @ApiResponse(responseCode = "404", description = "Loan not found",
                     content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
+            @ApiResponse(responseCode = "409", description = "A request with the same Idempotency-Key is still being processed, or concurrent payments of the loan conflicted",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
+            @ApiResponse(responseCode = "422", description = "Idempotency-Key already used for a different request",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
             @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
     })
     @Parameter(name = "paymentRequest", description = "Request object containing loanId and paymentAmount.", required = true,
             schema = @Schema(implementation = PaymentRequest.class))
+    @Parameter(name = IdempotencyService.IDEMPOTENCY_KEY_HEADER, description = "Optional client-generated key; retries with the same key return the first response instead of paying again.")
 
-    @PreAuthorize("hasAuthority('ADMIN') or (hasAuthority('CUSTOMER') and #paymentRequest.loanId == principal.id)")
     @PostMapping("/pay-loan")
-    public ResponseEntity<LoanPaymentResponse> payLoan(@Valid @RequestBody PaymentRequest paymentRequest) {
+    public ResponseEntity<?> payLoan(@Valid @RequestBody PaymentRequest paymentRequest,
+                                     @RequestHeader(value = IdempotencyService.IDEMPOTENCY_KEY_HEADER, required = false) @Size(max = 255) String idempotencyKey) {
+        authorization.checkLoan(paymentRequest.getLoanId());
+        return idempotencyService.execute("pay-loan", idempotencyKey, paymentRequest, () -> pay(paymentRequest));
+    }
+
+    @Operation(summary = "Pay Loans in Bulk", description = "Apply a list of payments, e.g. a payroll deduction file. Rows are committed in chunks and "
+            + "their results are streamed back as newline-delimited JSON, one line per row, in row order.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Payments are applied and reported as they are committed",
+                    content = {@Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = BulkPaymentRowResponse.class))}),
+            @ApiResponse(responseCode = "400", description = "Invalid input data",
+                    content = {@Content(mediaType = "application/json", schema = @Schema(implementation = ErrorResponse.class))}),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content),
+            @ApiResponse(responseCode = "500", description = "Internal server error", content = @Content)
+    })
+    @Parameter(name = "paymentRequests", description = "List of payment requests, each containing loanId and paymentAmount.", required = true)
+
+    @PostMapping(value = "/pay-loans", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> payLoans(@RequestBody @NotEmpty List<@Valid PaymentRequest> paymentRequests) {
+        authorization.checkAdmin();
+        return streamResults(paymentRequests.iterator());
+    }
+
+    // The same for a streamed file with one payment request per line; rows are read as they are applied,
+    // so the file is never held in memory. Invalid rows, malformed lines included, are reported in the results
+    // instead of failing the request, whose status is already sent once the first chunk is written.
+    @PostMapping(value = "/pay-loans", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> payLoansStream(HttpServletRequest request) {
+        authorization.checkAdmin();
+        StreamingResponseBody body = out -> {
+            try (BufferedReader lines = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+                Iterator<PaymentRequest> payments = lines.lines()
+                        .filter(line -> !line.isBlank())
+                        .map(this::parseLine)
+                        .iterator();
+                bulkPaymentService.payLoans(payments, row -> write(out, row));
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamResults(Iterator<PaymentRequest> payments) {
+        StreamingResponseBody body = out -> bulkPaymentService.payLoans(payments, row -> write(out, row));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    // A line that is not a payment request becomes an empty one, which is rejected as INVALID_PAYMENT in its row
+    private PaymentRequest parseLine(String line) {
+        try {
+            return ndjsonReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            return PaymentRequest.builder().build();
+        }
+    }
+
+    private void write(OutputStream out, BulkPaymentRowResponse row) {
+        try {
+            ndjsonWriter.writeValue(out, row);
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ResponseEntity<LoanPaymentResponse> pay(PaymentRequest paymentRequest) {
         try {
             LoanPaymentResponse loanResponse = paymentService.payLoan(paymentRequest.getLoanId(), paymentRequest.getPaymentAmount());
             return ResponseEntity.ok(loanResponse);
@@ -60,6 +173,10 @@ public class PaymentController {
             // Handle specific exception with an appropriate status code (e.g., 404 Not Found)
             LoanPaymentResponse response = LoanPaymentResponse.builder().errorMessage(e.getMessage()).build();
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (OptimisticLockingFailureException e) {
+            // Concurrent payments of the same loan kept conflicting after every retry
+            LoanPaymentResponse response = LoanPaymentResponse.builder().errorMessage("The loan was changed by a concurrent payment, please retry").build();
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
         } catch (Exception e) {
             // Handle unexpected errors
             LoanPaymentResponse response = LoanPaymentResponse.builder().errorMessage(e.getMessage()).build();
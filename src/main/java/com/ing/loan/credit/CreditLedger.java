@@ -0,0 +1,207 @@
+package com.ing.loan.credit;
+
+import com.ing.loan.entity.CreditReservation;
+import com.ing.loan.exception.CustomerNotFoundException;
+import com.ing.loan.exception.ErrorCode;
+import com.ing.loan.money.Money;
+import com.ing.loan.repository.CreditPosition;
+import com.ing.loan.repository.CreditReservationRepository;
+import com.ing.loan.repository.CustomerRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The credit available to each customer, kept in memory and backed by the credit_reservation ledger.
+ * <p>
+ * Originating a loan checks and reserves credit in memory under a lock stripe picked by customer id, then appends
+ * a ledger entry in the caller's transaction. The customer row is not updated, so originations for one customer
+ * only serialize on the in-memory check and originations for different customers run in parallel. A rolled back
+ * reservation is returned to the customer; credit released by a paid-off loan becomes available once the payment
+ * commits. {@link #compact()} periodically folds committed entries into {@code Customer.usedCreditLimit}.
+ * <p>
+ * An account is loaded from the database the first time a customer is seen and kept for the lifetime of the
+ * process. The view is authoritative for this process only: credit must not be reserved for the same customer
+ * by more than one instance.
+ * @author Suleyman Yildirim
+ */
+@Slf4j
+@Service
+public class CreditLedger implements MeterBinder {
+
+    private final CreditReservationRepository creditReservationRepository;
+    private final CustomerRepository customerRepository;
+    private final int compactionBatchSize;
+    private final ReentrantLock[] stripes;
+
+    // Only read or written while holding the customer's stripe
+    private final Map<Long, CreditAccount> accounts = new ConcurrentHashMap<>();
+
+    public CreditLedger(CreditReservationRepository creditReservationRepository, CustomerRepository customerRepository,
+                        @Value("${loan.credit.lock-stripes:64}") int lockStripes,
+                        @Value("${loan.credit.compaction-batch-size:10000}") int compactionBatchSize) {
+        this.creditReservationRepository = creditReservationRepository;
+        this.customerRepository = customerRepository;
+        this.compactionBatchSize = compactionBatchSize;
+        // A power of two, so a stripe is picked with a mask
+        int stripeCount = Integer.highestOneBit(Math.max(1, lockStripes));
+        if (stripeCount < lockStripes) {
+            stripeCount <<= 1;
+        }
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Reserves {@code amount} of the customer's available credit for a new loan.
+     *
+     * @return false, reserving nothing, if the customer does not have enough credit left
+     * @throws CustomerNotFoundException if the customer does not exist
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public boolean tryReserve(Long customerId, Money amount) {
+        ReentrantLock stripe = stripe(customerId);
+        stripe.lock();
+        try {
+            CreditAccount account = account(customerId);
+            if (amount.minorUnits() > account.available()) {
+                return false;
+            }
+            account.used += amount.minorUnits();
+        } finally {
+            stripe.unlock();
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    adjust(customerId, -amount.minorUnits());
+                }
+            }
+        });
+        append(customerId, amount.toBigDecimal());
+        return true;
+    }
+
+    /**
+     * Returns the credit of a paid-off loan. It becomes available to new loans when the caller's transaction commits.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void release(Long customerId, Money amount) {
+        // Load the account before the entry exists, a later load would count the release a second time
+        ReentrantLock stripe = stripe(customerId);
+        stripe.lock();
+        try {
+            account(customerId);
+        } finally {
+            stripe.unlock();
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                adjust(customerId, -amount.minorUnits());
+            }
+        });
+        append(customerId, amount.toBigDecimal().negate());
+    }
+
+    /**
+     * Folds the oldest committed ledger entries into the used credit limit of their customers and deletes them.
+     * The in-memory view does not change, the credit just moves from the ledger to the customer row.
+     */
+    @Scheduled(fixedDelayString = "${loan.credit.compaction-interval:PT1M}")
+    @Transactional
+    public void compact() {
+        List<CreditReservation> entries = creditReservationRepository.findOldest(Limit.of(compactionBatchSize));
+        if (entries.isEmpty()) {
+            return;
+        }
+        // Deleting first makes a concurrent compaction of the same entries fail here instead of counting them twice
+        int deleted = creditReservationRepository.deleteByIds(entries.stream().map(CreditReservation::getId).toList());
+        if (deleted != entries.size()) {
+            throw new IllegalStateException("Credit ledger entries were compacted concurrently");
+        }
+        // Customer id order, so concurrent writers lock customer rows in the same order
+        Map<Long, BigDecimal> deltas = new TreeMap<>();
+        for (CreditReservation entry : entries) {
+            deltas.merge(entry.getCustomerId(), entry.getAmount(), BigDecimal::add);
+        }
+        deltas.forEach(customerRepository::addUsedCredit);
+        log.info("Compacted {} credit ledger entries of {} customers", entries.size(), deltas.size());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("loan.credit.accounts", accounts, Map::size)
+                .description("Customers whose available credit is held in memory")
+                .register(registry);
+    }
+
+    private ReentrantLock stripe(Long customerId) {
+        return stripes[Long.hashCode(customerId) & (stripes.length - 1)];
+    }
+
+    // Caller holds the customer's stripe
+    private CreditAccount account(Long customerId) {
+        CreditAccount account = accounts.get(customerId);
+        if (account == null) {
+            CreditPosition position = creditReservationRepository.findCreditPosition(customerId)
+                    .orElseThrow(() -> new CustomerNotFoundException(ErrorCode.CUSTOMER_NOT_FOUND,
+                            "Customer with ID %s not found.".formatted(customerId)));
+            account = new CreditAccount(position.creditLimit().minorUnits(), position.usedCredit().minorUnits());
+            accounts.put(customerId, account);
+        }
+        return account;
+    }
+
+    private void adjust(Long customerId, long usedDelta) {
+        ReentrantLock stripe = stripe(customerId);
+        stripe.lock();
+        try {
+            accounts.get(customerId).used += usedDelta;
+        } finally {
+            stripe.unlock();
+        }
+    }
+
+    private void append(Long customerId, BigDecimal amount) {
+        creditReservationRepository.save(CreditReservation.builder()
+                .customerId(customerId)
+                .amount(amount)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    // Credit limit and used credit of a customer, in minor units
+    private static final class CreditAccount {
+        private final long limit;
+        private long used;
+
+        private CreditAccount(long limit, long used) {
+            this.limit = limit;
+            this.used = used;
+        }
+
+        private long available() {
+            return limit - used;
+        }
+    }
+}
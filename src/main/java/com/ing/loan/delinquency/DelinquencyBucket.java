@@ -0,0 +1,26 @@
+package com.ing.loan.delinquency;
+
+/**
+ * Days-past-due bucket of a delinquent loan, counted from its oldest overdue installment.
+ * @author Suleyman Yildirim
+ */
+public enum DelinquencyBucket {
+
+    DPD_1_30,
+    DPD_31_60,
+    DPD_61_90,
+    DPD_91_PLUS;
+
+    public static DelinquencyBucket of(long daysPastDue) {
+        if (daysPastDue <= 0) {
+            throw new IllegalArgumentException("Not past due: " + daysPastDue);
+        }
+        if (daysPastDue <= 30) {
+            return DPD_1_30;
+        }
+        if (daysPastDue <= 60) {
+            return DPD_31_60;
+        }
+        return daysPastDue <= 90 ? DPD_61_90 : DPD_91_PLUS;
+    }
+}
@@ -0,0 +1,259 @@
+package com.ing.loan.delinquency;
+
+import com.ing.loan.entity.DelinquencySweepCheckpoint;
+import com.ing.loan.entity.LoanDelinquency;
+import com.ing.loan.export.OpenWriteTransactions;
+import com.ing.loan.repository.BucketCount;
+import com.ing.loan.repository.DelinquencySweepCheckpointRepository;
+import com.ing.loan.repository.LoanDelinquencyRepository;
+import com.ing.loan.repository.LoanIdRange;
+import com.ing.loan.repository.LoanInstallmentRepository;
+import com.ing.loan.repository.LoanRepository;
+import com.ing.loan.repository.OverdueTotals;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Nightly sweep that flags overdue installments and maintains the loan_delinquency summary table.
+ * <p>
+ * The loan id space is split into {@code partitions} ranges, swept by {@code parallelism} threads. Each range is
+ * walked in chunks of {@code chunk-size} loan ids; a chunk flags the unpaid installments of its loans that are past
+ * due, totals them per loan with one grouped query over idx_loan_installment_loan_paid_due, replaces the summaries
+ * of its loans, and advances the range's checkpoint, all in one transaction. Chunks by loan id rather than by due
+ * date keep every installment of a loan in the same chunk, so a loan's days past due are computed from all of them.
+ * <p>
+ * A sweep interrupted by a crash or a deployment resumes from the checkpoints, for the same as-of date, when the
+ * application starts again. Only one sweep runs at a time per instance; run the schedule on a single instance.
+ * @author Suleyman Yildirim
+ */
+@Slf4j
+@Service
+public class DelinquencySweep implements MeterBinder {
+
+    private final LoanRepository loanRepository;
+    private final LoanInstallmentRepository loanInstallmentRepository;
+    private final LoanDelinquencyRepository loanDelinquencyRepository;
+    private final DelinquencySweepCheckpointRepository checkpointRepository;
+    private final EntityManager entityManager;
+    private final OpenWriteTransactions openWriteTransactions;
+    private final TransactionTemplate transactionTemplate;
+    private final int partitions;
+    private final int parallelism;
+    private final int chunkSize;
+    private final boolean schedulingEnabled;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    // Delinquent loans per bucket as of the last sweep, published as gauges
+    private volatile Map<DelinquencyBucket, Long> delinquentLoans = new EnumMap<>(DelinquencyBucket.class);
+    private Timer sweepTimer;
+
+    public DelinquencySweep(LoanRepository loanRepository, LoanInstallmentRepository loanInstallmentRepository,
+                            LoanDelinquencyRepository loanDelinquencyRepository, DelinquencySweepCheckpointRepository checkpointRepository,
+                            EntityManager entityManager, OpenWriteTransactions openWriteTransactions,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${loan.delinquency.partitions:16}") int partitions,
+                            @Value("${loan.delinquency.parallelism:4}") int parallelism,
+                            @Value("${loan.delinquency.chunk-size:1000}") int chunkSize,
+                            @Value("${loan.scheduling.enabled:true}") boolean schedulingEnabled) {
+        this.loanRepository = loanRepository;
+        this.loanInstallmentRepository = loanInstallmentRepository;
+        this.loanDelinquencyRepository = loanDelinquencyRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.entityManager = entityManager;
+        this.openWriteTransactions = openWriteTransactions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.partitions = partitions;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+        this.schedulingEnabled = schedulingEnabled;
+    }
+
+    @Scheduled(cron = "${loan.delinquency.cron:0 30 1 * * *}")
+    public void nightlySweep() {
+        sweep(LocalDate.now());
+    }
+
+    // Finishes a sweep that was interrupted, in the background so startup is not delayed. Part of the schedule, so
+    // skipped where it is disabled. The threads are daemons: a shutdown abandons the chunks in flight, which roll back
+    // and are swept again from the checkpoints
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedSweep() {
+        if (!schedulingEnabled) {
+            return;
+        }
+        refreshDelinquentLoans();
+        checkpointRepository.findAll().stream()
+                .filter(checkpoint -> !checkpoint.isCompleted())
+                .findFirst()
+                .ifPresent(checkpoint -> Thread.ofPlatform().name("delinquency-sweep-resume").daemon()
+                        .start(() -> sweep(checkpoint.getAsOfDate())));
+    }
+
+    /**
+     * Sweeps every loan as of the given date, or resumes the sweep of that date if it was interrupted.
+     *
+     * @return false if a sweep is already running or a range failed; failed ranges resume on the next call
+     */
+    public boolean sweep(LocalDate asOf) {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Delinquency sweep as of {} skipped, a sweep is already running", asOf);
+            return false;
+        }
+        Timer.Sample sample = Timer.start();
+        try {
+            List<DelinquencySweepCheckpoint> pending = transactionTemplate.execute(transaction -> plan(asOf));
+            int delinquent = 0;
+            boolean failed = false;
+            try (ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                    Thread.ofPlatform().name("delinquency-sweep-", 0).daemon().factory())) {
+                List<Future<Integer>> results = new ArrayList<>(pending.size());
+                for (DelinquencySweepCheckpoint checkpoint : pending) {
+                    results.add(executor.submit(() -> sweepPartition(checkpoint, asOf)));
+                }
+                for (Future<Integer> result : results) {
+                    try {
+                        delinquent += result.get();
+                    } catch (ExecutionException e) {
+                        failed = true;
+                        log.error("Delinquency sweep as of {} failed for a loan id range, it resumes on the next run", asOf, e.getCause());
+                    }
+                }
+            }
+            refreshDelinquentLoans();
+            log.info("Delinquency sweep as of {} swept {} loan id ranges: {} delinquent loans found", asOf, pending.size(), delinquent);
+            return !failed;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            if (sweepTimer != null) {
+                sample.stop(sweepTimer);
+            }
+            running.set(false);
+        }
+    }
+
+    /**
+     * The ranges left to sweep: those of an interrupted sweep of the same date, or a new split of the loan ids.
+     * Package-private for the tests.
+     */
+    List<DelinquencySweepCheckpoint> plan(LocalDate asOf) {
+        List<DelinquencySweepCheckpoint> checkpoints = checkpointRepository.findAll();
+        if (!checkpoints.isEmpty() && checkpoints.get(0).getAsOfDate().equals(asOf)) {
+            return checkpoints.stream().filter(checkpoint -> !checkpoint.isCompleted()).toList();
+        }
+        checkpointRepository.deleteAllInBatch();
+        LoanIdRange range = loanRepository.findIdRange();
+        if (range.min() == null) {
+            return List.of();
+        }
+        // Ranges are (start, end], the first one starts just below the lowest id
+        long start = range.min() - 1;
+        long span = range.max() - start;
+        int count = (int) Math.min(partitions, span);
+        LocalDateTime now = LocalDateTime.now();
+        List<DelinquencySweepCheckpoint> created = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long end = i == count - 1 ? range.max() : range.min() - 1 + span * (i + 1) / count;
+            created.add(DelinquencySweepCheckpoint.builder()
+                    .partitionNo(i)
+                    .asOfDate(asOf)
+                    .rangeEnd(end)
+                    .lastLoanId(start)
+                    .completed(false)
+                    .updatedAt(now)
+                    .build());
+            start = end;
+        }
+        return checkpointRepository.saveAll(created);
+    }
+
+    private int sweepPartition(DelinquencySweepCheckpoint checkpoint, LocalDate asOf) {
+        int delinquent = 0;
+        long after = checkpoint.getLastLoanId();
+        while (after < checkpoint.getRangeEnd()) {
+            long chunkStart = after;
+            long chunkEnd = Math.min(after + chunkSize, checkpoint.getRangeEnd());
+            Integer found = transactionTemplate.execute(transaction ->
+                    sweepChunk(checkpoint.getPartitionNo(), chunkStart, chunkEnd, chunkEnd == checkpoint.getRangeEnd(), asOf));
+            delinquent += found == null ? 0 : found;
+            after = chunkEnd;
+        }
+        return delinquent;
+    }
+
+    /**
+     * Sweeps the loans in (afterLoanId, upToLoanId] and records the progress, in the current transaction.
+     * Package-private for the tests.
+     *
+     * @return the number of delinquent loans in the chunk
+     */
+    int sweepChunk(Integer partitionNo, long afterLoanId, long upToLoanId, boolean lastChunk, LocalDate asOf) {
+        openWriteTransactions.register();
+        loanInstallmentRepository.flagOverdue(afterLoanId, upToLoanId, asOf);
+        List<OverdueTotals> overdueLoans = loanInstallmentRepository.findOverdueTotals(afterLoanId, upToLoanId, asOf);
+        // Loans that are no longer delinquent lose their row
+        loanDelinquencyRepository.deleteByLoanIdRange(afterLoanId, upToLoanId);
+        for (OverdueTotals overdue : overdueLoans) {
+            int daysPastDue = (int) ChronoUnit.DAYS.between(overdue.oldestDueDate(), asOf);
+            // Inserted at commit as one JDBC batch
+            entityManager.persist(LoanDelinquency.builder()
+                    .loanId(overdue.loanId())
+                    .customerId(overdue.customerId())
+                    .overdueInstallments((int) overdue.overdueInstallments())
+                    .overdueAmount(overdue.overdueAmount())
+                    .oldestDueDate(overdue.oldestDueDate())
+                    .daysPastDue(daysPastDue)
+                    .bucket(DelinquencyBucket.of(daysPastDue))
+                    .asOfDate(asOf)
+                    .build());
+        }
+        checkpointRepository.advance(partitionNo, upToLoanId, lastChunk, LocalDateTime.now());
+        return overdueLoans.size();
+    }
+
+    private void refreshDelinquentLoans() {
+        Map<DelinquencyBucket, Long> counts = new EnumMap<>(DelinquencyBucket.class);
+        for (BucketCount bucketCount : loanDelinquencyRepository.countByBucket()) {
+            counts.put(bucketCount.bucket(), bucketCount.loans());
+        }
+        delinquentLoans = counts;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (DelinquencyBucket bucket : DelinquencyBucket.values()) {
+            Gauge.builder("loan.delinquency.loans", this, sweep -> sweep.delinquentLoans.getOrDefault(bucket, 0L))
+                    .description("Delinquent loans as of the last delinquency sweep")
+                    .tag("bucket", bucket.name())
+                    .register(registry);
+        }
+        sweepTimer = Timer.builder("loan.delinquency.sweep")
+                .description("Time taken by a delinquency sweep")
+                .register(registry);
+    }
+}
@@ -0,0 +1,38 @@
+package com.ing.loan.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * An entry of the credit reservation ledger, not yet compacted into {@link Customer#getUsedCreditLimit()}.
+ * @author Suleyman Yildirim
+ */
+
+@Entity
+@Table(name = "credit_reservation")
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreditReservation {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "credit_reservation_seq")
+    @SequenceGenerator(name = "credit_reservation_seq", sequenceName = "credit_reservation_seq", allocationSize = 50)
+    private Long id;
+
+    // Plain column rather than an association, appending an entry never loads the customer
+    @Column(nullable = false)
+    private Long customerId;
+
+    // Positive when credit is reserved for a new loan, negative when a paid-off loan releases it
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -1,9 +1,12 @@
 package com.ing.loan.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -14,6 +17,8 @@ import java.util.List;
 
 @Entity
 @Table(name = "customer")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Builder
 @Getter
 @Setter
@@ -23,7 +28,8 @@ import java.util.List;
 public class Customer {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "customer_seq")
+    @SequenceGenerator(name = "customer_seq", sequenceName = "customer_seq", allocationSize = 50)
     @Schema(description = "The unique identifier for the customer", example = "12345")
     private Long id;
 
@@ -43,6 +49,11 @@ public class Customer {
     @Schema(description = "The credit limit used by the customer", example = "20000.00")
     private BigDecimal usedCreditLimit;
 
+    // Incremented by the credit ledger compaction as well (CustomerRepository#addUsedCredit), so a stale customer update fails
+    @Version
+    @JsonIgnore
+    private Long version;
+
     @OneToMany(fetch = FetchType.LAZY, mappedBy = "customer", cascade = CascadeType.ALL, orphanRemoval = true)
     @JsonManagedReference // Prevents recursion and allows loans to be serialized
     @Schema(description = "The list of loans associated with the customer")
@@ -0,0 +1,42 @@
+package com.ing.loan.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the delinquency sweep over one range of loan ids, (lastLoanId, rangeEnd] being what is left.
+ * @author Suleyman Yildirim
+ */
+
+@Entity
+@Table(name = "delinquency_sweep_checkpoint")
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DelinquencySweepCheckpoint {
+
+    @Id
+    private Integer partitionNo;
+
+    @Column(nullable = false)
+    private LocalDate asOfDate;
+
+    // Highest loan id of the range, inclusive
+    @Column(nullable = false)
+    private Long rangeEnd;
+
+    // Highest loan id swept so far
+    @Column(nullable = false)
+    private Long lastLoanId;
+
+    @Column(nullable = false)
+    private boolean completed;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,31 @@
+package com.ing.loan.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Upper bound of the last snapshot export of a table: rows changed after it are exported by the next incremental export.
+ * @author Suleyman Yildirim
+ */
+
+@Entity
+@Table(name = "export_watermark")
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExportWatermark {
+
+    @Id
+    private String tableName;
+
+    // Rows whose updated_at is at or before it have been exported
+    @Column(nullable = false)
+    private LocalDateTime exportedUpTo;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,43 @@
+package com.ing.loan.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * The stored outcome of a request sent with an {@code Idempotency-Key} header.
+ * @author Suleyman Yildirim
+ */
+
+@Entity
+@Table(name = "idempotency_record")
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    // <operation>:<principal>:<idempotency key>
+    @Id
+    @Column(length = 512)
+    private String id;
+
+    // SHA-256 of the request body, so a key cannot be reused for a different request
+    @Column(nullable = false, length = 64)
+    private String requestHash;
+
+    // Null while the first request is still being processed
+    private Integer statusCode;
+
+    @Lob
+    private String responseBody;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    public boolean isCompleted() {
+        return statusCode != null;
+    }
+}
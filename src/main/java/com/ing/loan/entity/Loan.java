@@ -1,14 +1,21 @@
 package com.ing.loan.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.ing.loan.amortization.AmortizationMethod;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Positive;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.util.Arrays;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -17,6 +24,8 @@ import java.util.List;
 
 @Entity
 @Table(name = "loan")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Builder
 @Getter
 @Setter
@@ -24,8 +33,12 @@ import java.util.List;
 @AllArgsConstructor
 @Schema(description = "Represents a loan entity, including details about the loan amount, installments, customer, and loan status.")
 public class Loan {
+
+    public static final List<Integer> ALLOWED_INSTALLMENTS = List.of(6, 9, 12, 24);
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_seq")
+    @SequenceGenerator(name = "loan_seq", sequenceName = "loan_seq", allocationSize = 50)
     @Schema(description = "The unique identifier for the loan", example = "12345")
     private Long id;
 
@@ -45,6 +58,13 @@ public class Loan {
     @Positive
     private Integer numberOfInstallment;
 
+    @Enumerated(EnumType.STRING)
+    @JdbcTypeCode(SqlTypes.VARCHAR)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    @Schema(description = "How the loan is repaid over its installments", example = "FLAT")
+    private AmortizationMethod amortizationMethod = AmortizationMethod.FLAT;
+
     @Column(nullable = false)
     @Schema(description = "The date when the loan was created", example = "2024-01-15")
     private LocalDate createDate;
@@ -53,16 +73,54 @@ public class Loan {
     @Schema(description = "Indicates whether the loan has been fully paid", example = "false")
     private Boolean isPaid;
 
+    @Column(nullable = false)
+    @Builder.Default
+    @Schema(description = "The number of installments paid so far", example = "3")
+    private Integer paidInstallments = 0;
+
+    @Column(nullable = false)
+    @Builder.Default
+    @Schema(description = "The sum of the unpaid installments", example = "7500.00")
+    private BigDecimal remainingAmount = BigDecimal.ZERO;
+
+    @Schema(description = "The due date of the earliest unpaid installment, absent once the loan is paid", example = "2024-05-01")
+    private LocalDate nextDueDate;
+
+    @Schema(description = "The amount of the earliest unpaid installment, absent once the loan is paid", example = "833.33")
+    private BigDecimal nextDueAmount;
+
+    // Last change, the watermark of incremental snapshot exports
+    @UpdateTimestamp
+    @Column(nullable = false)
+    @JsonIgnore
+    private LocalDateTime updatedAt;
+
+    // Incremented by every payment (see LoanRepository#findVersionedById), so concurrent payments of one loan conflict
+    @Version
+    @JsonIgnore
+    private Long version;
+
     @OneToMany(mappedBy = "loan", cascade = CascadeType.ALL, orphanRemoval = true)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
     @Schema(description = "A list of installments associated with this loan")
     private List<LoanInstallment> installments; // A loan can have multiple installments.
 
 
+    /**
+     * Updates the balance summary after {@code installments} installments worth {@code amount} were paid.
+     * The next due date and amount are those of the earliest installment still unpaid, null if there is none.
+     */
+    public void recordPayment(int installments, BigDecimal amount, LocalDate nextDueDate, BigDecimal nextDueAmount) {
+        this.paidInstallments += installments;
+        this.remainingAmount = this.remainingAmount.subtract(amount);
+        this.nextDueDate = nextDueDate;
+        this.nextDueAmount = nextDueAmount;
+    }
+
     @PrePersist
     @PreUpdate
     public void validateInstallment() {
-        List<Integer> allowedInstallments = Arrays.asList(6, 9, 12, 24);
-        if (!allowedInstallments.contains(this.numberOfInstallment)) {
+        if (!ALLOWED_INSTALLMENTS.contains(this.numberOfInstallment)) {
             throw new IllegalArgumentException("Invalid number of installments. Valid values are 6, 9, 12, or 24.");
         }
     }
@@ -0,0 +1,51 @@
+package com.ing.loan.entity;
+
+import com.ing.loan.delinquency.DelinquencyBucket;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Delinquency summary of a loan with overdue installments, maintained by the delinquency sweep.
+ * @author Suleyman Yildirim
+ */
+
+@Entity
+@Table(name = "loan_delinquency")
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanDelinquency {
+
+    // The loan's id; rows are replaced rather than updated, so there is no association to load
+    @Id
+    private Long loanId;
+
+    @Column(nullable = false)
+    private Long customerId;
+
+    @Column(nullable = false)
+    private int overdueInstallments;
+
+    @Column(nullable = false)
+    private BigDecimal overdueAmount;
+
+    @Column(nullable = false)
+    private LocalDate oldestDueDate;
+
+    // Days between the oldest overdue due date and asOfDate
+    @Column(nullable = false)
+    private int daysPastDue;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private DelinquencyBucket bucket;
+
+    // Date of the sweep that computed the row
+    @Column(nullable = false)
+    private LocalDate asOfDate;
+}
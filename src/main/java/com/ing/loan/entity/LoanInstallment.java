@@ -1,12 +1,17 @@
 package com.ing.loan.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 /**
  * @author Suleyman Yildirim
@@ -14,6 +19,8 @@ import java.time.LocalDate;
 
 @Entity
 @Table(name = "loan_installment")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Builder
 @Getter
 @Setter
@@ -23,7 +30,8 @@ import java.time.LocalDate;
 public class LoanInstallment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "loan_installment_seq")
+    @SequenceGenerator(name = "loan_installment_seq", sequenceName = "loan_installment_seq", allocationSize = 50)
     @Schema(description = "The unique identifier for the loan installment", example = "12345")
     private Long id;
 
@@ -52,4 +60,20 @@ public class LoanInstallment {
     @Column(nullable = false)
     @Schema(description = "Indicates whether the installment has been paid", example = "true")
     private Boolean isPaid;
+
+    @Column(nullable = false)
+    @Builder.Default
+    @Schema(description = "Indicates whether the installment was unpaid past its due date at the last delinquency sweep", example = "false")
+    private Boolean isOverdue = false;
+
+    // Last change, the watermark of incremental snapshot exports; bulk updates in LoanInstallmentRepository set it themselves
+    @UpdateTimestamp
+    @Column(nullable = false)
+    @JsonIgnore
+    private LocalDateTime updatedAt;
+
+    // Bulk updates in LoanInstallmentRepository increment it themselves
+    @Version
+    @JsonIgnore
+    private Long version;
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.ing.loan.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A domain event waiting in the outbox to be relayed.
+ * @author Suleyman Yildirim
+ */
+
+@Entity
+@Table(name = "outbox_event")
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_event_seq")
+    @SequenceGenerator(name = "outbox_event_seq", sequenceName = "outbox_event_seq", allocationSize = 50)
+    private Long id;
+
+    // Id of the loan the event is about
+    @Column(nullable = false)
+    private Long aggregateId;
+
+    // Orders the events of one loan, see Outbox#append; ids do not, they come from per-instance sequence blocks
+    @Column(nullable = false)
+    private Long aggregateVersion;
+
+    // Simple name of the LoanEvent, e.g. LoanCreated
+    @Column(nullable = false, length = 50)
+    private String eventType;
+
+    // The event as JSON
+    @Lob
+    @Column(nullable = false)
+    private String payload;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -12,7 +12,14 @@ public enum ErrorCode {
     LOAN_INSTALLMENT_NOT_FOUND("LOAN_INSTALLMENT_NOT_FOUND"),
     CUSTOMER_EXISTS("CUSTOMER_EXISTS"),
     CUSTOMER_NOT_FOUND("CUSTOMER_NOT_FOUND"),
-    INSUFFICIENT_CREDIT("INSUFFICIENT_CREDIT");
+    INSUFFICIENT_CREDIT("INSUFFICIENT_CREDIT"),
+    INVALID_INSTALLMENTS("INVALID_INSTALLMENTS"),
+    IDEMPOTENCY_REQUEST_IN_PROGRESS("IDEMPOTENCY_REQUEST_IN_PROGRESS"),
+    IDEMPOTENCY_KEY_REUSED("IDEMPOTENCY_KEY_REUSED"),
+    CONCURRENT_MODIFICATION("CONCURRENT_MODIFICATION"),
+    PAYMENT_QUEUE_FULL("PAYMENT_QUEUE_FULL"),
+    INVALID_PAYMENT("INVALID_PAYMENT"),
+    EXPORT_IN_PROGRESS("EXPORT_IN_PROGRESS");
 
     private final String code;
 
@@ -0,0 +1,11 @@
+package com.ing.loan.exception;
+
+/**
+ * Thrown when a snapshot export is requested while another one is running.
+ * @author suleyman.yildirim
+ */
+public class ExportInProgressException extends BaseException {
+    public ExportInProgressException(ErrorCode errorCode, String message) {
+        super(errorCode, message);
+    }
+}
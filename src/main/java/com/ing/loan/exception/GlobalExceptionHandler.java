@@ -1,5 +1,9 @@
 package com.ing.loan.exception;
 
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.ConstraintViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -33,6 +37,44 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorDetails, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleIdempotencyConflictException(IdempotencyConflictException ex) {
+        Map<String, Object> errorDetails = new HashMap<>();
+        errorDetails.put("error", ex.getErrorCode().getCode());
+        errorDetails.put("message", ex.getMessage());
+        HttpStatus status = ex.getErrorCode() == ErrorCode.IDEMPOTENCY_KEY_REUSED ? HttpStatus.UNPROCESSABLE_ENTITY : HttpStatus.CONFLICT;
+        return new ResponseEntity<>(errorDetails, status);
+    }
+
+    // Raised once the retries on an optimistic lock conflict are exhausted; the client can retry the request
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        Map<String, Object> errorDetails = new HashMap<>();
+        errorDetails.put("error", ErrorCode.CONCURRENT_MODIFICATION.getCode());
+        errorDetails.put("message", "The request conflicted with concurrent changes, please retry");
+        return new ResponseEntity<>(errorDetails, HttpStatus.CONFLICT);
+    }
+
+    // The asynchronous payment queue of the loan is full; the client should back off and retry
+    @ExceptionHandler(PaymentQueueFullException.class)
+    public ResponseEntity<Map<String, Object>> handlePaymentQueueFullException(PaymentQueueFullException ex) {
+        Map<String, Object> errorDetails = new HashMap<>();
+        errorDetails.put("error", ex.getErrorCode().getCode());
+        errorDetails.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(errorDetails);
+    }
+
+    // Only one snapshot export runs at a time
+    @ExceptionHandler(ExportInProgressException.class)
+    public ResponseEntity<Map<String, Object>> handleExportInProgressException(ExportInProgressException ex) {
+        Map<String, Object> errorDetails = new HashMap<>();
+        errorDetails.put("error", ex.getErrorCode().getCode());
+        errorDetails.put("message", ex.getMessage());
+        return new ResponseEntity<>(errorDetails, HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, Object>> handleValidationExceptions(MethodArgumentNotValidException ex) {
         Map<String, Object> errorDetails = new HashMap<>();
@@ -48,5 +90,19 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<Map<String, Object>> handleConstraintViolationException(ConstraintViolationException ex) {
+        Map<String, Object> errorDetails = new HashMap<>();
+        errorDetails.put("error", "Invalid user input");
+
+        List<String> errorMessages = ex.getConstraintViolations()
+                .stream()
+                .map(ConstraintViolation::getMessage)
+                .toList();
+
+        errorDetails.put("message", errorMessages);
+        return new ResponseEntity<>(errorDetails, HttpStatus.BAD_REQUEST);
+    }
+
 }
 
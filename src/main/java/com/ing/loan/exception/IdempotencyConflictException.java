@@ -0,0 +1,11 @@
+package com.ing.loan.exception;
+
+/**
+ * Thrown when an Idempotency-Key is still being processed, or was used for a different request.
+ * @author suleyman.yildirim
+ */
+public class IdempotencyConflictException extends BaseException {
+    public IdempotencyConflictException(ErrorCode errorCode, String message) {
+        super(errorCode, message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.ing.loan.exception;
+
+/**
+ * Thrown when an asynchronous payment cannot be queued because its shard is full.
+ * @author suleyman.yildirim
+ */
+public class PaymentQueueFullException extends BaseException {
+    public PaymentQueueFullException(ErrorCode errorCode, String message) {
+        super(errorCode, message);
+    }
+}
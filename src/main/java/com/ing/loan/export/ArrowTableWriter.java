@@ -0,0 +1,193 @@
+package com.ing.loan.export;
+
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMicroVector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.message.IpcOption;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Copies the rows of a JDBC result set into an Arrow IPC file, column by column, without creating an object per row.
+ * <p>
+ * The Arrow schema follows the result set's columns: BIGINT, INTEGER, DECIMAL, BOOLEAN, DATE, TIMESTAMP (without
+ * time zone, in microseconds) and character columns. Rows are written in record batches of {@code batchSize} rows
+ * whose buffers are compressed with the given codec. The column buffers are reused from one batch to the next, so
+ * memory is bounded by the size of one batch, whatever the number of rows.
+ * @author Suleyman Yildirim
+ */
+final class ArrowTableWriter {
+
+    private ArrowTableWriter() {
+    }
+
+    /**
+     * Writes every remaining row of the result set to a new file.
+     *
+     * @return the number of rows written
+     */
+    static long write(ResultSet rows, Path file, Map<String, String> metadata, BufferAllocator allocator, int batchSize,
+                      CompressionUtil.CodecType codec) throws SQLException, IOException {
+        Schema schema = schemaOf(rows.getMetaData());
+        try (VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator);
+             FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             ArrowFileWriter writer = new ArrowFileWriter(root, new DictionaryProvider.MapDictionaryProvider(), channel,
+                     metadata, IpcOption.DEFAULT, CommonsCompressionFactory.INSTANCE, codec)) {
+            List<FieldVector> vectors = root.getFieldVectors();
+            ColumnCopier[] copiers = new ColumnCopier[vectors.size()];
+            for (int i = 0; i < copiers.length; i++) {
+                copiers[i] = copierOf(vectors.get(i), i + 1);
+            }
+            root.allocateNew();
+            writer.start();
+            long written = 0;
+            int batchRows = 0;
+            while (rows.next()) {
+                for (ColumnCopier copier : copiers) {
+                    copier.copy(rows, batchRows);
+                }
+                if (++batchRows == batchSize) {
+                    root.setRowCount(batchRows);
+                    writer.writeBatch();
+                    written += batchRows;
+                    batchRows = 0;
+                    // Keeps the buffers, so the next batch is written into the same memory
+                    vectors.forEach(ValueVector::reset);
+                }
+            }
+            if (batchRows > 0) {
+                root.setRowCount(batchRows);
+                writer.writeBatch();
+                written += batchRows;
+            }
+            writer.end();
+            return written;
+        }
+    }
+
+    private static Schema schemaOf(ResultSetMetaData columns) throws SQLException {
+        List<Field> fields = new ArrayList<>(columns.getColumnCount());
+        for (int column = 1; column <= columns.getColumnCount(); column++) {
+            String name = columns.getColumnLabel(column).toLowerCase(Locale.ROOT);
+            ArrowType type = switch (columns.getColumnType(column)) {
+                case Types.BIGINT -> new ArrowType.Int(64, true);
+                case Types.INTEGER, Types.SMALLINT, Types.TINYINT -> new ArrowType.Int(32, true);
+                // Unbounded numerics are declared with the largest precision a 128-bit decimal holds
+                case Types.DECIMAL, Types.NUMERIC -> new ArrowType.Decimal(
+                        columns.getPrecision(column) > 0 && columns.getPrecision(column) <= 38 ? columns.getPrecision(column) : 38,
+                        columns.getScale(column), 128);
+                case Types.BOOLEAN, Types.BIT -> ArrowType.Bool.INSTANCE;
+                case Types.DATE -> new ArrowType.Date(DateUnit.DAY);
+                case Types.TIMESTAMP -> new ArrowType.Timestamp(TimeUnit.MICROSECOND, null);
+                case Types.VARCHAR, Types.CHAR, Types.LONGVARCHAR, Types.NVARCHAR, Types.NCHAR -> ArrowType.Utf8.INSTANCE;
+                default -> throw new IllegalArgumentException("Column %s has unsupported type %s"
+                        .formatted(name, columns.getColumnTypeName(column)));
+            };
+            boolean nullable = columns.isNullable(column) != ResultSetMetaData.columnNoNulls;
+            fields.add(new Field(name, nullable ? FieldType.nullable(type) : FieldType.notNullable(type), null));
+        }
+        return new Schema(fields);
+    }
+
+    private static ColumnCopier copierOf(FieldVector vector, int column) {
+        return switch (vector) {
+            case BigIntVector longs -> (rows, row) -> {
+                long value = rows.getLong(column);
+                if (rows.wasNull()) {
+                    longs.setNull(row);
+                } else {
+                    longs.setSafe(row, value);
+                }
+            };
+            case IntVector ints -> (rows, row) -> {
+                int value = rows.getInt(column);
+                if (rows.wasNull()) {
+                    ints.setNull(row);
+                } else {
+                    ints.setSafe(row, value);
+                }
+            };
+            case DecimalVector decimals -> (rows, row) -> {
+                BigDecimal value = rows.getBigDecimal(column);
+                if (value == null) {
+                    decimals.setNull(row);
+                } else {
+                    decimals.setSafe(row, value.setScale(decimals.getScale()));
+                }
+            };
+            case BitVector booleans -> (rows, row) -> {
+                boolean value = rows.getBoolean(column);
+                if (rows.wasNull()) {
+                    booleans.setNull(row);
+                } else {
+                    booleans.setSafe(row, value ? 1 : 0);
+                }
+            };
+            case DateDayVector dates -> (rows, row) -> {
+                LocalDate value = rows.getObject(column, LocalDate.class);
+                if (value == null) {
+                    dates.setNull(row);
+                } else {
+                    dates.setSafe(row, (int) value.toEpochDay());
+                }
+            };
+            case TimeStampMicroVector timestamps -> (rows, row) -> {
+                LocalDateTime value = rows.getObject(column, LocalDateTime.class);
+                if (value == null) {
+                    timestamps.setNull(row);
+                } else {
+                    timestamps.setSafe(row, value.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + value.getNano() / 1_000);
+                }
+            };
+            case VarCharVector strings -> (rows, row) -> {
+                String value = rows.getString(column);
+                if (value == null) {
+                    strings.setNull(row);
+                } else {
+                    strings.setSafe(row, value.getBytes(StandardCharsets.UTF_8));
+                }
+            };
+            default -> throw new IllegalArgumentException("No copier for " + vector.getField());
+        };
+    }
+
+    // Copies one column of the current row of the result set into a row of its vector
+    @FunctionalInterface
+    private interface ColumnCopier {
+        void copy(ResultSet rows, int row) throws SQLException;
+    }
+}
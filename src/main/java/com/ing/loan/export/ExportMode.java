@@ -0,0 +1,11 @@
+package com.ing.loan.export;
+
+/**
+ * Rows a snapshot export writes: every row, or the rows changed since the last export of the table.
+ * @author Suleyman Yildirim
+ */
+public enum ExportMode {
+
+    FULL,
+    INCREMENTAL
+}
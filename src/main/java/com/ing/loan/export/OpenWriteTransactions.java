@@ -0,0 +1,75 @@
+package com.ing.loan.export;
+
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The transactions of this process that write loans or installments and have not completed yet, which bound
+ * incremental snapshot exports.
+ * <p>
+ * {@code updated_at} is stamped when a row is flushed, but the row only becomes visible when its transaction commits,
+ * which may be long after, e.g. for a large bulk payment chunk. An export bounded past the start of a transaction
+ * still open would move the watermark past rows it cannot see, and no later incremental export would pick them up.
+ * So services call {@link #register()} in their transaction before they stamp anything, and exports are bounded
+ * before the oldest transaction registered that has not completed.
+ * <p>
+ * Like the credit ledger, this only knows the transactions of this process: loans must not be written by more than
+ * one instance.
+ * @author Suleyman Yildirim
+ */
+@Component
+public class OpenWriteTransactions {
+
+    // Start time of each open transaction, keyed by a token bound to it. Guarded by this
+    private final Map<Object, LocalDateTime> startedAt = new HashMap<>();
+
+    /**
+     * Registers the caller's transaction, if it is not registered yet, until it commits or rolls back. Call it before
+     * anything is stamped, rows stamped by the transaction must not be older than its registration.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void register() {
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        Object transaction = new Object();
+        synchronized (this) {
+            startedAt.put(transaction, LocalDateTime.now());
+        }
+        TransactionSynchronizationManager.bindResource(this, transaction);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(OpenWriteTransactions.this);
+                synchronized (OpenWriteTransactions.this) {
+                    startedAt.remove(transaction);
+                }
+            }
+        });
+    }
+
+    /**
+     * The time up to which an export may cover the rows changed: {@code lag} ago, or just before the oldest open
+     * transaction if that is earlier. Truncated to the precision of the exported timestamps. A transaction registering
+     * after this returns starts after the bound, so none of its rows is at or before it.
+     */
+    public synchronized LocalDateTime changedUpTo(Duration lag) {
+        LocalDateTime upTo = LocalDateTime.now().minus(lag).truncatedTo(ChronoUnit.MICROS);
+        for (LocalDateTime started : startedAt.values()) {
+            // Rows are stamped at or after the start, which the database may round down to the microsecond
+            LocalDateTime beforeStart = started.truncatedTo(ChronoUnit.MICROS).minus(1, ChronoUnit.MICROS);
+            if (beforeStart.isBefore(upTo)) {
+                upTo = beforeStart;
+            }
+        }
+        return upTo;
+    }
+}
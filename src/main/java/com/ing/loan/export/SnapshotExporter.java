@@ -0,0 +1,246 @@
+package com.ing.loan.export;
+
+import com.ing.loan.entity.ExportWatermark;
+import com.ing.loan.exception.ErrorCode;
+import com.ing.loan.exception.ExportInProgressException;
+import com.ing.loan.repository.ExportWatermarkRepository;
+import com.ing.loan.response.ExportedTableResponse;
+import com.ing.loan.response.SnapshotExportResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Exports the loan and loan_installment tables to compressed Arrow IPC files in {@code directory}, for the data
+ * warehouse.
+ * <p>
+ * Each table is read through a forward-only, read-only JDBC cursor fetching {@code fetch-size} rows at a time and
+ * copied column by column into record batches of {@code batch-size} rows, so neither entities nor JSON are involved
+ * and memory stays bounded by one batch per table, capped at {@code max-memory}. Both tables are read in one
+ * repeatable-read transaction, so installments and their loans are exported as of the same moment.
+ * <p>
+ * The watermark is the {@code updated_at} column of each row. Rows are stamped when flushed but only visible once
+ * their transaction commits, so an export covers the rows changed up to just before the oldest write transaction
+ * still open (see {@link OpenWriteTransactions}), and at most up to {@code watermark-lag} ago, for rows written
+ * outside this process. Rows of the transactions still open are picked up by the first export after they commit.
+ * An incremental export writes the rows changed since the bound of the last export of the table, or every row if the
+ * table was never exported; the warehouse merges them by {@code id}. The bound is recorded only once both files are
+ * complete, so a failed export is repeated from the same watermark. Files are written under a {@code .part} name and
+ * renamed when complete.
+ * @author Suleyman Yildirim
+ */
+@Slf4j
+@Service
+public class SnapshotExporter implements MeterBinder, DisposableBean {
+
+    // Exported in this order; both have an updated_at column and an index on it
+    static final List<String> TABLES = List.of("loan", "loan_installment");
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+    private final DataSource dataSource;
+    private final ExportWatermarkRepository watermarkRepository;
+    private final OpenWriteTransactions openWriteTransactions;
+    private final Path directory;
+    private final Duration watermarkLag;
+    private final int fetchSize;
+    private final int batchSize;
+    private final CompressionUtil.CodecType compression;
+    private final BufferAllocator allocator;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private Timer exportTimer;
+    private final Map<String, Counter> exportedRows = new HashMap<>();
+
+    public SnapshotExporter(DataSource dataSource, ExportWatermarkRepository watermarkRepository,
+                            OpenWriteTransactions openWriteTransactions,
+                            @Value("${loan.export.directory:exports}") Path directory,
+                            @Value("${loan.export.watermark-lag:PT5M}") Duration watermarkLag,
+                            @Value("${loan.export.fetch-size:10000}") int fetchSize,
+                            @Value("${loan.export.batch-size:65536}") int batchSize,
+                            @Value("${loan.export.compression:ZSTD}") CompressionUtil.CodecType compression,
+                            @Value("${loan.export.max-memory:256MB}") DataSize maxMemory) {
+        this.dataSource = dataSource;
+        this.watermarkRepository = watermarkRepository;
+        this.openWriteTransactions = openWriteTransactions;
+        this.directory = directory;
+        this.watermarkLag = watermarkLag;
+        this.fetchSize = fetchSize;
+        this.batchSize = batchSize;
+        this.compression = compression;
+        this.allocator = new RootAllocator(maxMemory.toBytes());
+    }
+
+    // Disabled unless loan.export.cron is set, e.g. to 0 0 2 * * * for a nightly export
+    @Scheduled(cron = "${loan.export.cron:-}")
+    public void scheduledExport() {
+        try {
+            export(ExportMode.INCREMENTAL);
+        } catch (ExportInProgressException e) {
+            log.warn("Scheduled snapshot export skipped, an export is already running");
+        }
+    }
+
+    /**
+     * Exports both tables and advances their watermarks.
+     *
+     * @throws ExportInProgressException if an export is already running
+     */
+    public SnapshotExportResponse export(ExportMode mode) {
+        if (!running.compareAndSet(false, true)) {
+            throw new ExportInProgressException(ErrorCode.EXPORT_IN_PROGRESS, "A snapshot export is already running.");
+        }
+        Timer.Sample sample = Timer.start();
+        long startedAt = System.nanoTime();
+        List<Path> written = new ArrayList<>(TABLES.size());
+        try {
+            // Truncated to the precision of the exported timestamps, so the bound compares equal to the rows at it
+            LocalDateTime upTo = openWriteTransactions.changedUpTo(watermarkLag);
+            Files.createDirectories(directory);
+            List<ExportedTableResponse> tables = new ArrayList<>(TABLES.size());
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setReadOnly(true);
+                connection.setAutoCommit(false);
+                connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                try {
+                    for (String table : TABLES) {
+                        LocalDateTime changedAfter = mode == ExportMode.INCREMENTAL ? watermarkOf(table) : null;
+                        ExportedTableResponse exported = exportTable(connection, table, mode, changedAfter, upTo);
+                        written.add(Path.of(exported.getFile()));
+                        tables.add(exported);
+                    }
+                } finally {
+                    connection.rollback();
+                }
+            }
+            // Recorded only now, so a failed export is repeated from the same watermark
+            LocalDateTime now = LocalDateTime.now();
+            watermarkRepository.saveAll(TABLES.stream()
+                    .map(table -> ExportWatermark.builder().tableName(table).exportedUpTo(upTo).updatedAt(now).build())
+                    .toList());
+            long elapsedMillis = (System.nanoTime() - startedAt) / 1_000_000;
+            log.info("{} snapshot export of {} loans and {} installments finished in {} ms", mode,
+                    tables.get(0).getRows(), tables.get(1).getRows(), elapsedMillis);
+            return SnapshotExportResponse.builder()
+                    .mode(mode)
+                    .tables(tables)
+                    .elapsedMillis(elapsedMillis)
+                    .build();
+        } catch (SQLException | IOException | RuntimeException e) {
+            // The files of a failed export are removed, the warehouse only ever sees complete exports
+            written.forEach(SnapshotExporter::deleteQuietly);
+            if (e instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Snapshot export failed: " + e.getMessage(), e);
+        } finally {
+            if (exportTimer != null) {
+                sample.stop(exportTimer);
+            }
+            running.set(false);
+        }
+    }
+
+    private LocalDateTime watermarkOf(String table) {
+        return watermarkRepository.findById(table).map(ExportWatermark::getExportedUpTo).orElse(null);
+    }
+
+    private ExportedTableResponse exportTable(Connection connection, String table, ExportMode mode,
+                                              LocalDateTime changedAfter, LocalDateTime upTo) throws SQLException, IOException {
+        String name = "%s-%s-%s.arrow".formatted(table, mode.name().toLowerCase(Locale.ROOT), FILE_TIMESTAMP.format(upTo));
+        Path file = directory.resolve(name);
+        Path part = directory.resolve(name + ".part");
+        // No order by: the rows are streamed in whatever order the database reads them, without a sort
+        String sql = "SELECT * FROM " + table + " WHERE updated_at <= ?" + (changedAfter != null ? " AND updated_at > ?" : "");
+        Map<String, String> metadata = new HashMap<>();
+        metadata.put("table", table);
+        metadata.put("mode", mode.name());
+        metadata.put("changedUpTo", upTo.toString());
+        if (changedAfter != null) {
+            metadata.put("changedAfter", changedAfter.toString());
+        }
+        long rows;
+        try (PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(fetchSize);
+            statement.setObject(1, upTo);
+            if (changedAfter != null) {
+                statement.setObject(2, changedAfter);
+            }
+            try (ResultSet resultSet = statement.executeQuery();
+                 BufferAllocator tableAllocator = allocator.newChildAllocator(table, 0, allocator.getLimit())) {
+                rows = ArrowTableWriter.write(resultSet, part, metadata, tableAllocator, batchSize, compression);
+            }
+        } catch (SQLException | IOException | RuntimeException e) {
+            deleteQuietly(part);
+            throw e;
+        }
+        Files.move(part, file, StandardCopyOption.ATOMIC_MOVE);
+        Counter counter = exportedRows.get(table);
+        if (counter != null) {
+            counter.increment(rows);
+        }
+        return ExportedTableResponse.builder()
+                .table(table)
+                .file(file.toString())
+                .changedAfter(changedAfter)
+                .changedUpTo(upTo)
+                .rows(rows)
+                .bytes(Files.size(file))
+                .build();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        exportTimer = Timer.builder("loan.export")
+                .description("Time taken by a snapshot export")
+                .register(registry);
+        for (String table : TABLES) {
+            exportedRows.put(table, Counter.builder("loan.export.rows")
+                    .description("Rows written to snapshot export files")
+                    .tag("table", table)
+                    .register(registry));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        allocator.close();
+    }
+}
@@ -0,0 +1,72 @@
+package com.ing.loan.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.transaction.Transactional;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Business counters for the loan and payment hot paths.
+ * Latency of the service calls themselves is recorded with @Timed.
+ *
+ * @author Suleyman Yildirim
+ */
+@Component
+public class LoanMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Counter creditLimitRejections;
+    private final DistributionSummary installmentsPaid;
+
+    public LoanMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.creditLimitRejections = Counter.builder("loan.credit.rejections")
+                .description("Loan requests rejected because the customer's credit limit is exceeded")
+                .register(meterRegistry);
+        this.installmentsPaid = DistributionSummary.builder("loan.payment.installments.paid")
+                .description("Number of installments paid by a single payment")
+                .serviceLevelObjectives(0, 1, 2, 3, 6, 12, 24)
+                .register(meterRegistry);
+    }
+
+    public void recordCreditLimitRejection() {
+        creditLimitRejections.increment();
+    }
+
+    public void recordInstallmentsPaid(int count) {
+        installmentsPaid.record(count);
+    }
+
+    /**
+     * Records the installments paid by a payment once the caller's transaction commits, so attempts that are rolled
+     * back, and retried, are not counted.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void recordInstallmentsPaidOnCommit(int count) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                installmentsPaid.record(count);
+            }
+        });
+    }
+
+    public void recordOptimisticLockConflict(String operation) {
+        Counter.builder("loan.optimistic-lock.conflicts")
+                .description("Attempts that failed because a row they updated was changed concurrently")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordRetriesExhausted(String operation) {
+        Counter.builder("loan.optimistic-lock.retries.exhausted")
+                .description("Operations that still conflicted after every retry and were rejected")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
+}
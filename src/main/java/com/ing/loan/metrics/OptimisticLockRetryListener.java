@@ -0,0 +1,42 @@
+package com.ing.loan.metrics;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.RetryListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts optimistic lock conflicts of @Retryable service methods, tagged with their retry label.
+ * Spring Retry applies every RetryListener bean to all @Retryable methods.
+ *
+ * @author Suleyman Yildirim
+ */
+@Component
+public class OptimisticLockRetryListener implements RetryListener {
+
+    private final LoanMetrics loanMetrics;
+
+    public OptimisticLockRetryListener(LoanMetrics loanMetrics) {
+        this.loanMetrics = loanMetrics;
+    }
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (throwable instanceof OptimisticLockingFailureException) {
+            loanMetrics.recordOptimisticLockConflict(operation(context));
+        }
+    }
+
+    @Override
+    public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        if (throwable instanceof OptimisticLockingFailureException) {
+            loanMetrics.recordRetriesExhausted(operation(context));
+        }
+    }
+
+    private static String operation(RetryContext context) {
+        Object label = context.getAttribute(RetryContext.NAME);
+        return label != null ? label.toString() : "unknown";
+    }
+}
@@ -0,0 +1,28 @@
+package com.ing.loan.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread, so the number of
+ * statements issued while serving a request can be recorded by {@link StatementCountFilter}.
+ *
+ * @author Suleyman Yildirim
+ */
+public class StatementCountingInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> STATEMENT_COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENT_COUNT.get()[0]++;
+        return sql;
+    }
+
+    static void reset() {
+        STATEMENT_COUNT.get()[0] = 0;
+    }
+
+    static int count() {
+        return STATEMENT_COUNT.get()[0];
+    }
+}
@@ -0,0 +1,100 @@
+package com.ing.loan.money;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * An amount of money held as a {@code long} number of minor units (cents), for the schedule and payment
+ * arithmetic on hot paths. Every amount in this service is in one currency with {@link #SCALE} fraction
+ * digits, the scale of the amount columns in the schema.
+ * <p>
+ * Amounts enter and leave as {@link BigDecimal} only at the JPA and JSON boundaries, through
+ * {@link #of(BigDecimal)} and {@link #toBigDecimal()}. Arithmetic is exact and throws
+ * {@link ArithmeticException} on overflow instead of wrapping.
+ * @author Suleyman Yildirim
+ */
+public record Money(long minorUnits) implements Comparable<Money> {
+
+    // Fraction digits of the currency
+    public static final int SCALE = 2;
+
+    // Rounding applied when an amount with more fraction digits enters the money type
+    public static final RoundingMode ROUNDING = RoundingMode.HALF_UP;
+
+    public static final Money ZERO = new Money(0);
+
+    /**
+     * Converts an amount, rounding it to {@link #SCALE} fraction digits with {@link #ROUNDING}.
+     */
+    public static Money of(BigDecimal amount) {
+        return new Money(amount.setScale(SCALE, ROUNDING).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Converts a tendered amount, dropping fraction digits beyond {@link #SCALE}, so a payment is never
+     * credited with more than was paid.
+     */
+    public static Money tendered(BigDecimal amount) {
+        return new Money(amount.setScale(SCALE, RoundingMode.DOWN).unscaledValue().longValueExact());
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(minorUnits, other.minorUnits));
+    }
+
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(minorUnits, other.minorUnits));
+    }
+
+    public Money times(long multiplier) {
+        return new Money(Math.multiplyExact(minorUnits, multiplier));
+    }
+
+    /**
+     * The share of each of {@code parts} equal installments, rounded down to a minor unit.
+     * The cents lost to rounding go to the last installment, see {@link #lastShare(int)}.
+     */
+    public Money evenShare(int parts) {
+        return new Money(Math.floorDiv(minorUnits, parts));
+    }
+
+    /**
+     * The share of the last of {@code parts} installments: the even share plus every remainder cent,
+     * so that the installments add up exactly to this amount.
+     */
+    public Money lastShare(int parts) {
+        return minus(evenShare(parts).times(parts - 1L));
+    }
+
+    /**
+     * {@code numerator / denominator} of this amount, rounded down to a minor unit.
+     */
+    public Money proportion(long numerator, long denominator) {
+        try {
+            return new Money(Math.floorDiv(Math.multiplyExact(minorUnits, numerator), denominator));
+        } catch (ArithmeticException overflow) {
+            // Only for amounts far beyond any real loan; the result itself still has to fit a long
+            return new Money(BigInteger.valueOf(minorUnits).multiply(BigInteger.valueOf(numerator))
+                    .divide(BigInteger.valueOf(denominator)).longValueExact());
+        }
+    }
+
+    public boolean isGreaterThan(Money other) {
+        return minorUnits > other.minorUnits;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.ing.loan.outbox;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Domain events of a loan, published to downstream systems through the outbox.
+ * @author Suleyman Yildirim
+ */
+public sealed interface LoanEvent {
+
+    Long loanId();
+
+    record LoanCreated(Long loanId, Long customerId, BigDecimal loanAmount, int numberOfInstallment,
+                       LocalDate createDate) implements LoanEvent {
+    }
+
+    record InstallmentPaid(Long loanId, Long installmentId, BigDecimal amount, LocalDate paymentDate) implements LoanEvent {
+    }
+
+    record LoanFullyPaid(Long loanId, Long customerId, BigDecimal loanAmount, LocalDate paymentDate) implements LoanEvent {
+    }
+}
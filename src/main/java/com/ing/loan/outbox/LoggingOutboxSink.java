@@ -0,0 +1,21 @@
+package com.ing.loan.outbox;
+
+import com.ing.loan.entity.OutboxEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+/**
+ * Writes every event to the application log, for local development.
+ * @author Suleyman Yildirim
+ */
+@Slf4j
+public class LoggingOutboxSink implements OutboxSink {
+
+    @Override
+    public void publish(List<OutboxEvent> events) {
+        for (OutboxEvent event : events) {
+            log.info("Outbox event {} {} of loan {}: {}", event.getId(), event.getEventType(), event.getAggregateId(), event.getPayload());
+        }
+    }
+}
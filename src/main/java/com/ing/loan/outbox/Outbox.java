@@ -0,0 +1,64 @@
+package com.ing.loan.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ing.loan.entity.OutboxEvent;
+import com.ing.loan.repository.OutboxEventRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+
+/**
+ * Records loan events in the outbox table, in the transaction of the change they describe, so an event is
+ * published if and only if its change commits. {@link OutboxRelay} delivers them to the configured sink.
+ * @author Suleyman Yildirim
+ */
+@Component
+public class Outbox {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<OutboxRelay> relay;
+
+    public Outbox(OutboxEventRepository outboxEventRepository, ObjectMapper objectMapper, ObjectProvider<OutboxRelay> relay) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.objectMapper = objectMapper;
+        this.relay = relay;
+    }
+
+    /**
+     * Records an event in the current transaction.
+     *
+     * @param loanVersion orders the events of the loan: greater than the version of the loan the transaction read
+     *                    and no greater than the version it commits, e.g. 0 for a new loan, or the version read plus
+     *                    one for a loan loaded with {@code OPTIMISTIC_FORCE_INCREMENT}. Changes of a loan are
+     *                    serialized by its version, so the events of a later change always get a higher value.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void append(LoanEvent event, long loanVersion) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + event, e);
+        }
+        outboxEventRepository.save(OutboxEvent.builder()
+                .aggregateId(event.loanId())
+                .aggregateVersion(loanVersion)
+                .eventType(event.getClass().getSimpleName())
+                .payload(payload)
+                .createdAt(LocalDateTime.now())
+                .build());
+        // Relay right after the commit instead of waiting for the next poll
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                relay.ifAvailable(OutboxRelay::wakeUp);
+            }
+        });
+    }
+}
@@ -0,0 +1,149 @@
+package com.ing.loan.outbox;
+
+import com.ing.loan.entity.OutboxEvent;
+import com.ing.loan.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers the events of the outbox table to the {@link OutboxSink}.
+ * <p>
+ * A single worker thread takes the next {@code batch-size} events, publishes them and deletes them in one
+ * transaction, and repeats while full batches come back. It is woken up when a transaction that appended events
+ * commits, so the table is only polled every {@code poll-interval} as a safety net, e.g. for events left behind
+ * by a crash, instead of being queried continuously. A failing sink is retried after {@code failure-backoff}.
+ * <p>
+ * Events are ordered per loan only, not across loans. Ids do not give that order: they come from per-instance
+ * sequence blocks and a lower id may still be in flight when a higher one commits. Instead each event carries a
+ * version of its loan (see {@link Outbox#append}), and a change of a loan only commits after the one before it, so
+ * once an event is visible, every earlier event of its loan is too. Batches take each loan's events in version
+ * and id order, and the loans in the order of their oldest pending event, so none waits behind newer events of others.
+ * Delivery is at least once.
+ * Run the relay on one instance only, disabling it elsewhere with {@code loan.outbox.relay.enabled=false}.
+ * @author Suleyman Yildirim
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "loan.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+public class OutboxRelay implements MeterBinder, DisposableBean {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxSink sink;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration failureBackoff;
+    private final Semaphore wakeUps = new Semaphore(0);
+    private final Thread worker;
+
+    private volatile boolean running = true;
+    private Counter publishedEvents;
+    private Counter publishFailures;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository, OutboxSink sink, PlatformTransactionManager transactionManager,
+                       @Value("${loan.outbox.batch-size:500}") int batchSize,
+                       @Value("${loan.outbox.poll-interval:PT10S}") Duration pollInterval,
+                       @Value("${loan.outbox.failure-backoff:PT5S}") Duration failureBackoff) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.sink = sink;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.failureBackoff = failureBackoff;
+        this.worker = Thread.ofPlatform().name("outbox-relay").daemon().start(this::run);
+    }
+
+    /**
+     * Asks the relay to look for new events now rather than at the next poll.
+     */
+    public void wakeUp() {
+        if (wakeUps.availablePermits() == 0) {
+            wakeUps.release();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                wakeUps.tryAcquire(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                // Wake-ups so far are covered by the batches below; commits from here on wake the relay again
+                wakeUps.drainPermits();
+                while (running && relayBatch() == batchSize) {
+                    // Keep going until the backlog is drained
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Failed to relay outbox events, retrying in {}: {}", failureBackoff, e.getMessage());
+                if (publishFailures != null) {
+                    publishFailures.increment();
+                }
+                try {
+                    Thread.sleep(failureBackoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes and deletes the oldest batch of events. Package-private for the tests.
+     *
+     * @return the number of events relayed
+     */
+    int relayBatch() {
+        Integer relayed = transactionTemplate.execute(transaction -> {
+            List<OutboxEvent> events = outboxEventRepository.findNextBatch(Limit.of(batchSize));
+            if (events.isEmpty()) {
+                return 0;
+            }
+            try {
+                sink.publish(events);
+            } catch (Exception e) {
+                // Rolls back, the batch stays in the table and is published again
+                throw e instanceof RuntimeException runtime ? runtime : new IllegalStateException(e.getMessage(), e);
+            }
+            outboxEventRepository.deleteByIds(events.stream().map(OutboxEvent::getId).toList());
+            return events.size();
+        });
+        int count = relayed == null ? 0 : relayed;
+        if (publishedEvents != null) {
+            publishedEvents.increment(count);
+        }
+        return count;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        publishedEvents = Counter.builder("loan.outbox.published")
+                .description("Outbox events delivered to the sink")
+                .register(registry);
+        publishFailures = Counter.builder("loan.outbox.publish.failures")
+                .description("Outbox batches that failed to be delivered and will be retried")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        worker.interrupt();
+        worker.join(TimeUnit.SECONDS.toMillis(30));
+    }
+}
@@ -0,0 +1,22 @@
+package com.ing.loan.outbox;
+
+import com.ing.loan.entity.OutboxEvent;
+
+import java.util.List;
+
+/**
+ * Destination of the events relayed from the outbox, e.g. a message broker.
+ * <p>
+ * Events are delivered at least once: a batch is deleted from the outbox only after {@link #publish} returns,
+ * and a batch that failed or was interrupted by a crash is published again. Consumers should deduplicate by
+ * {@link OutboxEvent#getId()}. Select a sink with {@code loan.outbox.sink}, or set it to {@code custom} and
+ * declare an OutboxSink bean.
+ * @author Suleyman Yildirim
+ */
+public interface OutboxSink {
+
+    /**
+     * Publishes a batch of events, in order. Throw if any of them could not be published.
+     */
+    void publish(List<OutboxEvent> events) throws Exception;
+}
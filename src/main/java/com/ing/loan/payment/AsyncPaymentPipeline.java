@@ -0,0 +1,229 @@
+package com.ing.loan.payment;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ing.loan.exception.ErrorCode;
+import com.ing.loan.exception.LoanInstallmentNotFoundException;
+import com.ing.loan.exception.LoanNotFoundException;
+import com.ing.loan.exception.PaymentQueueFullException;
+import com.ing.loan.response.LoanPaymentResponse;
+import com.ing.loan.response.PaymentTrackingResponse;
+import com.ing.loan.response.PaymentTrackingResponse.Status;
+import com.ing.loan.service.PaymentService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies payments accepted by {@code POST /v1/pay-loan/async} in the background.
+ * <p>
+ * Payments are queued into one of a fixed number of bounded shards picked by loan id, so the payments of a loan
+ * are applied one at a time and in the order they were accepted. Each shard has a single worker thread that takes
+ * up to {@code batch-size} queued payments and commits them in one transaction, which amortizes the commit over
+ * many loans when payments arrive in bursts. If the batch transaction fails, e.g. on an optimistic lock conflict
+ * with a synchronous payment, its payments are applied again one by one through {@link PaymentService#payLoan},
+ * with its retries. A full shard rejects new payments instead of growing.
+ * <p>
+ * Queued payments live in memory only and are lost if the process dies; clients that cannot tolerate that
+ * should keep using the synchronous endpoint. Results can be queried for {@code status-ttl} after they are known.
+ * @author Suleyman Yildirim
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "loan.payments.async.enabled", havingValue = "true")
+public class AsyncPaymentPipeline implements MeterBinder, DisposableBean {
+
+    private final PaymentService paymentService;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final List<BlockingQueue<QueuedPayment>> shards;
+    private final List<Thread> workers;
+    private final Cache<UUID, PaymentTrackingResponse> statuses;
+
+    private volatile boolean running = true;
+    private Counter rejectedPayments;
+    private DistributionSummary batchSizes;
+
+    public AsyncPaymentPipeline(PaymentService paymentService, PlatformTransactionManager transactionManager,
+                                @Value("${loan.payments.async.shards:4}") int shardCount,
+                                @Value("${loan.payments.async.queue-capacity:10000}") int queueCapacity,
+                                @Value("${loan.payments.async.batch-size:100}") int batchSize,
+                                @Value("${loan.payments.async.status-ttl:1h}") Duration statusTtl,
+                                @Value("${loan.payments.async.status-cache-size:100000}") long statusCacheSize) {
+        this.paymentService = paymentService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.statuses = Caffeine.newBuilder()
+                .expireAfterWrite(statusTtl)
+                .maximumSize(statusCacheSize)
+                .build();
+        this.shards = new ArrayList<>(shardCount);
+        this.workers = new ArrayList<>(shardCount);
+        int shardCapacity = Math.max(1, queueCapacity / shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            BlockingQueue<QueuedPayment> shard = new ArrayBlockingQueue<>(shardCapacity);
+            shards.add(shard);
+            workers.add(Thread.ofPlatform().name("payment-shard-" + i).daemon().unstarted(() -> drain(shard)));
+        }
+        workers.forEach(Thread::start);
+    }
+
+    /**
+     * Queues a payment and returns its tracking state.
+     *
+     * @throws PaymentQueueFullException if the shard of the loan is full
+     */
+    public PaymentTrackingResponse submit(Long loanId, BigDecimal paymentAmount) {
+        QueuedPayment payment = new QueuedPayment(UUID.randomUUID(), loanId, paymentAmount);
+        PaymentTrackingResponse queued = PaymentTrackingResponse.builder()
+                .trackingId(payment.trackingId())
+                .loanId(loanId)
+                .status(Status.QUEUED)
+                .build();
+        // Known before the worker can complete it, so a completed status is never overwritten with QUEUED
+        statuses.put(payment.trackingId(), queued);
+        if (!running || !shards.get(Math.floorMod(Long.hashCode(loanId), shards.size())).offer(payment)) {
+            statuses.invalidate(payment.trackingId());
+            if (rejectedPayments != null) {
+                rejectedPayments.increment();
+            }
+            throw new PaymentQueueFullException(ErrorCode.PAYMENT_QUEUE_FULL, "Too many payments are waiting, please retry later");
+        }
+        return queued;
+    }
+
+    public Optional<PaymentTrackingResponse> status(UUID trackingId) {
+        return Optional.ofNullable(statuses.getIfPresent(trackingId));
+    }
+
+    private void drain(BlockingQueue<QueuedPayment> shard) {
+        List<QueuedPayment> batch = new ArrayList<>(batchSize);
+        while (running || !shard.isEmpty()) {
+            try {
+                QueuedPayment first = shard.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                shard.drainTo(batch, batchSize - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Keep the shard alive; the payments of the batch are reported as failed
+                log.error("Failed to apply a batch of {} payments", batch.size(), e);
+                batch.forEach(payment -> complete(payment, Status.FAILED, error(e.getMessage())));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Applies a batch in one transaction, or each payment in its own transaction if the batch fails.
+     * Package-private for the tests.
+     */
+    void apply(List<QueuedPayment> batch) {
+        Map<QueuedPayment, PaymentTrackingResponse> outcomes = new LinkedHashMap<>();
+        try {
+            transactionTemplate.executeWithoutResult(transaction -> {
+                outcomes.clear();
+                for (QueuedPayment payment : batch) {
+                    outcomes.put(payment, applyInBatch(payment));
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("Batch of {} payments rolled back, applying them one by one: {}", batch.size(), e.getMessage());
+            outcomes.clear();
+            for (QueuedPayment payment : batch) {
+                outcomes.put(payment, applyAlone(payment));
+            }
+        }
+        if (batchSizes != null) {
+            batchSizes.record(batch.size());
+        }
+        outcomes.forEach((payment, outcome) -> statuses.put(payment.trackingId(), outcome));
+    }
+
+    // Business failures are reported on the payment; anything else rolls back the whole batch
+    private PaymentTrackingResponse applyInBatch(QueuedPayment payment) {
+        try {
+            return outcome(payment, Status.COMPLETED, paymentService.applyPayment(payment.loanId(), payment.paymentAmount()));
+        } catch (LoanNotFoundException | LoanInstallmentNotFoundException e) {
+            return outcome(payment, Status.FAILED, error(e.getMessage()));
+        }
+    }
+
+    private PaymentTrackingResponse applyAlone(QueuedPayment payment) {
+        try {
+            return outcome(payment, Status.COMPLETED, paymentService.payLoan(payment.loanId(), payment.paymentAmount()));
+        } catch (RuntimeException e) {
+            return outcome(payment, Status.FAILED, error(e.getMessage()));
+        }
+    }
+
+    private void complete(QueuedPayment payment, Status status, LoanPaymentResponse result) {
+        statuses.put(payment.trackingId(), outcome(payment, status, result));
+    }
+
+    private static PaymentTrackingResponse outcome(QueuedPayment payment, Status status, LoanPaymentResponse result) {
+        return PaymentTrackingResponse.builder()
+                .trackingId(payment.trackingId())
+                .loanId(payment.loanId())
+                .status(status)
+                .payment(result)
+                .build();
+    }
+
+    private static LoanPaymentResponse error(String message) {
+        return LoanPaymentResponse.builder().errorMessage(message).build();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("loan.payment.async.queued", shards, queues -> queues.stream().mapToInt(BlockingQueue::size).sum())
+                .description("Payments waiting in the asynchronous payment queues")
+                .register(registry);
+        rejectedPayments = Counter.builder("loan.payment.async.rejected")
+                .description("Payments rejected because their queue was full")
+                .register(registry);
+        batchSizes = DistributionSummary.builder("loan.payment.async.batch.size")
+                .description("Payments committed together in one transaction")
+                .serviceLevelObjectives(1, 10, 50, 100)
+                .register(registry);
+    }
+
+    // Stops accepting payments and lets the workers apply what is already queued
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    record QueuedPayment(UUID trackingId, Long loanId, BigDecimal paymentAmount) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.ing.loan.repository;
+
+import com.ing.loan.delinquency.DelinquencyBucket;
+
+/**
+ * Number of delinquent loans in a days-past-due bucket.
+ * @author Suleyman Yildirim
+ */
+public record BucketCount(DelinquencyBucket bucket, long loans) {
+}
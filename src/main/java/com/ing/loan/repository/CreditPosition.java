@@ -0,0 +1,17 @@
+package com.ing.loan.repository;
+
+import com.ing.loan.money.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Credit limit of a customer and the credit in use, including ledger entries that are not compacted yet.
+ * @author Suleyman Yildirim
+ */
+public record CreditPosition(Money creditLimit, Money usedCredit) {
+
+    // Used by the JPQL constructor expression
+    public CreditPosition(BigDecimal creditLimit, BigDecimal usedCredit) {
+        this(Money.of(creditLimit), Money.of(usedCredit));
+    }
+}
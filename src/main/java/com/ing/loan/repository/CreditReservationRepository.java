@@ -0,0 +1,34 @@
+package com.ing.loan.repository;
+
+import com.ing.loan.entity.CreditReservation;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Repository
+public interface CreditReservationRepository extends JpaRepository<CreditReservation, Long> {
+
+    // Limit and used credit of a customer in one statement, so a concurrent compaction is seen either entirely or not at all
+    @Query("select new com.ing.loan.repository.CreditPosition(c.creditLimit, " +
+            "c.usedCreditLimit + coalesce((select sum(r.amount) from CreditReservation r where r.customerId = c.id), 0)) " +
+            "from Customer c where c.id = :customerId")
+    Optional<CreditPosition> findCreditPosition(@Param("customerId") Long customerId);
+
+    // Oldest committed entries, the next batch to compact
+    @Query("select r from CreditReservation r order by r.id asc")
+    List<CreditReservation> findOldest(Limit limit);
+
+    @Modifying
+    @Query("delete from CreditReservation r where r.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,27 @@
+package com.ing.loan.repository;
+
+import com.ing.loan.money.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Outstanding balance of a customer's loans against the customer's credit limit.
+ * @author Suleyman Yildirim
+ */
+public record CustomerExposure(Long customerId, Money creditLimit, Money outstanding) {
+
+    // Used by the JPQL constructor expression; the amounts are converted once, as the row is read
+    public CustomerExposure(Long customerId, BigDecimal creditLimit, BigDecimal outstanding) {
+        this(customerId, Money.of(creditLimit), Money.of(outstanding));
+    }
+
+    /**
+     * The outstanding balance as a fraction of the credit limit; infinite if a customer without credit owes anything.
+     */
+    public double utilization() {
+        if (creditLimit.minorUnits() <= 0) {
+            return outstanding.minorUnits() > 0 ? Double.POSITIVE_INFINITY : 0;
+        }
+        return (double) outstanding.minorUnits() / creditLimit.minorUnits();
+    }
+}
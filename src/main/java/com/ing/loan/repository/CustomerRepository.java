@@ -2,12 +2,22 @@ package com.ing.loan.repository;
 
 import com.ing.loan.entity.Customer;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+
 /**
  * @author Suleyman Yildirim
  */
 @Repository
 public interface CustomerRepository extends JpaRepository<Customer, Long> {
     // Add custom queries if needed
+
+    // Folds compacted credit ledger entries into the used credit limit
+    @Modifying
+    @Query("update Customer c set c.usedCreditLimit = c.usedCreditLimit + :delta, c.version = c.version + 1 where c.id = :id")
+    int addUsedCredit(@Param("id") Long id, @Param("delta") BigDecimal delta);
 }
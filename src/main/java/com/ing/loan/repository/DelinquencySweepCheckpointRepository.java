@@ -0,0 +1,24 @@
+package com.ing.loan.repository;
+
+import com.ing.loan.entity.DelinquencySweepCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Repository
+public interface DelinquencySweepCheckpointRepository extends JpaRepository<DelinquencySweepCheckpoint, Integer> {
+
+    // Records that a partition has been swept up to lastLoanId, in the transaction of that chunk
+    @Modifying
+    @Query("update DelinquencySweepCheckpoint c set c.lastLoanId = :lastLoanId, c.completed = :completed, c.updatedAt = :updatedAt " +
+            "where c.partitionNo = :partitionNo")
+    int advance(@Param("partitionNo") Integer partitionNo, @Param("lastLoanId") Long lastLoanId,
+                @Param("completed") boolean completed, @Param("updatedAt") LocalDateTime updatedAt);
+}
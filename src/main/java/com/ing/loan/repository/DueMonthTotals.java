@@ -0,0 +1,10 @@
+package com.ing.loan.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Unpaid installments falling due in a calendar month, totalled by the database.
+ * @author Suleyman Yildirim
+ */
+public record DueMonthTotals(int year, int month, long installments, BigDecimal amount) {
+}
@@ -0,0 +1,12 @@
+package com.ing.loan.repository;
+
+import com.ing.loan.entity.ExportWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Repository
+public interface ExportWatermarkRepository extends JpaRepository<ExportWatermark, String> {
+}
@@ -0,0 +1,40 @@
+package com.ing.loan.repository;
+
+import com.ing.loan.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    // Claims a key with a plain insert, so a concurrent claim of the same key fails on the primary key
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO idempotency_record (id, request_hash, created_at) VALUES (:id, :requestHash, :createdAt)", nativeQuery = true)
+    int insertClaim(@Param("id") String id, @Param("requestHash") String requestHash, @Param("createdAt") LocalDateTime createdAt);
+
+    @Modifying
+    @Transactional
+    @Query("update IdempotencyRecord r set r.statusCode = :statusCode, r.responseBody = :responseBody where r.id = :id")
+    int complete(@Param("id") String id, @Param("statusCode") int statusCode, @Param("responseBody") String responseBody);
+
+    // Releases an unfinished claim so the request can be retried
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.id = :id and r.statusCode is null")
+    int release(@Param("id") String id);
+
+    @Modifying
+    @Transactional
+    @Query("delete from IdempotencyRecord r where r.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,25 @@
+package com.ing.loan.repository;
+
+import com.ing.loan.entity.LoanDelinquency;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Repository
+public interface LoanDelinquencyRepository extends JpaRepository<LoanDelinquency, Long> {
+
+    // Drops the summaries of the loans in (afterLoanId, upToLoanId] before they are computed again
+    @Modifying
+    @Query("delete from LoanDelinquency d where d.loanId > :afterLoanId and d.loanId <= :upToLoanId")
+    int deleteByLoanIdRange(@Param("afterLoanId") Long afterLoanId, @Param("upToLoanId") Long upToLoanId);
+
+    @Query("select new com.ing.loan.repository.BucketCount(d.bucket, count(d)) from LoanDelinquency d group by d.bucket")
+    List<BucketCount> countByBucket();
+}
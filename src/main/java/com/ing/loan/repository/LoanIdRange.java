@@ -0,0 +1,8 @@
+package com.ing.loan.repository;
+
+/**
+ * Lowest and highest loan id.
+ * @author Suleyman Yildirim
+ */
+public record LoanIdRange(Long min, Long max) {
+}
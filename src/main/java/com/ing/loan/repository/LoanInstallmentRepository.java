@@ -1,18 +1,78 @@
 package com.ing.loan.repository;
 
 import com.ing.loan.entity.LoanInstallment;
+import com.ing.loan.response.LoanInstallmentResponse;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 /**
  * @author Suleyman Yildirim
  */
 @Repository
 public interface LoanInstallmentRepository extends JpaRepository<LoanInstallment, Long> {
-    // Optional return for the list of installments by Loan ID
-    Optional<List<LoanInstallment>> findByLoanId(Long loanId);
+    // Installments of a loan, earliest due date first, selected straight into response DTOs without loading entities
+    @Query("select new com.ing.loan.response.LoanInstallmentResponse(i.id, i.amount, i.paidAmount, i.dueDate, i.paymentDate, i.isPaid) " +
+            "from LoanInstallment i where i.loan.id = :loanId order by i.dueDate asc, i.id asc")
+    List<LoanInstallmentResponse> findInstallmentResponses(@Param("loanId") Long loanId);
+
+    // Unpaid installments due before the given date, earliest first
+    @Query("select new com.ing.loan.repository.PayableInstallment(i.id, i.amount) from LoanInstallment i " +
+            "where i.loan.id = :loanId and i.isPaid = false and i.dueDate < :maxDueDate " +
+            "order by i.dueDate asc, i.id asc")
+    List<PayableInstallment> findPayableInstallments(@Param("loanId") Long loanId, @Param("maxDueDate") LocalDate maxDueDate);
+
+    // Unpaid installments of many loans, grouped by loan and earliest due date first
+    @Query("select new com.ing.loan.repository.UnpaidInstallment(i.loan.id, i.id, i.amount, i.dueDate) from LoanInstallment i " +
+            "where i.loan.id in :loanIds and i.isPaid = false " +
+            "order by i.loan.id asc, i.dueDate asc, i.id asc")
+    List<UnpaidInstallment> findUnpaidInstallments(@Param("loanIds") Collection<Long> loanIds);
+
+    // Pays the given installments in full; installments paid in the meantime are left untouched.
+    // Bulk updates bypass @Version and @UpdateTimestamp, so they increment the version and set updatedAt themselves.
+    // Hibernate cannot tell which rows a bulk update touched, so it clears the whole LoanInstallment region and the
+    // Loan.installments collection region: cached installments do not survive the next payment
+    @Modifying
+    @Query("update LoanInstallment i set i.isPaid = true, i.isOverdue = false, i.paidAmount = i.amount, i.paymentDate = :paymentDate, " +
+            "i.version = i.version + 1, i.updatedAt = local datetime " +
+            "where i.id in :ids and i.isPaid = false")
+    int markPaid(@Param("ids") Collection<Long> ids, @Param("paymentDate") LocalDate paymentDate);
+
+    // Earliest unpaid installments of a loan, to maintain its next due date after a payment
+    @Query("select new com.ing.loan.repository.UnpaidInstallment(i.loan.id, i.id, i.amount, i.dueDate) from LoanInstallment i " +
+            "where i.loan.id = :loanId and i.isPaid = false order by i.dueDate asc, i.id asc")
+    List<UnpaidInstallment> findEarliestUnpaid(@Param("loanId") Long loanId, Limit limit);
+
+    // Overdue installments of the loans in (afterLoanId, upToLoanId], totalled per loan; walks idx_loan_installment_loan_paid_due
+    @Query("select new com.ing.loan.repository.OverdueTotals(l.id, l.customer.id, count(i), sum(i.amount), min(i.dueDate)) " +
+            "from LoanInstallment i join i.loan l " +
+            "where l.id > :afterLoanId and l.id <= :upToLoanId and i.isPaid = false and i.dueDate < :asOf " +
+            "group by l.id, l.customer.id")
+    List<OverdueTotals> findOverdueTotals(@Param("afterLoanId") Long afterLoanId, @Param("upToLoanId") Long upToLoanId,
+                                          @Param("asOf") LocalDate asOf);
+
+    // Flags the overdue installments of the loans in (afterLoanId, upToLoanId] that are not flagged yet
+    @Modifying
+    @Query("update LoanInstallment i set i.isOverdue = true, i.version = i.version + 1, i.updatedAt = local datetime " +
+            "where i.loan.id > :afterLoanId and i.loan.id <= :upToLoanId and i.isPaid = false and i.dueDate < :asOf and i.isOverdue = false")
+    int flagOverdue(@Param("afterLoanId") Long afterLoanId, @Param("upToLoanId") Long upToLoanId, @Param("asOf") LocalDate asOf);
+
+    // Unpaid installments totalled per due month, earliest month first, for portfolio analytics
+    @Query("select new com.ing.loan.repository.DueMonthTotals(year(i.dueDate), month(i.dueDate), count(i), sum(i.amount)) " +
+            "from LoanInstallment i where i.isPaid = false " +
+            "group by year(i.dueDate), month(i.dueDate) order by year(i.dueDate), month(i.dueDate)")
+    List<DueMonthTotals> findOutstandingByDueMonth();
+
+    // Installments counted and totalled by whether they are paid, for portfolio analytics
+    @Query("select new com.ing.loan.repository.PaymentStatusTotals(i.isPaid, count(i), sum(i.amount)) " +
+            "from LoanInstallment i group by i.isPaid")
+    List<PaymentStatusTotals> findPaymentStatusTotals();
 
 }
@@ -0,0 +1,8 @@
+package com.ing.loan.repository;
+
+/**
+ * A loan id and the id of the customer it belongs to.
+ * @author Suleyman Yildirim
+ */
+public record LoanOwner(Long loanId, Long customerId) {
+}
@@ -1,11 +1,23 @@
 package com.ing.loan.repository;
 
 import com.ing.loan.entity.Loan;
+import com.ing.loan.response.LoanListItemResponse;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repository for Loan entity.
@@ -15,4 +27,54 @@ import java.util.Optional;
 public interface LoanRepository extends JpaRepository<Loan, Long> {
     // Add custom queries if needed
     Optional<List<Loan>> findByCustomerId(Long customerId);
+
+    // The customer a loan belongs to, for access checks
+    @Query("select l.customer.id from Loan l where l.id = :loanId")
+    Optional<Long> findCustomerIdById(@Param("loanId") Long loanId);
+
+    // Loan ids and their customers after the given loan id, in loan id order, to load the ownership index by keyset
+    @Query("select new com.ing.loan.repository.LoanOwner(l.id, l.customer.id) from Loan l where l.id > :afterLoanId order by l.id asc")
+    List<LoanOwner> findOwnersAfter(@Param("afterLoanId") Long afterLoanId, Limit limit);
+
+    // Loads a loan to apply a payment; its version is incremented at commit even if nothing else on it changes,
+    // so two payments of the same loan cannot both commit against the same installments
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    Optional<Loan> findVersionedById(Long id);
+
+    // The same for the loans of a bulk payment chunk, in one query
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    List<Loan> findVersionedByIdIn(Collection<Long> ids);
+
+    // Lowest and highest loan id, to split the loans into ranges; both null if there are no loans
+    @Query("select new com.ing.loan.repository.LoanIdRange(min(l.id), max(l.id)) from Loan l")
+    LoanIdRange findIdRange();
+
+    // Keyset page of a customer's loans after the given id; walks idx_loan_customer_id, so deep pages cost the same as the first
+    @Query("select new com.ing.loan.response.LoanListItemResponse(l.id, l.loanAmount, l.numberOfInstallment, l.createDate, l.isPaid) " +
+            "from Loan l where l.customer.id = :customerId and l.id > :afterId " +
+            "and (:isPaid is null or l.isPaid = :isPaid) " +
+            "and (:createdFrom is null or l.createDate >= :createdFrom) " +
+            "and (:createdTo is null or l.createDate <= :createdTo) " +
+            "order by l.id asc")
+    List<LoanListItemResponse> findLoanPage(@Param("customerId") Long customerId, @Param("afterId") Long afterId,
+                                            @Param("isPaid") Boolean isPaid, @Param("createdFrom") LocalDate createdFrom,
+                                            @Param("createdTo") LocalDate createdTo, Limit limit);
+
+    // A customer's loans in id order, read from a database cursor; must be consumed and closed inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new com.ing.loan.response.LoanListItemResponse(l.id, l.loanAmount, l.numberOfInstallment, l.createDate, l.isPaid) " +
+            "from Loan l where l.customer.id = :customerId " +
+            "and (:isPaid is null or l.isPaid = :isPaid) " +
+            "and (:createdFrom is null or l.createDate >= :createdFrom) " +
+            "and (:createdTo is null or l.createDate <= :createdTo) " +
+            "order by l.id asc")
+    Stream<LoanListItemResponse> streamLoans(@Param("customerId") Long customerId, @Param("isPaid") Boolean isPaid,
+                                             @Param("createdFrom") LocalDate createdFrom, @Param("createdTo") LocalDate createdTo);
+
+    // Outstanding balance of every customer who owes anything, against their credit limit, read from a database cursor;
+    // totalled from the balance summaries of the loans, so installments are not read. Must be consumed and closed inside a transaction
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.ing.loan.repository.CustomerExposure(c.id, c.creditLimit, sum(l.remainingAmount)) " +
+            "from Loan l join l.customer c where l.remainingAmount > 0 group by c.id, c.creditLimit")
+    Stream<CustomerExposure> streamCustomerExposures();
 }
@@ -0,0 +1,31 @@
+package com.ing.loan.repository;
+
+import com.ing.loan.entity.OutboxEvent;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // The next batch to relay: committed events grouped by loan, each loan's in the order of its changes. Loans are
+    // taken in the order of their oldest pending event, so a loan that keeps getting events does not hold back the
+    // others, whatever their ids
+    @Query(value = "SELECT e.id, e.aggregate_id, e.aggregate_version, e.event_type, e.payload, e.created_at FROM (" +
+            "SELECT o.*, MIN(o.created_at) OVER (PARTITION BY o.aggregate_id) AS first_created_at FROM outbox_event o) e " +
+            "ORDER BY e.first_created_at, e.aggregate_id, e.aggregate_version, e.id", nativeQuery = true)
+    List<OutboxEvent> findNextBatch(Limit limit);
+
+    @Modifying
+    @Query("delete from OutboxEvent e where e.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
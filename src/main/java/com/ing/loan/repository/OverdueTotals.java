@@ -0,0 +1,12 @@
+package com.ing.loan.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Overdue installments of a loan, totalled by the database.
+ * @author Suleyman Yildirim
+ */
+public record OverdueTotals(Long loanId, Long customerId, long overdueInstallments, BigDecimal overdueAmount,
+                            LocalDate oldestDueDate) {
+}
@@ -0,0 +1,17 @@
+package com.ing.loan.repository;
+
+import com.ing.loan.money.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only projection of an installment that can still be paid.
+ * @author Suleyman Yildirim
+ */
+public record PayableInstallment(Long id, Money amount) {
+
+    // Used by the JPQL constructor expression; the amount is converted once, as the row is read
+    public PayableInstallment(Long id, BigDecimal amount) {
+        this(id, Money.of(amount));
+    }
+}
@@ -0,0 +1,10 @@
+package com.ing.loan.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Installments that are paid, or unpaid, counted and totalled by the database.
+ * @author Suleyman Yildirim
+ */
+public record PaymentStatusTotals(Boolean paid, long installments, BigDecimal amount) {
+}
@@ -0,0 +1,22 @@
+package com.ing.loan.repository;
+
+import com.ing.loan.money.Money;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Read-only projection of an unpaid installment, with its loan, for allocating many payments at once.
+ * @author Suleyman Yildirim
+ */
+public record UnpaidInstallment(Long loanId, Long id, Money amount, LocalDate dueDate) {
+
+    // Used by the JPQL constructor expression; the amount is converted once, as the row is read
+    public UnpaidInstallment(Long loanId, Long id, BigDecimal amount, LocalDate dueDate) {
+        this(loanId, id, Money.of(amount), dueDate);
+    }
+
+    public PayableInstallment toPayable() {
+        return new PayableInstallment(id, amount);
+    }
+}
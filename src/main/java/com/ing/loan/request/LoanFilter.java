@@ -0,0 +1,35 @@
+package com.ing.loan.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * Optional filters for listing a customer's loans, bound from query parameters.
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "Optional filters for listing a customer's loans. Absent filters match every loan.")
+public class LoanFilter {
+
+    @Schema(description = "Only loans that are (true) or are not (false) fully paid", example = "false")
+    private Boolean isPaid;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    @Schema(description = "Only loans created on or after this date", example = "2024-01-01")
+    private LocalDate createdFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    @Schema(description = "Only loans created on or before this date", example = "2024-12-31")
+    private LocalDate createdTo;
+}
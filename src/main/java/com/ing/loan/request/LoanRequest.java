@@ -1,5 +1,6 @@
 package com.ing.loan.request;
 
+import com.ing.loan.amortization.AmortizationMethod;
 import io.swagger.v3.oas.annotations.media.Schema;
 import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.DecimalMin;
@@ -40,4 +41,7 @@ public class LoanRequest {
     @Positive(message = "Installments must be positive")
     @Schema(description = "The number of installments for repayment", example = "12")
     private Integer installments;
+
+    @Schema(description = "How the loan is repaid; flat interest when omitted", example = "ANNUITY")
+    private AmortizationMethod amortizationMethod;
 }
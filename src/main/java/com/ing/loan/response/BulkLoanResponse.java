@@ -0,0 +1,27 @@
+package com.ing.loan.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@Schema(description = "Represents the response model for a bulk loan origination, with a result for every submitted row.")
+public class BulkLoanResponse {
+
+    @Schema(description = "The number of loans created", example = "9998")
+    private int createdCount;
+
+    @Schema(description = "The number of rows rejected", example = "2")
+    private int rejectedCount;
+
+    @Schema(description = "Per-row results, in the order of the request")
+    private List<BulkLoanRowResponse> results;
+}
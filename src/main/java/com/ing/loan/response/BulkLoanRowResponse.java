@@ -0,0 +1,34 @@
+package com.ing.loan.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@Schema(description = "Represents the outcome of a single row of a bulk loan origination request.")
+public class BulkLoanRowResponse {
+
+    @Schema(description = "Zero-based position of the row in the bulk request", example = "0")
+    private int index;
+
+    @Schema(description = "The customer the row was originated for", example = "1")
+    private Long customerId;
+
+    @Schema(description = "The identifier of the created loan, if the row was accepted", example = "12345")
+    private Long loanId;
+
+    @Schema(description = "Indicates whether the loan was created", example = "true")
+    private boolean created;
+
+    @Schema(description = "Error code, if the row was rejected", example = "INSUFFICIENT_CREDIT")
+    private String errorCode;
+
+    @Schema(description = "Error message, if the row was rejected", example = "Customer does not have enough credit limit for this loan")
+    private String errorMessage;
+}
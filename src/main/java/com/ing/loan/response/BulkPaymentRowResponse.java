@@ -0,0 +1,39 @@
+package com.ing.loan.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@Schema(description = "Represents the outcome of a single row of a bulk payment request.")
+public class BulkPaymentRowResponse {
+
+    @Schema(description = "Zero-based position of the row in the bulk request", example = "0")
+    private int index;
+
+    @Schema(description = "The loan the payment was made for", example = "98765")
+    private Long loanId;
+
+    @Schema(description = "The number of installments paid by this row", example = "2")
+    private int paidInstallments;
+
+    @Schema(description = "The amount of the payment spent on installments", example = "1000.00")
+    private BigDecimal totalAmountSpent;
+
+    @Schema(description = "Indicates whether the loan has been fully paid off", example = "false")
+    private boolean isLoanPaid;
+
+    @Schema(description = "Error code, if the row was rejected", example = "LOAN_NOT_FOUND")
+    private String errorCode;
+
+    @Schema(description = "Error message, if the row was rejected", example = "Loan 98765 not found")
+    private String errorMessage;
+}
@@ -0,0 +1,30 @@
+package com.ing.loan.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@Schema(description = "Represents the outstanding balance of a customer against their credit limit.")
+public class CustomerExposureResponse {
+
+    @Schema(description = "The unique identifier for the customer", example = "1")
+    private Long customerId;
+
+    @Schema(description = "The credit limit of the customer", example = "50000.00")
+    private BigDecimal creditLimit;
+
+    @Schema(description = "The sum of the unpaid installments of the customer's loans", example = "46200.00")
+    private BigDecimal exposure;
+
+    @Schema(description = "The exposure as a fraction of the credit limit", example = "0.924")
+    private double utilization;
+}
@@ -0,0 +1,28 @@
+package com.ing.loan.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@Schema(description = "Represents the unpaid installments falling due in a calendar month.")
+public class DueMonthOutstandingResponse {
+
+    @Schema(description = "The month the installments are due in", example = "2025-03", type = "string")
+    private YearMonth dueMonth;
+
+    @Schema(description = "The number of unpaid installments due in the month", example = "1250")
+    private long installments;
+
+    @Schema(description = "The sum of the unpaid installments due in the month", example = "1145833.75")
+    private BigDecimal amount;
+}
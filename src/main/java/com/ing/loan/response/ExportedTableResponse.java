@@ -0,0 +1,36 @@
+package com.ing.loan.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@Schema(description = "Represents the export of one table to an Arrow IPC file.")
+public class ExportedTableResponse {
+
+    @Schema(description = "The exported table", example = "loan_installment")
+    private String table;
+
+    @Schema(description = "The path of the Arrow IPC file on the server", example = "exports/loan_installment-incremental-20250115T020000.arrow")
+    private String file;
+
+    @Schema(description = "Rows changed after this time were exported; absent for a full export", example = "2025-01-14T01:55:00")
+    private LocalDateTime changedAfter;
+
+    @Schema(description = "Rows changed at or before this time were exported", example = "2025-01-15T01:55:00")
+    private LocalDateTime changedUpTo;
+
+    @Schema(description = "The number of rows exported", example = "125000")
+    private long rows;
+
+    @Schema(description = "The size of the file in bytes", example = "2097152")
+    private long bytes;
+}
@@ -1,6 +1,7 @@
 package com.ing.loan.response;
 
 import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
@@ -14,16 +15,27 @@ import java.time.LocalDate;
 @Getter
 @Setter
 @Builder
+@AllArgsConstructor
 @Schema(description = "Represents a response model for a loan installment, including details of the amount, due date, and payment status.")
 public class LoanInstallmentResponse {
 
+    @Schema(description = "The unique identifier for the loan installment", example = "12345")
+    private Long id;
+
     @Schema(description = "The amount to be paid for this installment", example = "500.00")
     private BigDecimal amount;
 
+    @Schema(description = "The amount that has been paid for this installment", example = "500.00")
+    private BigDecimal paidAmount;
+
     @Schema(description = "The due date for the installment payment", example = "2024-01-15")
     private LocalDate dueDate;
 
+    @Schema(description = "The date when the installment was paid", example = "2024-01-14")
+    private LocalDate paymentDate;
+
+    // Boxed, so the getter is getIsPaid() and the JSON key stays "isPaid" like it was for the entity
     @Schema(description = "Indicates whether the installment has been paid", example = "false")
-    private boolean isPaid;
+    private Boolean isPaid;
 }
 
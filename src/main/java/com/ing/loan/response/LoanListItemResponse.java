@@ -0,0 +1,38 @@
+package com.ing.loan.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * A loan as listed for a customer, without its installments. Selected directly by the
+ * repository queries, so listing loans never loads entities into the persistence context.
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@Schema(description = "Represents a loan in a customer's loan listing, without its installments.")
+public class LoanListItemResponse {
+
+    @Schema(description = "The unique identifier for the loan", example = "12345")
+    private Long id;
+
+    @Schema(description = "The amount of the loan", example = "10000.00")
+    private BigDecimal loanAmount;
+
+    @Schema(description = "The number of installments for the loan", example = "12")
+    private Integer numberOfInstallment;
+
+    @Schema(description = "The date when the loan was created", example = "2024-01-15")
+    private LocalDate createDate;
+
+    @Schema(description = "Indicates whether the loan has been fully paid", example = "false")
+    private Boolean isPaid;
+}
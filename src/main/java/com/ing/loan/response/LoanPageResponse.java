@@ -0,0 +1,24 @@
+package com.ing.loan.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@Schema(description = "A page of a customer's loans in loan ID order, with the cursor to request the next page.")
+public class LoanPageResponse {
+
+    @Schema(description = "The loans on this page")
+    private List<LoanListItemResponse> loans;
+
+    @Schema(description = "Pass as 'after' to fetch the next page; absent on the last page", example = "12345")
+    private Long nextCursor;
+}
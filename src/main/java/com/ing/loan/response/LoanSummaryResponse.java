@@ -0,0 +1,46 @@
+package com.ing.loan.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@Schema(description = "Represents the balance of a loan: what has been paid, what is left and what is due next.")
+public class LoanSummaryResponse {
+
+    @Schema(description = "The unique identifier for the loan", example = "12345")
+    private Long loanId;
+
+    @Schema(description = "The customer the loan belongs to", example = "1")
+    private Long customerId;
+
+    @Schema(description = "The amount of the loan, principal plus interest", example = "11000.00")
+    private BigDecimal loanAmount;
+
+    @Schema(description = "The number of installments for the loan", example = "12")
+    private Integer numberOfInstallment;
+
+    @Schema(description = "The number of installments paid so far", example = "3")
+    private Integer paidInstallments;
+
+    @Schema(description = "The sum of the unpaid installments", example = "8250.00")
+    private BigDecimal remainingAmount;
+
+    @Schema(description = "The due date of the earliest unpaid installment, absent once the loan is paid", example = "2024-05-01")
+    private LocalDate nextDueDate;
+
+    @Schema(description = "The amount of the earliest unpaid installment, absent once the loan is paid", example = "916.67")
+    private BigDecimal nextDueAmount;
+
+    @Schema(description = "Indicates whether the loan has been fully paid", example = "false")
+    private Boolean isPaid;
+}
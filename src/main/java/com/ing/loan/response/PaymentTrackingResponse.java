@@ -0,0 +1,35 @@
+package com.ing.loan.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.UUID;
+
+/**
+ * @author Suleyman Yildirim
+ */
+
+@Getter
+@Setter
+@Builder
+@Schema(description = "Represents the state of a payment accepted for asynchronous processing.")
+public class PaymentTrackingResponse {
+
+    public enum Status {
+        QUEUED, COMPLETED, FAILED
+    }
+
+    @Schema(description = "The identifier to query the payment status with", example = "3f1c2a9e-7d4b-4c3a-9a55-0f1e2d3c4b5a")
+    private UUID trackingId;
+
+    @Schema(description = "The unique identifier for the loan", example = "98765")
+    private Long loanId;
+
+    @Schema(description = "Whether the payment is waiting in the queue, was applied, or failed", example = "COMPLETED")
+    private Status status;
+
+    @Schema(description = "The result of the payment once it has been processed; carries the error message of a failed payment")
+    private LoanPaymentResponse payment;
+}
@@ -0,0 +1,50 @@
+package com.ing.loan.response;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@Schema(description = "Represents portfolio-wide figures over every loan and installment, as of the last refresh.")
+public class PortfolioAnalyticsResponse {
+
+    @Schema(description = "When the figures were computed", example = "2025-01-15T10:05:00")
+    private LocalDateTime computedAt;
+
+    @Schema(description = "The number of paid installments", example = "120000")
+    private long paidInstallments;
+
+    @Schema(description = "The sum of the paid installments", example = "98500000.00")
+    private BigDecimal paidAmount;
+
+    @Schema(description = "The number of unpaid installments", example = "380000")
+    private long unpaidInstallments;
+
+    @Schema(description = "The sum of the unpaid installments", example = "312400000.00")
+    private BigDecimal unpaidAmount;
+
+    @Schema(description = "The unpaid installments per due month, earliest month first")
+    private List<DueMonthOutstandingResponse> outstandingByDueMonth;
+
+    @Schema(description = "The number of customers with an outstanding balance", example = "15000")
+    private long customersWithExposure;
+
+    @Schema(description = "The sum of the credit limits of the customers with an outstanding balance", example = "750000000.00")
+    private BigDecimal creditLimit;
+
+    @Schema(description = "Customers with an outstanding balance by the share of their credit limit it uses")
+    private List<UtilizationBandResponse> utilizationBands;
+
+    @Schema(description = "The customers using the largest share of their credit limit, highest first")
+    private List<CustomerExposureResponse> topExposures;
+}
@@ -0,0 +1,28 @@
+package com.ing.loan.response;
+
+import com.ing.loan.export.ExportMode;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@Schema(description = "Represents a snapshot export of the loan and loan_installment tables.")
+public class SnapshotExportResponse {
+
+    @Schema(description = "Whether every row or only the rows changed since the last export were exported", example = "INCREMENTAL")
+    private ExportMode mode;
+
+    @Schema(description = "The export of each table")
+    private List<ExportedTableResponse> tables;
+
+    @Schema(description = "The time taken by the export in milliseconds", example = "95000")
+    private long elapsedMillis;
+}
@@ -0,0 +1,28 @@
+package com.ing.loan.response;
+
+import com.ing.loan.analytics.UtilizationBand;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@Getter
+@Setter
+@Builder
+@Schema(description = "Represents the customers whose outstanding balance uses a given share of their credit limit.")
+public class UtilizationBandResponse {
+
+    @Schema(description = "The share of the credit limit used", example = "UP_TO_75")
+    private UtilizationBand band;
+
+    @Schema(description = "The number of customers in the band", example = "420")
+    private long customers;
+
+    @Schema(description = "The outstanding balance of the customers in the band", example = "8820000.00")
+    private BigDecimal exposure;
+}
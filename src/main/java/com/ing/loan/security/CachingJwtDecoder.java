@@ -0,0 +1,107 @@
+package com.ing.loan.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+
+/**
+ * Remembers the tokens a {@link JwtDecoder} has verified, so that the repeated requests of a client carrying the
+ * same token skip parsing and signature verification.
+ * <p>
+ * Tokens are keyed by their SHA-256 hash and kept until they expire, but no longer than {@code maximum-ttl}, which
+ * bounds how long a token stays accepted after its signing key was withdrawn. Tokens without an expiry and tokens
+ * that fail verification are not cached. A cached token is checked again for expiry and not-before, with the same
+ * clock skew as the delegate's default validator, so it is accepted exactly as long as the delegate would accept it.
+ * @author Suleyman Yildirim
+ */
+public class CachingJwtDecoder implements JwtDecoder, MeterBinder {
+
+    private final JwtDecoder delegate;
+    private final Cache<String, Jwt> verified;
+    private final JwtTimestampValidator timestampValidator;
+
+    public CachingJwtDecoder(JwtDecoder delegate, long maximumSize, Duration maximumTtl) {
+        this(delegate, maximumSize, maximumTtl, Clock.systemUTC());
+    }
+
+    CachingJwtDecoder(JwtDecoder delegate, long maximumSize, Duration maximumTtl, Clock clock) {
+        this.delegate = delegate;
+        this.timestampValidator = new JwtTimestampValidator();
+        this.timestampValidator.setClock(clock);
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new UntilTokenExpiry(maximumTtl, clock))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        String key = hash(token);
+        Jwt jwt = verified.getIfPresent(key);
+        if (jwt != null) {
+            if (!timestampValidator.validate(jwt).hasErrors()) {
+                return jwt;
+            }
+            // No longer valid; the delegate rejects it with its usual error
+            verified.invalidate(key);
+        }
+        jwt = delegate.decode(token);
+        if (jwt.getExpiresAt() != null) {
+            verified.put(key, jwt);
+        }
+        return jwt;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, verified, "jwt.verified");
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // Every JVM ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Expires an entry when its token does, or maximumTtl after it was cached, whichever comes first
+    private record UntilTokenExpiry(Duration maximumTtl, Clock clock) implements Expiry<String, Jwt> {
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            Duration untilExpiry = Duration.between(clock.instant(), jwt.getExpiresAt());
+            if (untilExpiry.isNegative()) {
+                return 0;
+            }
+            return (untilExpiry.compareTo(maximumTtl) < 0 ? untilExpiry : maximumTtl).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
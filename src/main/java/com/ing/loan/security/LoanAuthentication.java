@@ -0,0 +1,28 @@
+package com.ing.loan.security;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.AbstractOAuth2TokenAuthenticationToken;
+
+import java.util.Map;
+
+/**
+ * An authenticated access token whose principal is a {@link LoanPrincipal}.
+ * @author Suleyman Yildirim
+ */
+public class LoanAuthentication extends AbstractOAuth2TokenAuthenticationToken<Jwt> {
+
+    public LoanAuthentication(Jwt jwt, LoanPrincipal principal) {
+        super(jwt, principal, jwt, principal.authorities());
+        setAuthenticated(true);
+    }
+
+    @Override
+    public LoanPrincipal getPrincipal() {
+        return (LoanPrincipal) super.getPrincipal();
+    }
+
+    @Override
+    public Map<String, Object> getTokenAttributes() {
+        return getToken().getClaims();
+    }
+}
@@ -0,0 +1,68 @@
+package com.ing.loan.security;
+
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Access checks of the loan and payment endpoints, written in Java against the caller's {@link LoanPrincipal}
+ * rather than as {@code @PreAuthorize} expressions evaluated on every call. A failed check throws
+ * {@link AccessDeniedException}, answered with {@code 403 Forbidden} like a failed {@code @PreAuthorize}.
+ * @author Suleyman Yildirim
+ */
+@Component
+public class LoanAuthorization {
+
+    private final LoanOwnershipIndex ownershipIndex;
+
+    public LoanAuthorization(LoanOwnershipIndex ownershipIndex) {
+        this.ownershipIndex = ownershipIndex;
+    }
+
+    /**
+     * Admins only.
+     */
+    public void checkAdmin() {
+        if (!principal().admin()) {
+            throw denied();
+        }
+    }
+
+    /**
+     * Admins, and customers acting for themselves.
+     */
+    public void checkCustomer(Long customerId) {
+        if (!principal().actsFor(customerId)) {
+            throw denied();
+        }
+    }
+
+    /**
+     * Admins, and customers acting on their own loans. Customers are denied unknown loans as well, so they cannot
+     * tell them apart from other customers' loans.
+     */
+    public void checkLoan(Long loanId) {
+        LoanPrincipal principal = principal();
+        if (principal.admin()) {
+            return;
+        }
+        Long customerId = principal.customerId();
+        if (loanId == null || !principal.customer() || customerId == null
+                || ownershipIndex.ownerOf(loanId) != customerId) {
+            throw denied();
+        }
+    }
+
+    private static LoanPrincipal principal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof LoanPrincipal principal) {
+            return principal;
+        }
+        throw denied();
+    }
+
+    private static AccessDeniedException denied() {
+        return new AccessDeniedException("Access Denied");
+    }
+}
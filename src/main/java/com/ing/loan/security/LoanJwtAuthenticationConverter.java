@@ -0,0 +1,32 @@
+package com.ing.loan.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * Turns a verified token into a {@link LoanAuthentication}, resolving its {@link LoanPrincipal} once per token.
+ * <p>
+ * {@link CachingJwtDecoder} hands out the same {@link Jwt} instance for every request carrying the same token,
+ * so principals are cached by token identity with weak keys: an entry goes away once the decoder has evicted its
+ * token. The authentication itself is created per request, since the filter chain attaches request details to it.
+ * @author Suleyman Yildirim
+ */
+public class LoanJwtAuthenticationConverter implements Converter<Jwt, AbstractAuthenticationToken> {
+
+    private final Cache<Jwt, LoanPrincipal> principals;
+
+    public LoanJwtAuthenticationConverter(long maximumSize) {
+        this.principals = Caffeine.newBuilder()
+                .weakKeys()
+                .maximumSize(maximumSize)
+                .build();
+    }
+
+    @Override
+    public AbstractAuthenticationToken convert(Jwt jwt) {
+        return new LoanAuthentication(jwt, principals.get(jwt, LoanPrincipal::of));
+    }
+}
@@ -0,0 +1,221 @@
+package com.ing.loan.security;
+
+import com.ing.loan.repository.LoanOwner;
+import com.ing.loan.repository.LoanRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The customer of every loan, held in memory for the ownership checks of {@link LoanAuthorization}.
+ * <p>
+ * Loan ids map to customer ids in an open-addressing hash table of two {@code long} arrays, so an entry costs
+ * 32 bytes at most and a lookup neither allocates nor boxes. Lookups are lock-free optimistic reads that are
+ * only repeated under the read lock if a write happened meanwhile. The table is loaded from the loan table in
+ * the background on startup, in batches of {@code warmup-batch-size} loan ids, and new loans are added as they
+ * are created. A loan missing from the table, e.g. created by another instance, is read from the database once.
+ * <p>
+ * A loan never changes hands and loan ids are never reused, so entries are never updated or removed; the entry
+ * of a loan whose transaction rolled back only points to a loan that does not exist.
+ * @author Suleyman Yildirim
+ */
+@Slf4j
+@Component
+public class LoanOwnershipIndex implements MeterBinder {
+
+    // Returned for a loan that does not exist; customer ids are positive
+    public static final long NO_OWNER = -1L;
+
+    // Marks a free slot; loan ids are positive
+    private static final long FREE = 0L;
+
+    private final LoanRepository loanRepository;
+    private final int warmupBatchSize;
+    private final StampedLock lock = new StampedLock();
+
+    // Replaced, never resized in place, so a reader always sees arrays of the same length
+    private Table table = new Table(1024);
+    private int size;
+    private Counter misses;
+
+    public LoanOwnershipIndex(LoanRepository loanRepository,
+                              @Value("${loan.security.ownership-warmup-batch-size:10000}") int warmupBatchSize) {
+        this.loanRepository = loanRepository;
+        this.warmupBatchSize = warmupBatchSize;
+    }
+
+    /**
+     * The customer of the loan, or {@link #NO_OWNER} if there is no such loan.
+     */
+    public long ownerOf(long loanId) {
+        if (loanId <= FREE) {
+            return NO_OWNER;
+        }
+        long owner = find(loanId);
+        if (owner == NO_OWNER) {
+            if (misses != null) {
+                misses.increment();
+            }
+            owner = loanRepository.findCustomerIdById(loanId).orElse(NO_OWNER);
+            if (owner != NO_OWNER) {
+                put(loanId, owner);
+            }
+        }
+        return owner;
+    }
+
+    public void put(long loanId, long customerId) {
+        long stamp = lock.writeLock();
+        try {
+            insert(loanId, customerId);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Loads the index in the background, so startup is not delayed; lookups fall back to the database meanwhile
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpInBackground() {
+        Thread.ofPlatform().name("loan-ownership-warmup").daemon().start(() -> {
+            try {
+                long startedAt = System.nanoTime();
+                int loaded = warmUp();
+                log.info("Loaded the owners of {} loans in {} ms", loaded, (System.nanoTime() - startedAt) / 1_000_000);
+            } catch (Exception e) {
+                log.warn("Failed to load the loan ownership index, owners will be read on demand: {}", e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Reads every loan's customer by keyset in batches of {@code warmup-batch-size}. Package-private for the tests.
+     *
+     * @return the number of loans read
+     */
+    int warmUp() {
+        int loaded = 0;
+        long afterLoanId = 0;
+        List<LoanOwner> batch;
+        do {
+            batch = loanRepository.findOwnersAfter(afterLoanId, Limit.of(warmupBatchSize));
+            long stamp = lock.writeLock();
+            try {
+                for (LoanOwner owner : batch) {
+                    insert(owner.loanId(), owner.customerId());
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            loaded += batch.size();
+            if (!batch.isEmpty()) {
+                afterLoanId = batch.get(batch.size() - 1).loanId();
+            }
+        } while (batch.size() == warmupBatchSize);
+        return loaded;
+    }
+
+    private long find(long loanId) {
+        long stamp = lock.tryOptimisticRead();
+        long owner = table.find(loanId);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                owner = table.find(loanId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return owner;
+    }
+
+    // Callers hold the write lock
+    private void insert(long loanId, long customerId) {
+        if (loanId <= FREE) {
+            return;
+        }
+        if (table.insert(loanId, customerId)) {
+            size++;
+            // Keeps probe sequences short: at most half of the slots are taken
+            if (size > table.keys.length / 2) {
+                table = table.grow();
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("loan.ownership.index.size", this, index -> index.size)
+                .description("Loans whose customer is held in memory")
+                .register(registry);
+        misses = Counter.builder("loan.ownership.index.misses")
+                .description("Ownership lookups of loans not in memory, read from the database")
+                .register(registry);
+    }
+
+    private static final class Table {
+        private final long[] keys;
+        private final long[] owners;
+        private final int mask;
+
+        private Table(int capacity) {
+            this.keys = new long[capacity];
+            this.owners = new long[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private static int slot(long loanId, int mask) {
+            // Sequential ids would otherwise fill runs of adjacent slots
+            long hash = loanId * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & mask;
+        }
+
+        // Bounded by the capacity, so a read racing with a writer cannot loop forever
+        private long find(long loanId) {
+            for (int i = slot(loanId, mask), probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long key = keys[i];
+                if (key == loanId) {
+                    return owners[i];
+                }
+                if (key == FREE) {
+                    return NO_OWNER;
+                }
+            }
+            return NO_OWNER;
+        }
+
+        // Returns false if the loan was already present
+        private boolean insert(long loanId, long customerId) {
+            for (int i = slot(loanId, mask); ; i = (i + 1) & mask) {
+                if (keys[i] == loanId) {
+                    owners[i] = customerId;
+                    return false;
+                }
+                if (keys[i] == FREE) {
+                    owners[i] = customerId;
+                    keys[i] = loanId;
+                    return true;
+                }
+            }
+        }
+
+        private Table grow() {
+            Table grown = new Table(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != FREE) {
+                    grown.insert(keys[i], owners[i]);
+                }
+            }
+            return grown;
+        }
+    }
+}
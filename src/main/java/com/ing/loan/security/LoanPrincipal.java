@@ -0,0 +1,80 @@
+package com.ing.loan.security;
+
+import org.springframework.security.core.AuthenticatedPrincipal;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The caller of a request, resolved once from its access token: the token's subject, the customer it acts for
+ * (the {@value #CUSTOMER_ID_CLAIM} claim, absent for clients that do not act for a customer) and its roles
+ * (the {@code ADMIN} and {@code CUSTOMER} values of the {@code scope} claim).
+ * @author Suleyman Yildirim
+ */
+public record LoanPrincipal(String name, Long customerId, boolean admin, boolean customer) implements AuthenticatedPrincipal {
+
+    public static final String ADMIN = "ADMIN";
+    public static final String CUSTOMER = "CUSTOMER";
+    public static final String CUSTOMER_ID_CLAIM = "customer_id";
+
+    // The authorities of each combination of roles, indexed by (admin ? 1 : 0) | (customer ? 2 : 0)
+    private static final List<List<GrantedAuthority>> AUTHORITIES = List.of(
+            List.of(),
+            List.of(new SimpleGrantedAuthority(ADMIN)),
+            List.of(new SimpleGrantedAuthority(CUSTOMER)),
+            List.of(new SimpleGrantedAuthority(ADMIN), new SimpleGrantedAuthority(CUSTOMER)));
+
+    public static LoanPrincipal of(Jwt jwt) {
+        boolean admin = false;
+        boolean customer = false;
+        for (String scope : scopes(jwt.getClaims().get("scope"))) {
+            admin |= ADMIN.equals(scope);
+            customer |= CUSTOMER.equals(scope);
+        }
+        return new LoanPrincipal(jwt.getSubject(), customerId(jwt.getClaims().get(CUSTOMER_ID_CLAIM)), admin, customer);
+    }
+
+    /**
+     * Whether this caller may act for the given customer: admins for every customer, customers for themselves.
+     */
+    public boolean actsFor(Long customerId) {
+        return admin || (customer && this.customerId != null && this.customerId.equals(customerId));
+    }
+
+    public List<GrantedAuthority> authorities() {
+        return AUTHORITIES.get((admin ? 1 : 0) | (customer ? 2 : 0));
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    // A list of scopes, or a space-separated string as in RFC 8693
+    private static Collection<?> scopes(Object claim) {
+        if (claim instanceof Collection<?> scopes) {
+            return scopes;
+        }
+        if (claim instanceof String scopes) {
+            return List.of(scopes.split(" "));
+        }
+        return List.of();
+    }
+
+    private static Long customerId(Object claim) {
+        if (claim instanceof Number number) {
+            return number.longValue();
+        }
+        if (claim instanceof String value) {
+            try {
+                return Long.valueOf(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,181 @@
+package com.ing.loan.security;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The authorization server's JWK set, held in memory and refreshed ahead of use.
+ * <p>
+ * A background thread fetches the set on startup and then every {@code refresh-interval}, so requests verify
+ * tokens against the keys in memory and never wait for the authorization server. If a refresh fails, the last
+ * set keeps being served for up to {@code max-stale} after it was fetched; past that, requests fetch it
+ * themselves and are rejected while it cannot be fetched. A token signed with a key id that is not in the set,
+ * usually after the authorization server rotated its keys, fetches the set again at most once every
+ * {@code min-refresh-gap}.
+ * @author Suleyman Yildirim
+ */
+@Slf4j
+public class RefreshingJwkSource implements JWKSource<SecurityContext>, MeterBinder, DisposableBean {
+
+    private final JwkSetFetcher fetcher;
+    private final Duration maxStale;
+    private final Duration minRefreshGap;
+    private final Clock clock;
+    private final ScheduledExecutorService refresher;
+
+    // Serializes fetches, so a burst of requests for an unknown key id fetches the set once
+    private final ReentrantLock fetchLock = new ReentrantLock();
+
+    // Null until the first successful fetch
+    private volatile Snapshot snapshot;
+    private volatile Instant lastAttempt = Instant.MIN;
+    private Counter refreshFailures;
+
+    public RefreshingJwkSource(URI jwkSetUri, Duration refreshInterval, Duration maxStale, Duration minRefreshGap, Duration requestTimeout) {
+        this(httpFetcher(jwkSetUri, requestTimeout), refreshInterval, maxStale, minRefreshGap, Clock.systemUTC());
+    }
+
+    RefreshingJwkSource(JwkSetFetcher fetcher, Duration refreshInterval, Duration maxStale, Duration minRefreshGap, Clock clock) {
+        this.fetcher = fetcher;
+        this.maxStale = maxStale;
+        this.minRefreshGap = minRefreshGap;
+        this.clock = clock;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("jwk-refresh").daemon().factory());
+        this.refresher.scheduleWithFixedDelay(this::refreshAhead, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        Snapshot current = snapshot;
+        if (current == null || current.isOlderThan(maxStale, clock.instant())) {
+            current = refresh(current);
+        }
+        List<JWK> keys = jwkSelector.select(current.keys());
+        if (keys.isEmpty()) {
+            // Most likely a key the authorization server started signing with after the last refresh
+            current = refresh(current);
+            keys = jwkSelector.select(current.keys());
+        }
+        return keys;
+    }
+
+    /**
+     * Fetches the set on the calling thread, unless another thread refreshed it in the meantime or the last attempt
+     * was less than {@code min-refresh-gap} ago.
+     *
+     * @return the set to verify with, never older than {@code max-stale}
+     */
+    private Snapshot refresh(Snapshot seen) throws KeySourceException {
+        fetchLock.lock();
+        try {
+            Instant now = clock.instant();
+            if (snapshot == seen && !lastAttempt.plus(minRefreshGap).isAfter(now)) {
+                fetch(now);
+            }
+            Snapshot current = snapshot;
+            if (current == null || current.isOlderThan(maxStale, now)) {
+                throw new KeySourceException("No JWK set fetched in the last " + maxStale);
+            }
+            return current;
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private void refreshAhead() {
+        fetchLock.lock();
+        try {
+            fetch(clock.instant());
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    // Replaces the snapshot with a freshly fetched set, keeping the previous one if the fetch fails
+    private void fetch(Instant now) {
+        lastAttempt = now;
+        try {
+            snapshot = new Snapshot(fetcher.fetch(), now);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | ParseException e) {
+            log.warn("Failed to fetch the JWK set, serving the one fetched at {}: {}",
+                    snapshot != null ? snapshot.fetchedAt() : "never", e.getMessage());
+            if (refreshFailures != null) {
+                refreshFailures.increment();
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("loan.jwk.age", this, source -> {
+                    Snapshot current = source.snapshot;
+                    return current == null ? Double.NaN : Duration.between(current.fetchedAt(), clock.instant()).toSeconds();
+                })
+                .description("Seconds since the JWK set was last fetched")
+                .baseUnit("seconds")
+                .register(registry);
+        refreshFailures = Counter.builder("loan.jwk.refresh.failures")
+                .description("Failed fetches of the JWK set")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        refresher.shutdownNow();
+    }
+
+    private static JwkSetFetcher httpFetcher(URI jwkSetUri, Duration requestTimeout) {
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(requestTimeout).build();
+        HttpRequest request = HttpRequest.newBuilder(jwkSetUri)
+                .timeout(requestTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+        return () -> {
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("Unexpected status " + response.statusCode() + " from " + jwkSetUri);
+            }
+            return JWKSet.parse(response.body());
+        };
+    }
+
+    @FunctionalInterface
+    interface JwkSetFetcher {
+        JWKSet fetch() throws IOException, ParseException, InterruptedException;
+    }
+
+    private record Snapshot(JWKSet keys, Instant fetchedAt) {
+
+        boolean isOlderThan(Duration age, Instant now) {
+            return fetchedAt.plus(age).isBefore(now);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.ing.loan.service;
+
+import com.ing.loan.request.PaymentRequest;
+import com.ing.loan.response.BulkPaymentRowResponse;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * @author Suleyman Yildirim
+ */
+
+public interface BulkPaymentService {
+
+    /**
+     * Applies many payments, e.g. the rows of a payroll deduction file, with the same rules as
+     * {@link PaymentService#payLoan}. Rows are read lazily and committed in chunks; the result of every row of a
+     * chunk is passed to {@code results}, in row order, once the chunk has committed.
+     */
+    void payLoans(Iterator<PaymentRequest> payments, Consumer<BulkPaymentRowResponse> results);
+}
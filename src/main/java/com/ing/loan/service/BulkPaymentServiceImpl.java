@@ -0,0 +1,252 @@
+package com.ing.loan.service;
+
+import com.ing.loan.credit.CreditLedger;
+import com.ing.loan.entity.Loan;
+import com.ing.loan.exception.ErrorCode;
+import com.ing.loan.export.OpenWriteTransactions;
+import com.ing.loan.metrics.LoanMetrics;
+import com.ing.loan.metrics.OptimisticLockRetryListener;
+import com.ing.loan.money.Money;
+import com.ing.loan.outbox.LoanEvent;
+import com.ing.loan.outbox.Outbox;
+import com.ing.loan.repository.LoanInstallmentRepository;
+import com.ing.loan.repository.LoanRepository;
+import com.ing.loan.repository.PayableInstallment;
+import com.ing.loan.repository.UnpaidInstallment;
+import com.ing.loan.request.PaymentRequest;
+import com.ing.loan.response.BulkPaymentRowResponse;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Applies payroll deduction files and other large sets of payments.
+ * <p>
+ * Rows are committed in chunks of {@code loan.bulk.payment-chunk-size}. Per chunk, the loans are loaded with one
+ * query and their unpaid installments with another, the payments are allocated in memory with the rules of
+ * {@link PaymentServiceImpl}, and every paid installment is updated with a single statement, instead of three or
+ * more queries and a transaction per payment. Several rows for the same loan are applied in row order. A chunk
+ * that loses an optimistic lock race with another payment is rolled back and allocated again.
+ * @author Suleyman Yildirim
+ */
+@Slf4j
+@Service
+public class BulkPaymentServiceImpl implements BulkPaymentService {
+
+    private final LoanRepository loanRepository;
+    private final LoanInstallmentRepository loanInstallmentRepository;
+    private final CreditLedger creditLedger;
+    private final Outbox outbox;
+    private final LoanMetrics loanMetrics;
+    private final OpenWriteTransactions openWriteTransactions;
+    private final TransactionTemplate transactionTemplate;
+    private final RetryTemplate retryTemplate;
+    private final int chunkSize;
+
+    public BulkPaymentServiceImpl(LoanRepository loanRepository, LoanInstallmentRepository loanInstallmentRepository,
+                                  CreditLedger creditLedger, Outbox outbox, LoanMetrics loanMetrics,
+                                  OpenWriteTransactions openWriteTransactions, PlatformTransactionManager transactionManager, OptimisticLockRetryListener retryListener,
+                                  @Value("${loan.bulk.payment-chunk-size:500}") int chunkSize,
+                                  @Value("${loan.retry.max-attempts:4}") int maxAttempts,
+                                  @Value("${loan.retry.initial-backoff-ms:10}") long initialBackoffMillis,
+                                  @Value("${loan.retry.backoff-multiplier:2}") double backoffMultiplier,
+                                  @Value("${loan.retry.max-backoff-ms:200}") long maxBackoffMillis) {
+        this.loanRepository = loanRepository;
+        this.loanInstallmentRepository = loanInstallmentRepository;
+        this.creditLedger = creditLedger;
+        this.outbox = outbox;
+        this.loanMetrics = loanMetrics;
+        this.openWriteTransactions = openWriteTransactions;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retryTemplate = RetryTemplate.builder()
+                .maxAttempts(maxAttempts)
+                .exponentialBackoff(initialBackoffMillis, backoffMultiplier, maxBackoffMillis, true)
+                .retryOn(OptimisticLockingFailureException.class)
+                .withListener(retryListener)
+                .build();
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    @Timed(value = "loan.payment.bulk", description = "Time taken to apply a bulk payment request", histogram = true)
+    public void payLoans(Iterator<PaymentRequest> payments, Consumer<BulkPaymentRowResponse> results) {
+        long startedAt = System.nanoTime();
+        int index = 0;
+        int paidCount = 0;
+        List<IndexedPayment> chunk = new ArrayList<>(chunkSize);
+        while (payments.hasNext()) {
+            chunk.add(new IndexedPayment(index++, payments.next()));
+            if (chunk.size() == chunkSize || !payments.hasNext()) {
+                for (BulkPaymentRowResponse row : applyChunk(chunk)) {
+                    if (row.getErrorCode() == null) {
+                        paidCount++;
+                    }
+                    results.accept(row);
+                }
+                chunk.clear();
+            }
+        }
+        log.info("Bulk payment of {} rows finished in {} ms: {} applied, {} rejected",
+                index, (System.nanoTime() - startedAt) / 1_000_000, paidCount, index - paidCount);
+    }
+
+    private List<BulkPaymentRowResponse> applyChunk(List<IndexedPayment> chunk) {
+        List<BulkPaymentRowResponse> rows;
+        try {
+            rows = retryTemplate.execute(new RetryCallback<List<BulkPaymentRowResponse>, RuntimeException>() {
+                @Override
+                public List<BulkPaymentRowResponse> doWithRetry(RetryContext context) {
+                    return transactionTemplate.execute(transaction -> allocate(chunk));
+                }
+
+                @Override
+                public String getLabel() {
+                    return "loan.payment.bulk";
+                }
+            });
+        } catch (OptimisticLockingFailureException e) {
+            // Every attempt conflicted; nothing of the chunk was committed
+            return chunk.stream()
+                    .map(payment -> reject(payment, ErrorCode.CONCURRENT_MODIFICATION,
+                            "The loan was changed by a concurrent payment, please retry"))
+                    .toList();
+        }
+        // Counted once the chunk has committed, not by the attempts that were rolled back
+        for (BulkPaymentRowResponse row : rows) {
+            if (row.getErrorCode() == null) {
+                loanMetrics.recordInstallmentsPaid(row.getPaidInstallments());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Allocates the payments of a chunk in the current transaction. Package-private for the tests.
+     */
+    List<BulkPaymentRowResponse> allocate(List<IndexedPayment> chunk) {
+        openWriteTransactions.register();
+        Set<Long> loanIds = new LinkedHashSet<>();
+        for (IndexedPayment payment : chunk) {
+            if (isValid(payment.request())) {
+                loanIds.add(payment.request().getLoanId());
+            }
+        }
+        Map<Long, LoanAllocation> allocations = new HashMap<>();
+        if (!loanIds.isEmpty()) {
+            for (Loan loan : loanRepository.findVersionedByIdIn(loanIds)) {
+                allocations.put(loan.getId(), new LoanAllocation(loan));
+            }
+            LocalDate maxDueDate = PaymentServiceImpl.maxPayableDueDate();
+            for (UnpaidInstallment installment : loanInstallmentRepository.findUnpaidInstallments(allocations.keySet())) {
+                LoanAllocation allocation = allocations.get(installment.loanId());
+                allocation.unpaid.add(installment);
+                if (installment.dueDate().isBefore(maxDueDate)) {
+                    allocation.payable.add(installment.toPayable());
+                }
+            }
+        }
+
+        LocalDate paymentDate = LocalDate.now();
+        List<Long> paidIds = new ArrayList<>();
+        List<BulkPaymentRowResponse> rows = new ArrayList<>(chunk.size());
+        for (IndexedPayment payment : chunk) {
+            PaymentRequest request = payment.request();
+            if (!isValid(request)) {
+                rows.add(reject(payment, ErrorCode.INVALID_PAYMENT, "A loan ID and a positive payment amount are required"));
+                continue;
+            }
+            LoanAllocation allocation = allocations.get(request.getLoanId());
+            if (allocation == null) {
+                rows.add(reject(payment, ErrorCode.LOAN_NOT_FOUND, "Loan %s not found".formatted(request.getLoanId())));
+                continue;
+            }
+            List<PayableInstallment> payable = allocation.payable.subList(allocation.paidCount, allocation.payable.size());
+            if (payable.isEmpty()) {
+                rows.add(reject(payment, ErrorCode.LOAN_INSTALLMENT_NOT_FOUND, "No valid installments found for loan " + request.getLoanId()));
+                continue;
+            }
+
+            int count = PaymentServiceImpl.payableCount(Money.tendered(request.getPaymentAmount()), payable);
+            Money totalPaid = PaymentServiceImpl.totalAmount(payable, count);
+            Loan loan = allocation.loan;
+            // The loans are loaded with a forced increment, which commits at least one version past the one in memory
+            long eventVersion = loan.getVersion() + 1;
+            for (PayableInstallment installment : payable.subList(0, count)) {
+                paidIds.add(installment.id());
+                outbox.append(new LoanEvent.InstallmentPaid(loan.getId(), installment.id(), installment.amount().toBigDecimal(), paymentDate), eventVersion);
+            }
+            allocation.paidCount += count;
+            boolean isLoanPaid = allocation.paidCount == allocation.unpaid.size();
+            loan.setIsPaid(isLoanPaid);
+            if (count > 0) {
+                // The installments are paid in due date order, so the next due one is the first not paid by the chunk
+                UnpaidInstallment next = isLoanPaid ? null : allocation.unpaid.get(allocation.paidCount);
+                loan.recordPayment(count, totalPaid.toBigDecimal(),
+                        next != null ? next.dueDate() : null, next != null ? next.amount().toBigDecimal() : null);
+            }
+            if (isLoanPaid) {
+                creditLedger.release(loan.getCustomer().getId(), Money.of(loan.getLoanAmount()));
+                outbox.append(new LoanEvent.LoanFullyPaid(loan.getId(), loan.getCustomer().getId(), loan.getLoanAmount(), paymentDate), eventVersion);
+            }
+            rows.add(BulkPaymentRowResponse.builder()
+                    .index(payment.index())
+                    .loanId(loan.getId())
+                    .paidInstallments(count)
+                    .totalAmountSpent(totalPaid.toBigDecimal())
+                    .isLoanPaid(isLoanPaid)
+                    .build());
+        }
+
+        // One statement for the whole chunk; an installment paid in the meantime means the allocation is stale
+        if (!paidIds.isEmpty() && loanInstallmentRepository.markPaid(paidIds, paymentDate) != paidIds.size()) {
+            throw new OptimisticLockingFailureException("Installments of the chunk were paid concurrently");
+        }
+        return rows;
+    }
+
+    private static boolean isValid(PaymentRequest request) {
+        return request != null && request.getLoanId() != null
+                && request.getPaymentAmount() != null && request.getPaymentAmount().signum() > 0;
+    }
+
+    private static BulkPaymentRowResponse reject(IndexedPayment payment, ErrorCode errorCode, String message) {
+        return BulkPaymentRowResponse.builder()
+                .index(payment.index())
+                .loanId(payment.request() != null ? payment.request().getLoanId() : null)
+                .errorCode(errorCode.getCode())
+                .errorMessage(message)
+                .build();
+    }
+
+    record IndexedPayment(int index, PaymentRequest request) {
+    }
+
+    // A loan of the chunk, its unpaid and payable installments, and how many of them the rows so far have paid
+    private static final class LoanAllocation {
+        private final Loan loan;
+        private final List<UnpaidInstallment> unpaid = new ArrayList<>();
+        private final List<PayableInstallment> payable = new ArrayList<>();
+        private int paidCount;
+
+        private LoanAllocation(Loan loan) {
+            this.loan = loan;
+        }
+    }
+}
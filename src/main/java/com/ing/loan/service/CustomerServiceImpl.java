@@ -4,10 +4,8 @@ import com.ing.loan.entity.Customer;
 import com.ing.loan.exception.CustomerExistsException;
 import com.ing.loan.exception.ErrorCode;
 import com.ing.loan.repository.CustomerRepository;
-import jakarta.persistence.LockModeType;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.jpa.repository.Lock;
 import org.springframework.stereotype.Service;
 
 import java.util.Optional;
@@ -0,0 +1,23 @@
+package com.ing.loan.service;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+/**
+ * Makes a request safe to retry with an {@code Idempotency-Key} header.
+ */
+public interface IdempotencyService {
+
+    String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * Runs {@code action} once per key. A retry with the same key and request gets the stored response of the
+     * first successful attempt without running the action again. Without a key, the action just runs.
+     *
+     * @param operation      name of the endpoint, keys are scoped to it and to the caller
+     * @param idempotencyKey the client's key, may be null
+     * @param request        the request body, a key can only be reused for the same body
+     */
+    ResponseEntity<?> execute(String operation, String idempotencyKey, Object request, Supplier<? extends ResponseEntity<?>> action);
+}
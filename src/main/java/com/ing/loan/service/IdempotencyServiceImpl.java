@@ -0,0 +1,203 @@
+package com.ing.loan.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ing.loan.entity.IdempotencyRecord;
+import com.ing.loan.exception.ErrorCode;
+import com.ing.loan.exception.IdempotencyConflictException;
+import com.ing.loan.metrics.OptimisticLockRetryListener;
+import com.ing.loan.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency backed by the idempotency_record table, with a Caffeine cache in front of it.
+ * <p>
+ * The first request with a key claims it by inserting a row, runs, and stores its response if it succeeded.
+ * The response is stored in the transaction of the action, which the action's own transactional calls join, so
+ * it is stored if and only if what the action did commits: a claim is never left unfinished by an action that
+ * committed. An action losing an optimistic lock race at commit is run again in a new transaction.
+ * Retries are answered from the cache, or from the table after a restart or on another instance, as the
+ * stored JSON, without entering the transactional path again. Failed requests release their claim so the
+ * client can retry them. Records are purged once they are older than the TTL.
+ */
+@Slf4j
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Cache<String, StoredResponse> responses;
+    private final TransactionTemplate transactionTemplate;
+    private final RetryTemplate retryTemplate;
+
+    public IdempotencyServiceImpl(IdempotencyRecordRepository idempotencyRecordRepository, ObjectMapper objectMapper,
+                                  PlatformTransactionManager transactionManager, OptimisticLockRetryListener retryListener,
+                                  @Value("${loan.idempotency.ttl:24h}") Duration ttl,
+                                  @Value("${loan.idempotency.cache-size:10000}") long cacheSize,
+                                  @Value("${loan.retry.max-attempts:4}") int maxAttempts,
+                                  @Value("${loan.retry.initial-backoff-ms:10}") long initialBackoffMillis,
+                                  @Value("${loan.retry.backoff-multiplier:2}") double backoffMultiplier,
+                                  @Value("${loan.retry.max-backoff-ms:200}") long maxBackoffMillis) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retryTemplate = RetryTemplate.builder()
+                .maxAttempts(maxAttempts)
+                .exponentialBackoff(initialBackoffMillis, backoffMultiplier, maxBackoffMillis, true)
+                .retryOn(OptimisticLockingFailureException.class)
+                .withListener(retryListener)
+                .build();
+    }
+
+    @Override
+    public ResponseEntity<?> execute(String operation, String idempotencyKey, Object request, Supplier<? extends ResponseEntity<?>> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        String id = operation + ':' + principalName() + ':' + idempotencyKey;
+        String requestHash = hash(request);
+
+        StoredResponse stored = responses.getIfPresent(id);
+        if (stored != null) {
+            return replay(stored, requestHash);
+        }
+        if (!claim(id, requestHash)) {
+            return replay(storedResponse(id), requestHash);
+        }
+
+        Outcome outcome;
+        try {
+            outcome = retryTemplate.execute(new RetryCallback<Outcome, RuntimeException>() {
+                @Override
+                public Outcome doWithRetry(RetryContext context) {
+                    return transactionTemplate.execute(transaction -> {
+                        ResponseEntity<?> response = action.get();
+                        if (!response.getStatusCode().is2xxSuccessful()) {
+                            // Whatever the action did before it failed is not kept either
+                            transaction.setRollbackOnly();
+                            return new Outcome(response, null);
+                        }
+                        StoredResponse completed = new StoredResponse(requestHash, response.getStatusCode().value(), toJson(response.getBody()));
+                        idempotencyRecordRepository.complete(id, completed.statusCode(), completed.body());
+                        return new Outcome(response, completed);
+                    });
+                }
+
+                @Override
+                public String getLabel() {
+                    return operation;
+                }
+            });
+        } catch (RuntimeException e) {
+            idempotencyRecordRepository.release(id);
+            throw e;
+        }
+        if (outcome.stored() == null) {
+            idempotencyRecordRepository.release(id);
+        } else {
+            responses.put(id, outcome.stored());
+        }
+        return outcome.response();
+    }
+
+    @Scheduled(fixedDelayString = "${loan.idempotency.purge-interval:PT10M}")
+    public void purgeExpired() {
+        int purged = idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+        if (purged > 0) {
+            log.info("Purged {} expired idempotency records", purged);
+        }
+    }
+
+    private boolean claim(String id, String requestHash) {
+        try {
+            idempotencyRecordRepository.insertClaim(id, requestHash, LocalDateTime.now());
+            return true;
+        } catch (DataIntegrityViolationException alreadyClaimed) {
+            return false;
+        }
+    }
+
+    // The key was claimed before: either its response is stored, or the first request is still running
+    private StoredResponse storedResponse(String id) {
+        IdempotencyRecord idempotencyRecord = idempotencyRecordRepository.findById(id)
+                .filter(IdempotencyRecord::isCompleted)
+                .orElseThrow(() -> new IdempotencyConflictException(ErrorCode.IDEMPOTENCY_REQUEST_IN_PROGRESS,
+                        "A request with this Idempotency-Key is still being processed"));
+        StoredResponse stored = new StoredResponse(idempotencyRecord.getRequestHash(), idempotencyRecord.getStatusCode(),
+                idempotencyRecord.getResponseBody());
+        responses.put(id, stored);
+        return stored;
+    }
+
+    private static ResponseEntity<String> replay(StoredResponse stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException(ErrorCode.IDEMPOTENCY_KEY_REUSED,
+                    "This Idempotency-Key was already used for a different request");
+        }
+        return ResponseEntity.status(stored.statusCode())
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.body());
+    }
+
+    private static String principalName() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : "anonymous";
+    }
+
+    private String hash(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot hash request", e);
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot store response", e);
+        }
+    }
+
+    // Response of the first request, as sent to the client
+    private record StoredResponse(String requestHash, int statusCode, String body) {
+    }
+
+    // Response of the action, and what was stored of it if it succeeded
+    private record Outcome(ResponseEntity<?> response, StoredResponse stored) {
+    }
+}
@@ -1,11 +1,17 @@
 package com.ing.loan.service;
 
 import com.ing.loan.entity.Loan;
-import com.ing.loan.entity.LoanInstallment;
+import com.ing.loan.request.LoanFilter;
 import com.ing.loan.request.LoanRequest;
+import com.ing.loan.response.BulkLoanResponse;
+import com.ing.loan.response.LoanInstallmentResponse;
+import com.ing.loan.response.LoanListItemResponse;
+import com.ing.loan.response.LoanPageResponse;
 import com.ing.loan.response.LoanResponse;
+import com.ing.loan.response.LoanSummaryResponse;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Service interface for Loan operations.
@@ -13,7 +19,30 @@ import java.util.List;
 public interface LoanService {
     LoanResponse createLoan(LoanRequest loanRequest);
 
+    /**
+     * Originates a batch of loans in one pass. Rows that fail a business rule are
+     * reported in the response instead of aborting the whole batch.
+     */
+    BulkLoanResponse createLoans(List<LoanRequest> loanRequests);
+
     List<Loan> listLoansByCustomer(Long customerId);
 
-    List<LoanInstallment> listInstallmentsByLoan(Long loanId);
+    /**
+     * Returns up to {@code size} of the customer's loans with an id greater than {@code after}
+     * (all loans when {@code after} is null), in id order.
+     */
+    LoanPageResponse listLoansPage(Long customerId, LoanFilter filter, Long after, int size);
+
+    /**
+     * Hands every matching loan of the customer to {@code consumer} as it is read from the database,
+     * without holding the whole result in memory.
+     */
+    void streamLoansByCustomer(Long customerId, LoanFilter filter, Consumer<LoanListItemResponse> consumer);
+
+    List<LoanInstallmentResponse> listInstallmentsByLoan(Long loanId);
+
+    /**
+     * Returns the balance of a loan from its summary columns, without reading its installments.
+     */
+    LoanSummaryResponse getLoanSummary(Long loanId);
 }
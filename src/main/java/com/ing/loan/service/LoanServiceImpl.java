@@ -1,24 +1,50 @@
 package com.ing.loan.service;
 
+import com.ing.loan.amortization.AmortizationEngine;
+import com.ing.loan.amortization.AmortizationMethod;
+import com.ing.loan.amortization.LoanSchedule;
+import com.ing.loan.credit.CreditLedger;
 import com.ing.loan.entity.Customer;
 import com.ing.loan.entity.Loan;
 import com.ing.loan.entity.LoanInstallment;
 import com.ing.loan.exception.*;
+import com.ing.loan.export.OpenWriteTransactions;
+import com.ing.loan.metrics.LoanMetrics;
+import com.ing.loan.money.Money;
+import com.ing.loan.outbox.LoanEvent;
+import com.ing.loan.outbox.Outbox;
 import com.ing.loan.repository.CustomerRepository;
 import com.ing.loan.repository.LoanInstallmentRepository;
 import com.ing.loan.repository.LoanRepository;
+import com.ing.loan.request.LoanFilter;
 import com.ing.loan.request.LoanRequest;
+import com.ing.loan.response.BulkLoanResponse;
+import com.ing.loan.response.BulkLoanRowResponse;
 import com.ing.loan.response.LoanInstallmentResponse;
+import com.ing.loan.response.LoanListItemResponse;
+import com.ing.loan.response.LoanPageResponse;
 import com.ing.loan.response.LoanResponse;
+import com.ing.loan.response.LoanSummaryResponse;
+import com.ing.loan.security.LoanOwnershipIndex;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
-import java.time.temporal.TemporalAdjusters;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.ing.loan.exception.ErrorCode.LOAN_INSTALLMENT_NOT_FOUND;
 import static com.ing.loan.exception.ErrorCode.LOAN_NOT_FOUND;
@@ -26,32 +52,128 @@ import static com.ing.loan.exception.ErrorCode.LOAN_NOT_FOUND;
 /**
  * Implementation of LoanService.
  */
+@Slf4j
 @Service
 public class LoanServiceImpl implements LoanService {
 
+    // The version a new loan is committed at, which orders its LoanCreated event before those of its payments
+    private static final long NEW_LOAN_VERSION = 0;
+
     private final LoanRepository loanRepository;
     private final CustomerRepository customerRepository;
     private final LoanInstallmentRepository loanInstallmentRepository;
+    private final EntityManager entityManager;
+    private final LoanMetrics loanMetrics;
+    private final AmortizationEngine amortizationEngine;
+    private final CreditLedger creditLedger;
+    private final Outbox outbox;
+    private final LoanOwnershipIndex ownershipIndex;
+    private final OpenWriteTransactions openWriteTransactions;
+
+    // Number of loans persisted before the persistence context is flushed and cleared during bulk origination
+    @Value("${loan.bulk.flush-size:50}")
+    private int bulkFlushSize = 50;
 
 
-    public LoanServiceImpl(LoanRepository loanRepository, CustomerRepository customerRepository, LoanInstallmentRepository loanInstallmentRepository) {
+    public LoanServiceImpl(LoanRepository loanRepository, CustomerRepository customerRepository, LoanInstallmentRepository loanInstallmentRepository,
+                           EntityManager entityManager, LoanMetrics loanMetrics, AmortizationEngine amortizationEngine,
+                           CreditLedger creditLedger, Outbox outbox, LoanOwnershipIndex ownershipIndex,
+                           OpenWriteTransactions openWriteTransactions) {
         this.loanRepository = loanRepository;
         this.customerRepository = customerRepository;
         this.loanInstallmentRepository = loanInstallmentRepository;
+        this.entityManager = entityManager;
+        this.loanMetrics = loanMetrics;
+        this.amortizationEngine = amortizationEngine;
+        this.creditLedger = creditLedger;
+        this.outbox = outbox;
+        this.ownershipIndex = ownershipIndex;
+        this.openWriteTransactions = openWriteTransactions;
     }
 
     @Override
     @Transactional
+    @Timed(value = "loan.create", description = "Time taken to originate a single loan", histogram = true)
     public LoanResponse createLoan(LoanRequest loanRequest) {
-        var customer = getCustomerById(loanRequest.getCustomerId());
-        validateCreditLimit(customer, loanRequest);
-        var loan = buildLoanEntity(customer, loanRequest);
-        attachInstallments(loan, loanRequest);
+        openWriteTransactions.register();
+        var schedule = scheduleFor(loanRequest);
+        reserveCredit(loanRequest.getCustomerId(), schedule.total());
+        // The reservation has checked that the customer exists; the loan only needs its id
+        var customer = customerRepository.getReferenceById(loanRequest.getCustomerId());
+        var loan = buildLoanEntity(customer, loanRequest, schedule);
+        attachInstallments(loan, schedule);
         var savedLoan = loanRepository.save(loan);
+        outbox.append(loanCreated(savedLoan), NEW_LOAN_VERSION);
+        // Loan ids are never reused, so if the transaction rolls back the entry only names a loan that does not exist
+        ownershipIndex.put(savedLoan.getId(), loanRequest.getCustomerId());
         return buildLoanResponse(savedLoan);
     }
 
     @Override
+    @Transactional
+    @Timed(value = "loan.create.bulk", description = "Time taken to originate a batch of loans", histogram = true)
+    public BulkLoanResponse createLoans(List<LoanRequest> loanRequests) {
+        long startedAt = System.nanoTime();
+        openWriteTransactions.register();
+
+        // Load every referenced customer with a single query
+        Set<Long> customerIds = loanRequests.stream().map(LoanRequest::getCustomerId).collect(Collectors.toSet());
+        Map<Long, Customer> customers = customerRepository.findAllById(customerIds).stream()
+                .collect(Collectors.toMap(Customer::getId, Function.identity()));
+
+        List<BulkLoanRowResponse> results = new ArrayList<>(loanRequests.size());
+        Map<BulkLoanRowResponse, Loan> pending = new LinkedHashMap<>();
+        int createdCount = 0;
+
+        for (int index = 0; index < loanRequests.size(); index++) {
+            LoanRequest loanRequest = loanRequests.get(index);
+            BulkLoanRowResponse row = BulkLoanRowResponse.builder()
+                    .index(index)
+                    .customerId(loanRequest.getCustomerId())
+                    .build();
+            results.add(row);
+
+            Customer customer = customers.get(loanRequest.getCustomerId());
+            if (customer == null) {
+                reject(row, ErrorCode.CUSTOMER_NOT_FOUND, "Customer with ID %s not found.".formatted(loanRequest.getCustomerId()));
+                continue;
+            }
+            if (!Loan.ALLOWED_INSTALLMENTS.contains(loanRequest.getInstallments())) {
+                reject(row, ErrorCode.INVALID_INSTALLMENTS, "Invalid number of installments. Valid values are 6, 9, 12, or 24.");
+                continue;
+            }
+            LoanSchedule schedule = scheduleFor(loanRequest);
+            if (!creditLedger.tryReserve(customer.getId(), schedule.total())) {
+                loanMetrics.recordCreditLimitRejection();
+                reject(row, ErrorCode.INSUFFICIENT_CREDIT, "Customer does not have enough credit limit for this loan");
+                continue;
+            }
+
+            var loan = buildLoanEntity(customer, loanRequest, schedule);
+            attachInstallments(loan, schedule);
+            pending.put(row, loan);
+            createdCount++;
+
+            if (pending.size() >= bulkFlushSize) {
+                flushPendingLoans(pending);
+            }
+        }
+        flushPendingLoans(pending);
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        log.info("Bulk origination of {} rows finished in {} ms: {} created, {} rejected ({} loans/s)",
+                loanRequests.size(), elapsedMillis, createdCount, loanRequests.size() - createdCount,
+                createdCount * 1000L / elapsedMillis);
+
+        return BulkLoanResponse.builder()
+                .createdCount(createdCount)
+                .rejectedCount(loanRequests.size() - createdCount)
+                .results(results)
+                .build();
+    }
+
+    @Override
+    @Timed(value = "loan.list.by-customer", description = "Time taken to list the loans of a customer", histogram = true)
     public List<Loan> listLoansByCustomer(Long customerId) {
         // Fetch loans for a given customerId
         return loanRepository.findByCustomerId(customerId)
@@ -60,32 +182,87 @@ public class LoanServiceImpl implements LoanService {
     }
 
     @Override
-    public List<LoanInstallment> listInstallmentsByLoan(Long loanId) {
+    @Timed(value = "loan.list.page", description = "Time taken to list a page of the loans of a customer", histogram = true)
+    public LoanPageResponse listLoansPage(Long customerId, LoanFilter filter, Long after, int size) {
+        // Read one row more than requested to know whether there is a next page
+        List<LoanListItemResponse> loans = loanRepository.findLoanPage(customerId, after == null ? 0L : after,
+                filter.getIsPaid(), filter.getCreatedFrom(), filter.getCreatedTo(), Limit.of(size + 1));
+        Long nextCursor = null;
+        if (loans.size() > size) {
+            loans = loans.subList(0, size);
+            nextCursor = loans.get(size - 1).getId();
+        }
+        return LoanPageResponse.builder()
+                .loans(loans)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public void streamLoansByCustomer(Long customerId, LoanFilter filter, Consumer<LoanListItemResponse> consumer) {
+        try (Stream<LoanListItemResponse> loans = loanRepository.streamLoans(customerId,
+                filter.getIsPaid(), filter.getCreatedFrom(), filter.getCreatedTo())) {
+            loans.forEach(consumer);
+        }
+    }
+
+    @Override
+    @Timed(value = "loan.installments.list.by-loan", description = "Time taken to list the installments of a loan", histogram = true)
+    public List<LoanInstallmentResponse> listInstallmentsByLoan(Long loanId) {
         // Fetch installments for a given loanId
-        return loanInstallmentRepository.findByLoanId(loanId)
-                .filter(installments -> !installments.isEmpty())  // Ensure the list is not empty
-                .orElseThrow(() -> new LoanInstallmentNotFoundException(LOAN_INSTALLMENT_NOT_FOUND, "No installments found for loan with ID: " + loanId));
+        List<LoanInstallmentResponse> installments = loanInstallmentRepository.findInstallmentResponses(loanId);
+        if (installments.isEmpty()) {
+            throw new LoanInstallmentNotFoundException(LOAN_INSTALLMENT_NOT_FOUND, "No installments found for loan with ID: " + loanId);
+        }
+        return installments;
     }
 
-    private static List<LoanInstallment> getLoanInstallments(LoanRequest loanRequest, BigDecimal installmentAmount) {
+    @Override
+    @Timed(value = "loan.summary", description = "Time taken to read the balance of a loan", histogram = true)
+    public LoanSummaryResponse getLoanSummary(Long loanId) {
+        // A primary key read, served from the second-level cache when the loan is in it
+        Loan loan = loanRepository.findById(loanId)
+                .orElseThrow(() -> new LoanNotFoundException(LOAN_NOT_FOUND, "Loan %s not found".formatted(loanId)));
+        return LoanSummaryResponse.builder()
+                .loanId(loan.getId())
+                .customerId(loan.getCustomer().getId())
+                .loanAmount(loan.getLoanAmount())
+                .numberOfInstallment(loan.getNumberOfInstallment())
+                .paidInstallments(loan.getPaidInstallments())
+                .remainingAmount(loan.getRemainingAmount())
+                .nextDueDate(loan.getNextDueDate())
+                .nextDueAmount(loan.getNextDueAmount())
+                .isPaid(loan.getIsPaid())
+                .build();
+    }
+
+    /**
+     * Creates the installments of a schedule. Installments of equal amount share one BigDecimal instance.
+     * Package-private for the schedule benchmarks in src/jmh.
+     */
+    static List<LoanInstallment> getLoanInstallments(LoanSchedule schedule) {
         // Prepare the list of installments
-        List<LoanInstallment> installments = new ArrayList<>();
-        LocalDate nextDueDate = LocalDate.now().plusMonths(1).with(TemporalAdjusters.firstDayOfMonth());
+        List<LoanInstallment> installments = new ArrayList<>(schedule.size());
+        long previousMinorUnits = Long.MIN_VALUE;
+        BigDecimal amount = null;
 
-        for (int i = 0; i < loanRequest.getInstallments(); i++) {
+        for (int i = 0; i < schedule.size(); i++) {
+            long minorUnits = schedule.installmentMinorUnits(i);
+            if (minorUnits != previousMinorUnits) {
+                amount = new Money(minorUnits).toBigDecimal();
+                previousMinorUnits = minorUnits;
+            }
             // Create each installment and add to the list
             var installment = LoanInstallment.builder()
-                    .amount(installmentAmount)
+                    .amount(amount)
                     .paidAmount(BigDecimal.ZERO)
-                    .dueDate(nextDueDate)
+                    .dueDate(schedule.dueDate(i))
                     .paymentDate(null)
                     .isPaid(false)
                     .build();
 
             installments.add(installment);
-
-            // Update the due date for the next installment
-            nextDueDate = nextDueDate.plusMonths(1);
         }
         return installments;
     }
@@ -93,8 +270,11 @@ public class LoanServiceImpl implements LoanService {
     private LoanResponse buildLoanResponse(Loan loan) {
         List<LoanInstallmentResponse> installmentResponses = loan.getInstallments().stream()
                 .map(installment -> LoanInstallmentResponse.builder()
+                        .id(installment.getId())
                         .amount(installment.getAmount())
+                        .paidAmount(installment.getPaidAmount())
                         .dueDate(installment.getDueDate())
+                        .paymentDate(installment.getPaymentDate())
                         .isPaid(installment.getIsPaid())
                         .build()).toList();
 
@@ -104,37 +284,71 @@ public class LoanServiceImpl implements LoanService {
                 .build();
     }
 
-    private Customer getCustomerById(Long customerId) {
-        return customerRepository.findById(customerId)
-                .orElseThrow(() -> new CustomerNotFoundException(ErrorCode.CUSTOMER_NOT_FOUND,
-                        "Customer with ID %s not found.".formatted(customerId)));
-    }
-
-    private void validateCreditLimit(Customer customer, LoanRequest loanRequest) {
-        BigDecimal loanAmount = calculateLoanAmount(loanRequest);
-        if (customer.getCreditLimit().subtract(customer.getUsedCreditLimit()).compareTo(loanAmount) < 0) {
+    private void reserveCredit(Long customerId, Money loanAmount) {
+        if (!creditLedger.tryReserve(customerId, loanAmount)) {
+            loanMetrics.recordCreditLimitRejection();
             throw new InsufficientCreditLimitException(ErrorCode.INSUFFICIENT_CREDIT,
                     "Customer does not have enough credit limit for this loan");
         }
     }
 
-    private BigDecimal calculateLoanAmount(LoanRequest loanRequest) {
-        return loanRequest.getLoanAmount().multiply(BigDecimal.ONE.add(loanRequest.getInterestRate()));
+    // Principal plus interest per the requested amortization method, flat when none is given
+    LoanSchedule scheduleFor(LoanRequest loanRequest) {
+        return amortizationEngine.schedule(amortizationMethod(loanRequest), loanRequest.getLoanAmount(),
+                loanRequest.getInterestRate(), loanRequest.getInstallments(), LocalDate.now());
+    }
+
+    private static AmortizationMethod amortizationMethod(LoanRequest loanRequest) {
+        return loanRequest.getAmortizationMethod() != null ? loanRequest.getAmortizationMethod() : AmortizationMethod.FLAT;
     }
 
-        private Loan buildLoanEntity(Customer customer, LoanRequest loanRequest) {
+    Loan buildLoanEntity(Customer customer, LoanRequest loanRequest, LoanSchedule schedule) {
         return Loan.builder()
                 .customer(customer)
-                .loanAmount(calculateLoanAmount(loanRequest))
+                .loanAmount(schedule.total().toBigDecimal())
                 .numberOfInstallment(loanRequest.getInstallments())
+                .amortizationMethod(amortizationMethod(loanRequest))
                 .createDate(LocalDate.now())
                 .isPaid(false)
+                .paidInstallments(0)
+                .remainingAmount(schedule.total().toBigDecimal())
+                .nextDueDate(schedule.dueDate(0))
+                .nextDueAmount(new Money(schedule.installmentMinorUnits(0)).toBigDecimal())
                 .build();
     }
 
-    private void attachInstallments(Loan loan, LoanRequest loanRequest) {
-        BigDecimal installmentAmount = loan.getLoanAmount().divide(BigDecimal.valueOf(loanRequest.getInstallments()), RoundingMode.HALF_UP);
-        List<LoanInstallment> installments = getLoanInstallments(loanRequest, installmentAmount);
+    /**
+     * Persists the pending loans (and their cascaded installments) as JDBC batches, then clears the
+     * persistence context so memory stays flat regardless of the size of the bulk request.
+     */
+    private void flushPendingLoans(Map<BulkLoanRowResponse, Loan> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        loanRepository.saveAll(pending.values());
+        pending.values().forEach(loan -> outbox.append(loanCreated(loan), NEW_LOAN_VERSION));
+        entityManager.flush();
+        pending.forEach((row, loan) -> {
+            row.setLoanId(loan.getId());
+            row.setCreated(true);
+            ownershipIndex.put(loan.getId(), loan.getCustomer().getId());
+        });
+        entityManager.clear();
+        pending.clear();
+    }
+
+    private static LoanEvent.LoanCreated loanCreated(Loan loan) {
+        return new LoanEvent.LoanCreated(loan.getId(), loan.getCustomer().getId(), loan.getLoanAmount(),
+                loan.getNumberOfInstallment(), loan.getCreateDate());
+    }
+
+    private static void reject(BulkLoanRowResponse row, ErrorCode errorCode, String message) {
+        row.setErrorCode(errorCode.getCode());
+        row.setErrorMessage(message);
+    }
+
+    void attachInstallments(Loan loan, LoanSchedule schedule) {
+        List<LoanInstallment> installments = getLoanInstallments(schedule);
         installments.forEach(installment -> installment.setLoan(loan));
         loan.setInstallments(installments);
     }
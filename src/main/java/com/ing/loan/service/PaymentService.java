@@ -10,4 +10,10 @@ import java.math.BigDecimal;
 
 public interface PaymentService {
     LoanPaymentResponse payLoan(Long loanId, BigDecimal amount);
+
+    /**
+     * Applies a payment in the caller's transaction, without retries. Used to commit many payments together;
+     * a failed payment does not mark the caller's transaction for rollback.
+     */
+    LoanPaymentResponse applyPayment(Long loanId, BigDecimal amount);
 }
@@ -1,25 +1,32 @@
 package com.ing.loan.service;
 
-import com.ing.loan.entity.Customer;
+import com.ing.loan.credit.CreditLedger;
 import com.ing.loan.entity.Loan;
-import com.ing.loan.entity.LoanInstallment;
 import com.ing.loan.exception.ErrorCode;
 import com.ing.loan.exception.LoanInstallmentNotFoundException;
 import com.ing.loan.exception.LoanNotFoundException;
-import com.ing.loan.repository.CustomerRepository;
+import com.ing.loan.export.OpenWriteTransactions;
+import com.ing.loan.metrics.LoanMetrics;
+import com.ing.loan.money.Money;
+import com.ing.loan.outbox.LoanEvent;
+import com.ing.loan.outbox.Outbox;
 import com.ing.loan.repository.LoanInstallmentRepository;
 import com.ing.loan.repository.LoanRepository;
+import com.ing.loan.repository.PayableInstallment;
+import com.ing.loan.repository.UnpaidInstallment;
 import com.ing.loan.response.LoanPaymentResponse;
+import io.micrometer.core.annotation.Timed;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.temporal.TemporalAdjusters;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Comparator;
 import java.util.List;
 
 import static com.ing.loan.exception.ErrorCode.LOAN_INSTALLMENT_NOT_FOUND;
@@ -32,76 +39,120 @@ import static com.ing.loan.exception.ErrorCode.LOAN_INSTALLMENT_NOT_FOUND;
 public class PaymentServiceImpl implements PaymentService{
 
     private final LoanRepository loanRepository;
-    private final CustomerRepository customerRepository;
+    private final CreditLedger creditLedger;
     private final LoanInstallmentRepository loanInstallmentRepository;
-
+    private final LoanMetrics loanMetrics;
+    private final Outbox outbox;
+    private final OpenWriteTransactions openWriteTransactions;
 
     @Autowired
-    public PaymentServiceImpl(LoanRepository loanRepository, CustomerRepository customerRepository, LoanInstallmentRepository loanInstallmentRepository) {
+    public PaymentServiceImpl(LoanRepository loanRepository, CreditLedger creditLedger, LoanInstallmentRepository loanInstallmentRepository,
+                              LoanMetrics loanMetrics, Outbox outbox, OpenWriteTransactions openWriteTransactions) {
         this.loanRepository = loanRepository;
-        this.customerRepository = customerRepository;
+        this.creditLedger = creditLedger;
         this.loanInstallmentRepository = loanInstallmentRepository;
+        this.loanMetrics = loanMetrics;
+        this.outbox = outbox;
+        this.openWriteTransactions = openWriteTransactions;
     }
 
     @Override
+    @Retryable(retryFor = OptimisticLockingFailureException.class, label = "loan.payment",
+            maxAttemptsExpression = "${loan.retry.max-attempts:4}",
+            backoff = @Backoff(delayExpression = "${loan.retry.initial-backoff-ms:10}", multiplierExpression = "${loan.retry.backoff-multiplier:2}",
+                    maxDelayExpression = "${loan.retry.max-backoff-ms:200}", random = true))
     @Transactional
+    @Timed(value = "loan.payment", description = "Time taken to apply a loan payment", histogram = true)
     public LoanPaymentResponse payLoan(Long loanId, BigDecimal paymentAmount) {
+        return applyPayment(loanId, paymentAmount);
+    }
+
+    @Override
+    public LoanPaymentResponse applyPayment(Long loanId, BigDecimal paymentAmount) {
+        openWriteTransactions.register();
         // Retrieve the loan
-        Loan loan = loanRepository.findById(loanId)
+        Loan loan = loanRepository.findVersionedById(loanId)
                 .orElseThrow(() -> new LoanNotFoundException(ErrorCode.LOAN_NOT_FOUND, "Loan %s not found".formatted(loanId)));
+        // The forced increment commits at least one version past the one read
+        long eventVersion = loan.getVersion() + 1;
 
-        List<LoanInstallment> filteredInstallments = filterInstallments(loanId);
+        // Selection, ordering and the 3-month window are applied by the database
+        List<PayableInstallment> payableInstallments = loanInstallmentRepository.findPayableInstallments(loanId, maxPayableDueDate());
 
-
-        if (!filteredInstallments.isEmpty()) {
+        if (!payableInstallments.isEmpty()) {
 
             // Calculate number of installments that can be paid
-            BigDecimal installmentAmount = filteredInstallments.get(0).getAmount();
-            int payableCount = paymentAmount.divideToIntegralValue(installmentAmount).intValue();
-            BigDecimal totalPaid = BigDecimal.ZERO;
-            int paidInstallmentsCount = 0;
-
-            // List to track modified installments
-            List<LoanInstallment> updatedInstallments = new ArrayList<>();
-
-            for (LoanInstallment installment : filteredInstallments) {
-                if (paidInstallmentsCount >= payableCount) break;
-
-                // Fully pay the installment
-                installment.setIsPaid(true);
-                installment.setPaidAmount(installmentAmount);
-                installment.setPaymentDate(LocalDate.now());
-                totalPaid = totalPaid.add(installmentAmount);
-                paidInstallmentsCount++;
-                updatedInstallments.add(installment);
+            int payableCount = payableCount(Money.tendered(paymentAmount), payableInstallments);
+
+            // Pay the earliest installments with a single bounded update
+            List<Long> installmentIds = payableInstallments.subList(0, payableCount).stream()
+                    .map(PayableInstallment::id)
+                    .toList();
+            LocalDate paymentDate = LocalDate.now();
+            int paidInstallmentsCount = installmentIds.isEmpty() ? 0 : loanInstallmentRepository.markPaid(installmentIds, paymentDate);
+            Money totalPaid = totalAmount(payableInstallments, paidInstallmentsCount);
+            loanMetrics.recordInstallmentsPaidOnCommit(paidInstallmentsCount);
+            for (int i = 0; i < paidInstallmentsCount; i++) {
+                PayableInstallment installment = payableInstallments.get(i);
+                outbox.append(new LoanEvent.InstallmentPaid(loanId, installment.id(), installment.amount().toBigDecimal(), paymentDate), eventVersion);
             }
 
-            // Update loan status if all installments are paid
-            boolean isLoanPaid = loan.getInstallments().stream().allMatch(LoanInstallment::getIsPaid);
+            // The loan is paid off once all of its installments are, read from its balance summary
+            boolean isLoanPaid = loan.getPaidInstallments() + paidInstallmentsCount == loan.getNumberOfInstallment();
             loan.setIsPaid(isLoanPaid);
+            if (paidInstallmentsCount > 0) {
+                UnpaidInstallment next = isLoanPaid ? null
+                        : loanInstallmentRepository.findEarliestUnpaid(loanId, Limit.of(1)).stream().findFirst().orElse(null);
+                loan.recordPayment(paidInstallmentsCount, totalPaid.toBigDecimal(),
+                        next != null ? next.dueDate() : null, next != null ? next.amount().toBigDecimal() : null);
+            }
 
-            // Update customer's used credit limit if loan is fully paid
+            // Return the loan amount to the customer's credit if loan is fully paid
             if (isLoanPaid) {
-                Customer customer = loan.getCustomer();
-                customer.setUsedCreditLimit(customer.getUsedCreditLimit().subtract(loan.getLoanAmount()));
-                customerRepository.save(customer);
+                creditLedger.release(loan.getCustomer().getId(), Money.of(loan.getLoanAmount()));
+                outbox.append(new LoanEvent.LoanFullyPaid(loanId, loan.getCustomer().getId(), loan.getLoanAmount(), paymentDate), eventVersion);
             }
 
-            // Save updates (only updated installments)
-            loanInstallmentRepository.saveAll(updatedInstallments);
             loanRepository.save(loan);
 
             // Build and return response
             return LoanPaymentResponse.builder()
                     .isLoanPaid(isLoanPaid)
                     .paidInstallments(paidInstallmentsCount)
-                    .totalAmountSpent(totalPaid)
+                    .totalAmountSpent(totalPaid.toBigDecimal())
                     .build();
         } else {
             throw new LoanInstallmentNotFoundException(LOAN_INSTALLMENT_NOT_FOUND, "No valid installments found for loan " + loanId);
         }
     }
 
+    /**
+     * Number of the given installments, earliest first, that the payment covers in full. Installments
+     * may differ in amount, e.g. the last one carries the rounding remainder of the schedule.
+     * Package-private for the payment allocation benchmarks in src/jmh.
+     */
+    static int payableCount(Money paymentAmount, List<PayableInstallment> payableInstallments) {
+        long remaining = paymentAmount.minorUnits();
+        int count = 0;
+        for (PayableInstallment installment : payableInstallments) {
+            remaining -= installment.amount().minorUnits();
+            if (remaining < 0) {
+                break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    // Sum of the first count installments
+    static Money totalAmount(List<PayableInstallment> payableInstallments, int count) {
+        Money total = Money.ZERO;
+        for (int i = 0; i < count; i++) {
+            total = total.plus(payableInstallments.get(i).amount());
+        }
+        return total;
+    }
+
     /**
      * Installments should be paid wholly or not at all.
      * 
@@ -112,21 +163,13 @@ public class PaymentServiceImpl implements PaymentService{
      * paid. So if we were in January, you could pay only for January, February and
      * March installments
      * 
-     * @param loanId
-     * @return
+     * @return the exclusive upper bound for the due date of payable installments
      */
-    private List<LoanInstallment> filterInstallments(Long loanId) {
+    static LocalDate maxPayableDueDate() {
         // Determine the maximum due date (3 months from now)
-        LocalDate maxDueDate = LocalDate.now()
+        return LocalDate.now()
                 .plusMonths(3)
                 .with(TemporalAdjusters.lastDayOfMonth());
-
-        // Filter installments: unpaid and due within the next 3 months, sorted by due date
-        return loanInstallmentRepository.findByLoanId(loanId).stream()
-                .flatMap(Collection::stream)
-                .filter(installment -> !installment.getIsPaid() && installment.getDueDate().isBefore(maxDueDate))
-                .sorted(Comparator.comparing(LoanInstallment::getDueDate))
-                .toList();
     }
 
 }
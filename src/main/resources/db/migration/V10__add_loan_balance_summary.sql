@@ -0,0 +1,18 @@
+-- Balance summary of a loan, maintained by origination and payments, so status reads never scan installments.
+-- remaining_amount is the sum of the unpaid installments; next_due_* describe the earliest unpaid installment
+-- and are null once the loan is paid off.
+ALTER TABLE loan ADD COLUMN paid_installments INT DEFAULT 0 NOT NULL;
+ALTER TABLE loan ADD COLUMN remaining_amount DECIMAL(15, 2) DEFAULT 0 NOT NULL;
+ALTER TABLE loan ADD COLUMN next_due_date DATE;
+ALTER TABLE loan ADD COLUMN next_due_amount DECIMAL(15, 2);
+
+-- Backfill existing loans from their installments
+UPDATE loan l SET
+    paid_installments = (SELECT COUNT(*) FROM loan_installment i WHERE i.loan_id = l.id AND i.is_paid = TRUE),
+    remaining_amount = (SELECT COALESCE(SUM(i.amount), 0) FROM loan_installment i WHERE i.loan_id = l.id AND i.is_paid = FALSE),
+    next_due_date = (SELECT MIN(i.due_date) FROM loan_installment i WHERE i.loan_id = l.id AND i.is_paid = FALSE);
+
+UPDATE loan l SET
+    next_due_amount = (SELECT i.amount FROM loan_installment i WHERE i.loan_id = l.id AND i.is_paid = FALSE
+                       ORDER BY i.due_date, i.id FETCH FIRST 1 ROW ONLY)
+WHERE next_due_date IS NOT NULL;
@@ -0,0 +1,14 @@
+-- Last change of each loan and installment, the watermark of incremental snapshot exports. Set by Hibernate on
+-- insert and update, and by the bulk installment updates in LoanInstallmentRepository; existing rows start now.
+ALTER TABLE loan ADD COLUMN updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL;
+ALTER TABLE loan_installment ADD COLUMN updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL;
+
+CREATE INDEX idx_loan_updated_at ON loan (updated_at);
+CREATE INDEX idx_loan_installment_updated_at ON loan_installment (updated_at);
+
+-- Upper bound of the last export of each table; the next incremental export exports the rows changed after it
+CREATE TABLE export_watermark (
+    table_name VARCHAR(64) PRIMARY KEY,
+    exported_up_to TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
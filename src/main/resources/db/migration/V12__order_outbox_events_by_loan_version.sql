@@ -0,0 +1,5 @@
+-- Outbox events are relayed in loan version order per loan rather than in id order: ids come from pooled
+-- sequence blocks, so with several instances a later change of a loan can get a lower id than an earlier one.
+ALTER TABLE outbox_event ADD COLUMN aggregate_version BIGINT DEFAULT 0 NOT NULL;
+
+CREATE INDEX idx_outbox_event_aggregate ON outbox_event (aggregate_id, aggregate_version, id);
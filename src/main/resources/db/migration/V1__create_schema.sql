@@ -1,6 +1,15 @@
+-- Create ID Sequences
+-- Ids are allocated by Hibernate's pooled-lo optimizer: every sequence call reserves a block of
+-- INCREMENT BY ids, which lets inserts be batched. Hibernate adopts the increment declared here
+-- (hibernate.id.sequence.increment_size_mismatch_strategy=fix), so this is where the allocation size
+-- is tuned. Sequences start above the seeded customer ids.
+CREATE SEQUENCE customer_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE loan_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE loan_installment_seq START WITH 1000 INCREMENT BY 50;
+
 -- Create Customer Table
 CREATE TABLE customer (
-    id INT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT PRIMARY KEY,
     name VARCHAR(255) NOT NULL,
     surname VARCHAR(255) NOT NULL,
     credit_limit DECIMAL(15, 2) NOT NULL,
@@ -9,8 +18,8 @@ CREATE TABLE customer (
 
 -- Create Loan Table
 CREATE TABLE loan (
-    id INT AUTO_INCREMENT PRIMARY KEY,
-    customer_id INT,
+    id BIGINT PRIMARY KEY,
+    customer_id BIGINT,
     loan_amount DECIMAL(15, 2) NOT NULL,
     number_of_installment INT NOT NULL, -- This corresponds to the Installments enum values
     create_date DATE NOT NULL,
@@ -20,8 +29,8 @@ CREATE TABLE loan (
 
 -- Create LoanInstallment Table
 CREATE TABLE loan_installment (
-    id INT AUTO_INCREMENT PRIMARY KEY,
-    loan_id INT,
+    id BIGINT PRIMARY KEY,
+    loan_id BIGINT,
     amount DECIMAL(15, 2) NOT NULL,
     paid_amount DECIMAL(15, 2),
     due_date DATE NOT NULL,
@@ -0,0 +1,7 @@
+-- Loans of a customer (LoanRepository.findByCustomerId)
+CREATE INDEX idx_loan_customer_id ON loan (customer_id, id);
+
+-- Installments of a loan in due date order, and the unpaid ones inside the payment window
+-- (LoanInstallmentRepository.findByLoanIdOrderByDueDateAsc, findPayableInstallments, countByLoanIdAndIsPaidFalse).
+-- amount is included so the payable-installment lookup is answered from the index alone.
+CREATE INDEX idx_loan_installment_loan_paid_due ON loan_installment (loan_id, is_paid, due_date, amount);
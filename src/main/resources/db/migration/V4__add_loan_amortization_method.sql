@@ -0,0 +1,2 @@
+-- Repayment method of a loan (AmortizationMethod); existing loans were all originated with flat interest
+ALTER TABLE loan ADD COLUMN amortization_method VARCHAR(20) DEFAULT 'FLAT' NOT NULL;
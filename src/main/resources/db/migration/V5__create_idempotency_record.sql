@@ -0,0 +1,12 @@
+-- Responses of requests sent with an Idempotency-Key, replayed when the client retries.
+-- id is <operation>:<principal>:<key>; status_code and response_body are null while the first request is in flight.
+CREATE TABLE idempotency_record (
+    id VARCHAR(512) PRIMARY KEY,
+    request_hash VARCHAR(64) NOT NULL,
+    status_code INT,
+    response_body CLOB,
+    created_at TIMESTAMP NOT NULL
+);
+
+-- TTL purge (IdempotencyServiceImpl.purgeExpired)
+CREATE INDEX idx_idempotency_record_created_at ON idempotency_record (created_at);
@@ -0,0 +1,4 @@
+-- Optimistic locking: Hibernate checks and increments these on every update of a row (@Version)
+ALTER TABLE customer ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE loan ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE loan_installment ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,14 @@
+-- Credit reservation ledger: loan origination appends the loan amount, payoff appends its negation.
+-- Entries are folded into customer.used_credit_limit and deleted by the periodic compaction
+-- (CreditLedger#compact), so the customer row is not updated on every origination.
+CREATE SEQUENCE credit_reservation_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE credit_reservation (
+    id BIGINT PRIMARY KEY,
+    customer_id BIGINT NOT NULL,
+    amount DECIMAL(15, 2) NOT NULL,
+    created_at TIMESTAMP NOT NULL,
+    CONSTRAINT fk_credit_reservation_customer FOREIGN KEY (customer_id) REFERENCES customer (id)
+);
+
+CREATE INDEX idx_credit_reservation_customer_id ON credit_reservation (customer_id);
@@ -0,0 +1,11 @@
+-- Transactional outbox: domain events written in the transaction of the change they describe, deleted by
+-- the relay (OutboxRelay) once the sink has accepted them. Events are relayed in id order.
+CREATE SEQUENCE outbox_event_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE outbox_event (
+    id BIGINT PRIMARY KEY,
+    aggregate_id BIGINT NOT NULL,
+    event_type VARCHAR(50) NOT NULL,
+    payload CLOB NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
@@ -0,0 +1,27 @@
+-- Set by the nightly delinquency sweep on unpaid installments past their due date, cleared when they are paid
+ALTER TABLE loan_installment ADD COLUMN is_overdue BOOLEAN DEFAULT FALSE NOT NULL;
+
+-- One row per loan with overdue installments as of the last sweep; cured loans are removed by the next sweep
+CREATE TABLE loan_delinquency (
+    loan_id BIGINT PRIMARY KEY,
+    customer_id BIGINT NOT NULL,
+    overdue_installments INT NOT NULL,
+    overdue_amount DECIMAL(15, 2) NOT NULL,
+    oldest_due_date DATE NOT NULL,
+    days_past_due INT NOT NULL,
+    bucket VARCHAR(20) NOT NULL,
+    as_of_date DATE NOT NULL,
+    CONSTRAINT fk_loan_delinquency_loan FOREIGN KEY (loan_id) REFERENCES loan (id)
+);
+
+CREATE INDEX idx_loan_delinquency_bucket ON loan_delinquency (bucket, loan_id);
+
+-- Progress of the current sweep, one row per loan id range, so an interrupted sweep resumes where it stopped
+CREATE TABLE delinquency_sweep_checkpoint (
+    partition_no INT PRIMARY KEY,
+    as_of_date DATE NOT NULL,
+    range_end BIGINT NOT NULL,
+    last_loan_id BIGINT NOT NULL,
+    completed BOOLEAN NOT NULL,
+    updated_at TIMESTAMP NOT NULL
+);
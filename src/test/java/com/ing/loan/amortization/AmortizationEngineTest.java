@@ -0,0 +1,75 @@
+package com.ing.loan.amortization;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Suleyman Yildirim
+ */
+class AmortizationEngineTest {
+
+    private static final LocalDate ORIGINATION_DATE = LocalDate.of(2024, 1, 15);
+
+    private final AmortizationEngine engine = new AmortizationEngine(
+            List.of(new FlatAmortization(), new AnnuityAmortization(), new DecliningBalanceAmortization()), 100);
+
+    @Test
+    void flat_addsInterestOnceAndSplitsEvenly() {
+        LoanSchedule schedule = engine.schedule(AmortizationMethod.FLAT, new BigDecimal("1000.00"), new BigDecimal("0.1"), 6, ORIGINATION_DATE);
+
+        // 1100.00 / 6 = 183.33 and 2 remainder cents, which the last installment carries
+        assertEquals(new BigDecimal("1100.00"), schedule.total().toBigDecimal());
+        assertEquals(18333L, schedule.installmentMinorUnits(0));
+        assertEquals(18335L, schedule.installmentMinorUnits(5));
+        assertEquals(LocalDate.of(2024, 2, 1), schedule.dueDate(0));
+        assertEquals(LocalDate.of(2024, 7, 1), schedule.dueDate(5));
+        assertInstallmentsAddUpToTotal(schedule);
+    }
+
+    @Test
+    void annuity_repaysEqualInstallmentsWithMonthlyCompounding() {
+        LoanSchedule schedule = engine.schedule(AmortizationMethod.ANNUITY, new BigDecimal("10000.00"), new BigDecimal("0.12"), 12, ORIGINATION_DATE);
+
+        // 10000 * 0.01 / (1 - 1.01^-12) = 888.49 a month
+        assertEquals(new BigDecimal("10661.85"), schedule.total().toBigDecimal());
+        assertEquals(88848L, schedule.installmentMinorUnits(0));
+        assertInstallmentsAddUpToTotal(schedule);
+    }
+
+    @Test
+    void decliningBalance_installmentsDecrease() {
+        LoanSchedule schedule = engine.schedule(AmortizationMethod.DECLINING_BALANCE, new BigDecimal("10000.00"), new BigDecimal("0.12"), 12, ORIGINATION_DATE);
+
+        // 833.33 of principal a month plus 1% interest on the outstanding balance
+        assertEquals(new BigDecimal("10650.00"), schedule.total().toBigDecimal());
+        assertEquals(93333L, schedule.installmentMinorUnits(0));
+        for (int i = 1; i < schedule.size(); i++) {
+            assertTrue(schedule.installmentMinorUnits(i) < schedule.installmentMinorUnits(i - 1));
+        }
+        assertInstallmentsAddUpToTotal(schedule);
+    }
+
+    @Test
+    void templates_areSharedForTheSameRateTenorAndMonth() {
+        ScheduleTemplate template = engine.template(AmortizationMethod.FLAT, new BigDecimal("0.1"), 12, YearMonth.of(2024, 1));
+
+        assertSame(template, engine.template(AmortizationMethod.FLAT, new BigDecimal("0.10"), 12, YearMonth.of(2024, 1)));
+        assertTrue(template != engine.template(AmortizationMethod.FLAT, new BigDecimal("0.1"), 12, YearMonth.of(2024, 2)));
+    }
+
+    private static void assertInstallmentsAddUpToTotal(LoanSchedule schedule) {
+        long sum = 0;
+        for (int i = 0; i < schedule.size(); i++) {
+            sum += schedule.installmentMinorUnits(i);
+        }
+        assertEquals(schedule.total().minorUnits(), sum);
+    }
+}
@@ -0,0 +1,138 @@
+package com.ing.loan.analytics;
+
+import com.ing.loan.repository.CustomerExposure;
+import com.ing.loan.repository.DueMonthTotals;
+import com.ing.loan.repository.LoanInstallmentRepository;
+import com.ing.loan.repository.LoanRepository;
+import com.ing.loan.repository.PaymentStatusTotals;
+import com.ing.loan.response.CustomerExposureResponse;
+import com.ing.loan.response.PortfolioAnalyticsResponse;
+import com.ing.loan.response.UtilizationBandResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@ExtendWith(MockitoExtension.class)
+class PortfolioAnalyticsTest {
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private LoanInstallmentRepository loanInstallmentRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private PortfolioAnalytics analytics;
+
+    @BeforeEach
+    void setUp() {
+        // Small chunks, so the rows are summarized as many chunks in parallel
+        analytics = new PortfolioAnalytics(loanRepository, loanInstallmentRepository, transactionManager,
+                Duration.ofMinutes(5), 2, 100, 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        analytics.destroy();
+    }
+
+    @Test
+    void getReport_aggregatesInstallmentsAndCustomerExposure() {
+        when(loanInstallmentRepository.findOutstandingByDueMonth()).thenReturn(List.of(
+                new DueMonthTotals(2025, 1, 10, new BigDecimal("9166.70")),
+                new DueMonthTotals(2025, 2, 8, new BigDecimal("7333.36"))));
+        when(loanInstallmentRepository.findPaymentStatusTotals()).thenReturn(List.of(
+                new PaymentStatusTotals(true, 6, new BigDecimal("5500.02")),
+                new PaymentStatusTotals(false, 18, new BigDecimal("16500.06"))));
+        // Customer i owes 1.20 * i against a credit limit of 1000.00
+        when(loanRepository.streamCustomerExposures()).thenReturn(LongStream.rangeClosed(1, 1000)
+                .mapToObj(i -> new CustomerExposure(i, new BigDecimal("1000.00"), new BigDecimal("1.20").multiply(BigDecimal.valueOf(i)))));
+
+        PortfolioAnalyticsResponse report = analytics.getReport();
+
+        assertEquals(6, report.getPaidInstallments());
+        assertEquals(new BigDecimal("5500.02"), report.getPaidAmount());
+        assertEquals(18, report.getUnpaidInstallments());
+        assertEquals(new BigDecimal("16500.06"), report.getUnpaidAmount());
+        assertEquals(List.of(YearMonth.of(2025, 1), YearMonth.of(2025, 2)),
+                report.getOutstandingByDueMonth().stream().map(month -> month.getDueMonth()).toList());
+
+        assertEquals(1000, report.getCustomersWithExposure());
+        assertEquals(new BigDecimal("1000000.00"), report.getCreditLimit());
+        assertEquals(List.of(208L, 208L, 209L, 208L, 167L),
+                report.getUtilizationBands().stream().map(UtilizationBandResponse::getCustomers).toList());
+        assertEquals(new BigDecimal("600600.00"), report.getUtilizationBands().stream()
+                .map(UtilizationBandResponse::getExposure).reduce(BigDecimal.ZERO, BigDecimal::add));
+        assertEquals(List.of(1000L, 999L, 998L),
+                report.getTopExposures().stream().map(CustomerExposureResponse::getCustomerId).toList());
+        assertEquals(1.2, report.getTopExposures().get(0).getUtilization(), 1e-9);
+    }
+
+    @Test
+    void getReport_servesTheLastFiguresUntilTheNextRefresh() {
+        when(loanInstallmentRepository.findOutstandingByDueMonth()).thenReturn(List.of());
+        when(loanInstallmentRepository.findPaymentStatusTotals()).thenReturn(List.of());
+        when(loanRepository.streamCustomerExposures()).thenAnswer(invocation -> Stream.empty());
+
+        PortfolioAnalyticsResponse first = analytics.getReport();
+        assertSame(first, analytics.getReport());
+        verify(loanRepository, times(1)).streamCustomerExposures();
+
+        analytics.refresh();
+
+        assertNotSame(first, analytics.getReport());
+        assertEquals(0, analytics.getReport().getCustomersWithExposure());
+        verify(loanRepository, times(2)).streamCustomerExposures();
+    }
+
+    @Test
+    void getReport_recomputesStaleFiguresAndKeepsThemIfThatFails() {
+        PortfolioAnalytics alwaysStale = new PortfolioAnalytics(loanRepository, loanInstallmentRepository,
+                transactionManager, Duration.ZERO, 2, 100, 3);
+        try {
+            when(loanInstallmentRepository.findOutstandingByDueMonth()).thenReturn(List.of());
+            when(loanInstallmentRepository.findPaymentStatusTotals()).thenReturn(List.of());
+            when(loanRepository.streamCustomerExposures())
+                    .thenAnswer(invocation -> Stream.empty())
+                    .thenAnswer(invocation -> Stream.empty())
+                    .thenThrow(new IllegalStateException("database unavailable"));
+
+            PortfolioAnalyticsResponse first = alwaysStale.getReport();
+            PortfolioAnalyticsResponse second = alwaysStale.getReport();
+
+            assertNotSame(first, second);
+            // The failed refresh is logged and the previous figures are served
+            assertSame(second, alwaysStale.getReport());
+            verify(loanRepository, times(3)).streamCustomerExposures();
+        } finally {
+            alwaysStale.destroy();
+        }
+    }
+
+    @Test
+    void utilizationBand_boundsAreInclusive() {
+        assertEquals(UtilizationBand.UP_TO_25, UtilizationBand.of(0));
+        assertEquals(UtilizationBand.UP_TO_25, UtilizationBand.of(0.25));
+        assertEquals(UtilizationBand.UP_TO_100, UtilizationBand.of(1));
+        assertEquals(UtilizationBand.OVER_LIMIT, UtilizationBand.of(Double.POSITIVE_INFINITY));
+    }
+}
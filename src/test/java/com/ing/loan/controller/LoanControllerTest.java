@@ -2,10 +2,19 @@ package com.ing.loan.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ing.loan.entity.Loan;
-import com.ing.loan.entity.LoanInstallment;
+import com.ing.loan.exception.ErrorCode;
+import com.ing.loan.exception.LoanNotFoundException;
+import com.ing.loan.request.LoanFilter;
 import com.ing.loan.request.LoanRequest;
+import com.ing.loan.response.BulkLoanResponse;
+import com.ing.loan.response.BulkLoanRowResponse;
 import com.ing.loan.response.LoanInstallmentResponse;
+import com.ing.loan.response.LoanListItemResponse;
+import com.ing.loan.response.LoanPageResponse;
 import com.ing.loan.response.LoanResponse;
+import com.ing.loan.response.LoanSummaryResponse;
+import com.ing.loan.security.LoanAuthorization;
+import com.ing.loan.service.IdempotencyService;
 import com.ing.loan.service.LoanService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,6 +27,7 @@ import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.context.WebApplicationContext;
@@ -25,14 +35,20 @@ import org.springframework.web.context.WebApplicationContext;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -54,17 +70,27 @@ public class LoanControllerTest {
     @MockitoBean
     private LoanService loanService;
 
-    private LoanInstallment loanInstallment;
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
+    @MockitoBean
+    private LoanAuthorization authorization;
+
+    private LoanInstallmentResponse loanInstallment;
 
     @BeforeEach
     void setUp() {
-        Loan loan = Loan.builder().id(1L).build();
-        loanInstallment = LoanInstallment.builder()
-                .loan(loan)
+        loanInstallment = LoanInstallmentResponse.builder()
+                .id(1L)
                 .amount(BigDecimal.valueOf(100.0))
                 .dueDate(LocalDate.now())
+                .isPaid(false)
                 .build();
 
+        // Requests without a key run straight through
+        when(idempotencyService.execute(any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+
         mockMvc = MockMvcBuilders
                 .webAppContextSetup(context)
                 .apply(springSecurity())
@@ -141,6 +167,33 @@ public class LoanControllerTest {
     }
 
 
+    @Test
+    void testCreateLoans_successful_asAdmin() throws Exception {
+        // Prepare mock request and response
+        LoanRequest loanRequest = LoanRequest.builder().customerId(1L).loanAmount(BigDecimal.valueOf(10000.00)).interestRate(BigDecimal.valueOf(0.2)).installments(12).build();
+        BulkLoanResponse bulkLoanResponse = BulkLoanResponse.builder()
+                .createdCount(1)
+                .rejectedCount(0)
+                .results(List.of(BulkLoanRowResponse.builder().index(0).customerId(1L).loanId(1L).created(true).build()))
+                .build();
+
+        // Mock service behavior
+        Mockito.when(loanService.createLoans(any())).thenReturn(bulkLoanResponse);
+
+        // Perform POST request as ADMIN
+        mockMvc.perform(post("/v1/create-loans")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(loanRequest))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.createdCount").value(1))
+                .andExpect(jsonPath("$.results[0].loanId").value(1L));
+
+        // Verify service interaction
+        Mockito.verify(loanService).createLoans(any());
+    }
+
     @Test
     void testCreateLoan_invalidRequest() throws Exception {
         // Prepare an invalid request (e.g., missing loanAmount)
@@ -210,6 +263,68 @@ public class LoanControllerTest {
                 .andExpect(status().isNoContent());
     }
 
+    @Test
+    void testListLoansPage_successful_asCustomer() throws Exception {
+        // Mock service behavior
+        LoanPageResponse page = LoanPageResponse.builder()
+                .loans(List.of(LoanListItemResponse.builder().id(5L).loanAmount(BigDecimal.valueOf(1100.00)).isPaid(false).build()))
+                .nextCursor(5L)
+                .build();
+        when(loanService.listLoansPage(eq(1L), any(LoanFilter.class), eq(4L), eq(1))).thenReturn(page);
+
+        // Perform GET request
+        mockMvc.perform(get("/v1/loans/page")
+                        .param("customerId", "1")
+                        .param("isPaid", "false")
+                        .param("after", "4")
+                        .param("size", "1")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_CUSTOMER"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.loans[0].id").value(5L))
+                .andExpect(jsonPath("$.nextCursor").value(5L));
+    }
+
+    @Test
+    void testListLoansPage_invalidSize() throws Exception {
+        mockMvc.perform(get("/v1/loans/page")
+                        .param("customerId", "1")
+                        .param("size", "0")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_CUSTOMER"))))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verifyNoInteractions(loanService);
+    }
+
+    @Test
+    void testStreamLoans_writesOneLoanPerLine() throws Exception {
+        // Mock service behavior: hand two loans to the consumer
+        doAnswer(invocation -> {
+            Consumer<LoanListItemResponse> consumer = invocation.getArgument(2);
+            consumer.accept(LoanListItemResponse.builder().id(1L).build());
+            consumer.accept(LoanListItemResponse.builder().id(2L).build());
+            return null;
+        }).when(loanService).streamLoansByCustomer(eq(1L), any(LoanFilter.class), any());
+
+        // Perform GET request; the body is written asynchronously
+        MvcResult result = mockMvc.perform(get("/v1/loans/stream")
+                        .param("customerId", "1")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_CUSTOMER"))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1L, objectMapper.readTree(lines[0]).get("id").asLong());
+        assertEquals(2L, objectMapper.readTree(lines[1]).get("id").asLong());
+    }
+
     @Test
     void testListInstallments_Success() throws Exception {
         // Arrange: Mock the service method
@@ -220,7 +335,12 @@ public class LoanControllerTest {
                         .param("loanId", "1")
                         .with(jwt()
                                 .authorities(new SimpleGrantedAuthority("ROLE_CUSTOMER"))))
-                .andDo(print());
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(1L))
+                .andExpect(jsonPath("$[0].amount").value(100.0))
+                .andExpect(jsonPath("$[0].isPaid").value(false))
+                .andExpect(jsonPath("$[0].paid").doesNotExist());
     }
 
     @Test
@@ -236,6 +356,45 @@ public class LoanControllerTest {
                 .andExpect(status().isNoContent());
     }
 
+    @Test
+    void testGetLoanSummary_Success() throws Exception {
+        LoanSummaryResponse summary = LoanSummaryResponse.builder()
+                .loanId(1L)
+                .customerId(1L)
+                .loanAmount(new BigDecimal("300.00"))
+                .numberOfInstallment(3)
+                .paidInstallments(1)
+                .remainingAmount(new BigDecimal("200.00"))
+                .nextDueDate(LocalDate.of(2025, 3, 1))
+                .nextDueAmount(new BigDecimal("100.00"))
+                .isPaid(false)
+                .build();
+        when(loanService.getLoanSummary(1L)).thenReturn(summary);
+
+        mockMvc.perform(get("/v1/loans/1/summary")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.loanId").value(1L))
+                .andExpect(jsonPath("$.paidInstallments").value(1))
+                .andExpect(jsonPath("$.remainingAmount").value(200.00))
+                .andExpect(jsonPath("$.nextDueDate").value("2025-03-01"))
+                .andExpect(jsonPath("$.nextDueAmount").value(100.00))
+                .andExpect(jsonPath("$.isPaid").value(false));
+    }
+
+    @Test
+    void testGetLoanSummary_NotFound() throws Exception {
+        when(loanService.getLoanSummary(99L))
+                .thenThrow(new LoanNotFoundException(ErrorCode.LOAN_NOT_FOUND, "Loan 99 not found"));
+
+        mockMvc.perform(get("/v1/loans/99/summary")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Loan 99 not found"));
+    }
+
     @Test
     void testCreateLoan_Null_LoanRequestFields() throws Exception {
         // Arrange task with invalid task title
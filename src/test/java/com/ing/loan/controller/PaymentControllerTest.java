@@ -4,7 +4,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ing.loan.exception.ErrorCode;
 import com.ing.loan.exception.LoanNotFoundException;
 import com.ing.loan.request.PaymentRequest;
+import com.ing.loan.response.BulkPaymentRowResponse;
 import com.ing.loan.response.LoanPaymentResponse;
+import com.ing.loan.service.BulkPaymentService;
+import com.ing.loan.security.LoanAuthorization;
+import com.ing.loan.service.IdempotencyService;
 import com.ing.loan.service.PaymentService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,25 +16,40 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
@@ -49,6 +68,15 @@ public class PaymentControllerTest {
     @MockitoBean
     private PaymentService paymentService;
 
+    @MockitoBean
+    private IdempotencyService idempotencyService;
+
+    @MockitoBean
+    private LoanAuthorization authorization;
+
+    @MockitoBean
+    private BulkPaymentService bulkPaymentService;
+
     private PaymentRequest validPaymentRequest;
     private LoanPaymentResponse validLoanPaymentResponse;
 
@@ -65,6 +93,10 @@ public class PaymentControllerTest {
                 .isLoanPaid(true)  // Example loan status
                 .build();
 
+        // Requests without a key run straight through
+        when(idempotencyService.execute(any(), any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(3).get());
+
         mockMvc = MockMvcBuilders
                 .webAppContextSetup(context)
                 .apply(springSecurity())
@@ -102,6 +134,21 @@ public class PaymentControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void testPayLoan_OtherCustomersLoanIsForbidden() throws Exception {
+        // Arrange: the loan belongs to another customer
+        doThrow(new AccessDeniedException("Access Denied")).when(authorization).checkLoan(1L);
+
+        // Act & Assert: the payment is rejected before it reaches the service
+        mockMvc.perform(post("/v1/pay-loan")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_CUSTOMER")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"loanId\":1, \"paymentAmount\":1000}"))
+                .andExpect(status().isForbidden());
+        verifyNoInteractions(paymentService);
+    }
+
     @Test
     void testPayLoan_InternalServerError() throws Exception {
         // Arrange: Mock the service method to throw an unexpected exception
@@ -156,5 +203,89 @@ public class PaymentControllerTest {
                 )));
     }
 
+    @Test
+    void testPayLoans_streamedFileReportsEveryRow() throws Exception {
+        // Mock service behavior: read every row and report one result per row
+        List<Long> received = new ArrayList<>();
+        doAnswer(invocation -> {
+            Iterator<PaymentRequest> payments = invocation.getArgument(0);
+            Consumer<BulkPaymentRowResponse> results = invocation.getArgument(1);
+            int index = 0;
+            while (payments.hasNext()) {
+                PaymentRequest payment = payments.next();
+                received.add(payment.getLoanId());
+                results.accept(BulkPaymentRowResponse.builder().index(index++).loanId(payment.getLoanId()).paidInstallments(1).build());
+            }
+            return null;
+        }).when(bulkPaymentService).payLoans(any(), any());
 
+        // Perform POST request with one payment per line; the body is read and written asynchronously
+        MvcResult result = mockMvc.perform(post("/v1/pay-loans")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"loanId\":1,\"paymentAmount\":100}\n{\"loanId\":2,\"paymentAmount\":200}\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(List.of(1L, 2L), received);
+        assertEquals(2, lines.length);
+        assertEquals(1, objectMapper.readTree(lines[1]).get("index").asInt());
+        assertEquals(2L, objectMapper.readTree(lines[1]).get("loanId").asLong());
+    }
+
+    @Test
+    void testPayLoans_malformedLineIsReportedAsAnInvalidRow() throws Exception {
+        // Mock service behavior: reject rows without a loan, like the bulk payment service
+        List<Long> received = new ArrayList<>();
+        doAnswer(invocation -> {
+            Iterator<PaymentRequest> payments = invocation.getArgument(0);
+            Consumer<BulkPaymentRowResponse> results = invocation.getArgument(1);
+            int index = 0;
+            while (payments.hasNext()) {
+                PaymentRequest payment = payments.next();
+                received.add(payment.getLoanId());
+                results.accept(payment.getLoanId() == null
+                        ? BulkPaymentRowResponse.builder().index(index++).errorCode(ErrorCode.INVALID_PAYMENT.getCode()).build()
+                        : BulkPaymentRowResponse.builder().index(index++).loanId(payment.getLoanId()).paidInstallments(1).build());
+            }
+            return null;
+        }).when(bulkPaymentService).payLoans(any(), any());
+
+        // The second of three lines is not valid JSON
+        MvcResult result = mockMvc.perform(post("/v1/pay-loans")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"loanId\":1,\"paymentAmount\":100}\n{\"loanId\":2,\"paymentAm\n{\"loanId\":3,\"paymentAmount\":300}\n"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Every row is reported and the rows after the malformed line are still applied
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(Arrays.asList(1L, null, 3L), received);
+        assertEquals(3, lines.length);
+        assertEquals(ErrorCode.INVALID_PAYMENT.getCode(), objectMapper.readTree(lines[1]).get("errorCode").asText());
+        assertEquals(3L, objectMapper.readTree(lines[2]).get("loanId").asLong());
+    }
+
+    @Test
+    void testPayLoans_emptyListIsRejected() throws Exception {
+        mockMvc.perform(post("/v1/pay-loans")
+                        .with(jwt()
+                                .authorities(new SimpleGrantedAuthority("ROLE_ADMIN")))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(bulkPaymentService);
+    }
 }
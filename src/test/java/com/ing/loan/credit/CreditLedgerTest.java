@@ -0,0 +1,139 @@
+package com.ing.loan.credit;
+
+import com.ing.loan.entity.CreditReservation;
+import com.ing.loan.exception.CustomerNotFoundException;
+import com.ing.loan.money.Money;
+import com.ing.loan.repository.CreditPosition;
+import com.ing.loan.repository.CreditReservationRepository;
+import com.ing.loan.repository.CustomerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@ExtendWith(MockitoExtension.class)
+class CreditLedgerTest {
+
+    private static final Long CUSTOMER_ID = 1L;
+
+    @Mock
+    private CreditReservationRepository creditReservationRepository;
+
+    @Mock
+    private CustomerRepository customerRepository;
+
+    private CreditLedger creditLedger;
+
+    @BeforeEach
+    void setUp() {
+        creditLedger = new CreditLedger(creditReservationRepository, customerRepository, 4, 100);
+        // Stands in for the caller's transaction
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    private void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    private void givenCredit(String limit, String used) {
+        when(creditReservationRepository.findCreditPosition(CUSTOMER_ID))
+                .thenReturn(Optional.of(new CreditPosition(new BigDecimal(limit), new BigDecimal(used))));
+    }
+
+    @Test
+    void tryReserve_rejectsLoansBeyondAvailableCredit() {
+        givenCredit("10000.00", "4000.00");
+
+        assertTrue(creditLedger.tryReserve(CUSTOMER_ID, Money.of(new BigDecimal("5000.00"))));
+        assertFalse(creditLedger.tryReserve(CUSTOMER_ID, Money.of(new BigDecimal("1000.01"))));
+        assertTrue(creditLedger.tryReserve(CUSTOMER_ID, Money.of(new BigDecimal("1000.00"))));
+
+        // The account is loaded once and only accepted reservations are appended to the ledger
+        verify(creditReservationRepository, times(1)).findCreditPosition(CUSTOMER_ID);
+        verify(creditReservationRepository, times(2)).save(any(CreditReservation.class));
+    }
+
+    @Test
+    void tryReserve_rolledBackReservationIsReturned() {
+        givenCredit("10000.00", "0.00");
+
+        assertTrue(creditLedger.tryReserve(CUSTOMER_ID, Money.of(new BigDecimal("10000.00"))));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertTrue(creditLedger.tryReserve(CUSTOMER_ID, Money.of(new BigDecimal("10000.00"))));
+    }
+
+    @Test
+    void release_creditIsAvailableAfterCommit() {
+        givenCredit("10000.00", "10000.00");
+
+        creditLedger.release(CUSTOMER_ID, Money.of(new BigDecimal("6000.00")));
+        assertFalse(creditLedger.tryReserve(CUSTOMER_ID, Money.of(new BigDecimal("6000.00"))));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertTrue(creditLedger.tryReserve(CUSTOMER_ID, Money.of(new BigDecimal("6000.00"))));
+        ArgumentCaptor<CreditReservation> entries = ArgumentCaptor.forClass(CreditReservation.class);
+        verify(creditReservationRepository, times(2)).save(entries.capture());
+        assertEquals(new BigDecimal("-6000.00"), entries.getAllValues().get(0).getAmount());
+    }
+
+    @Test
+    void tryReserve_unknownCustomer() {
+        when(creditReservationRepository.findCreditPosition(99L)).thenReturn(Optional.empty());
+
+        assertThrows(CustomerNotFoundException.class, () -> creditLedger.tryReserve(99L, Money.of(BigDecimal.ONE)));
+        verify(creditReservationRepository, never()).save(any(CreditReservation.class));
+    }
+
+    @Test
+    void compact_foldsEntriesIntoCustomers() {
+        List<CreditReservation> entries = List.of(
+                CreditReservation.builder().id(1L).customerId(2L).amount(new BigDecimal("500.00")).build(),
+                CreditReservation.builder().id(2L).customerId(1L).amount(new BigDecimal("1000.00")).build(),
+                CreditReservation.builder().id(3L).customerId(2L).amount(new BigDecimal("-200.00")).build());
+        when(creditReservationRepository.findOldest(Limit.of(100))).thenReturn(entries);
+        when(creditReservationRepository.deleteByIds(List.of(1L, 2L, 3L))).thenReturn(3);
+
+        creditLedger.compact();
+
+        verify(customerRepository).addUsedCredit(1L, new BigDecimal("1000.00"));
+        verify(customerRepository).addUsedCredit(2L, new BigDecimal("300.00"));
+    }
+
+    @Test
+    void compact_entriesCompactedConcurrentlyAreNotCountedTwice() {
+        when(creditReservationRepository.findOldest(Limit.of(100))).thenReturn(List.of(
+                CreditReservation.builder().id(1L).customerId(1L).amount(new BigDecimal("500.00")).build()));
+        when(creditReservationRepository.deleteByIds(List.of(1L))).thenReturn(0);
+
+        assertThrows(IllegalStateException.class, () -> creditLedger.compact());
+        verifyNoInteractions(customerRepository);
+    }
+}
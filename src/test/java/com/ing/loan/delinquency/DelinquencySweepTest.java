@@ -0,0 +1,155 @@
+package com.ing.loan.delinquency;
+
+import com.ing.loan.entity.DelinquencySweepCheckpoint;
+import com.ing.loan.entity.LoanDelinquency;
+import com.ing.loan.export.OpenWriteTransactions;
+import com.ing.loan.repository.DelinquencySweepCheckpointRepository;
+import com.ing.loan.repository.LoanDelinquencyRepository;
+import com.ing.loan.repository.LoanIdRange;
+import com.ing.loan.repository.LoanInstallmentRepository;
+import com.ing.loan.repository.LoanRepository;
+import com.ing.loan.repository.OverdueTotals;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@ExtendWith(MockitoExtension.class)
+class DelinquencySweepTest {
+
+    private static final LocalDate AS_OF = LocalDate.of(2025, 6, 30);
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private LoanInstallmentRepository loanInstallmentRepository;
+
+    @Mock
+    private LoanDelinquencyRepository loanDelinquencyRepository;
+
+    @Mock
+    private DelinquencySweepCheckpointRepository checkpointRepository;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private OpenWriteTransactions openWriteTransactions;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DelinquencySweep sweep;
+
+    @BeforeEach
+    void setUp() {
+        sweep = new DelinquencySweep(loanRepository, loanInstallmentRepository, loanDelinquencyRepository, checkpointRepository,
+                entityManager, openWriteTransactions, transactionManager, 4, 2, 100, true);
+    }
+
+    @Test
+    void resumeInterruptedSweep_skippedWhenSchedulingIsDisabled() {
+        DelinquencySweep unscheduled = new DelinquencySweep(loanRepository, loanInstallmentRepository, loanDelinquencyRepository,
+                checkpointRepository, entityManager, openWriteTransactions, transactionManager, 4, 2, 100, false);
+
+        unscheduled.resumeInterruptedSweep();
+
+        verifyNoInteractions(checkpointRepository, loanDelinquencyRepository);
+    }
+
+    private static DelinquencySweepCheckpoint checkpoint(int partitionNo, LocalDate asOf, long lastLoanId, long rangeEnd, boolean completed) {
+        return DelinquencySweepCheckpoint.builder()
+                .partitionNo(partitionNo)
+                .asOfDate(asOf)
+                .lastLoanId(lastLoanId)
+                .rangeEnd(rangeEnd)
+                .completed(completed)
+                .updatedAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Test
+    void plan_splitsLoanIdsIntoContiguousRanges() {
+        when(checkpointRepository.findAll()).thenReturn(List.of(checkpoint(0, AS_OF.minusDays(1), 1999, 1999, true)));
+        when(loanRepository.findIdRange()).thenReturn(new LoanIdRange(1000L, 1999L));
+        when(checkpointRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        List<DelinquencySweepCheckpoint> ranges = sweep.plan(AS_OF);
+
+        // Yesterday's checkpoints are replaced by four ranges covering every id exactly once
+        verify(checkpointRepository).deleteAllInBatch();
+        assertEquals(4, ranges.size());
+        assertEquals(999L, ranges.get(0).getLastLoanId());
+        for (int i = 1; i < ranges.size(); i++) {
+            assertEquals(ranges.get(i - 1).getRangeEnd(), ranges.get(i).getLastLoanId());
+        }
+        assertEquals(1999L, ranges.get(3).getRangeEnd());
+        assertTrue(ranges.stream().allMatch(range -> AS_OF.equals(range.getAsOfDate()) && !range.isCompleted()));
+    }
+
+    @Test
+    void plan_resumesIncompleteRangesOfTheSameDate() {
+        DelinquencySweepCheckpoint interrupted = checkpoint(1, AS_OF, 1500, 1999, false);
+        when(checkpointRepository.findAll()).thenReturn(List.of(checkpoint(0, AS_OF, 1499, 1499, true), interrupted));
+
+        assertEquals(List.of(interrupted), sweep.plan(AS_OF));
+
+        verify(checkpointRepository, never()).deleteAllInBatch();
+        verifyNoInteractions(loanRepository);
+    }
+
+    @Test
+    void plan_withoutLoansHasNothingToSweep() {
+        when(checkpointRepository.findAll()).thenReturn(List.of());
+        when(loanRepository.findIdRange()).thenReturn(new LoanIdRange(null, null));
+
+        assertTrue(sweep.plan(AS_OF).isEmpty());
+    }
+
+    @Test
+    void sweepChunk_replacesSummariesAndAdvancesCheckpoint() {
+        when(loanInstallmentRepository.findOverdueTotals(1000L, 1100L, AS_OF)).thenReturn(List.of(
+                new OverdueTotals(1001L, 7L, 2, new BigDecimal("200.00"), AS_OF.minusDays(45)),
+                new OverdueTotals(1050L, 8L, 1, new BigDecimal("100.00"), AS_OF.minusDays(3))));
+
+        assertEquals(2, sweep.sweepChunk(3, 1000L, 1100L, true, AS_OF));
+
+        var inOrder = inOrder(loanInstallmentRepository, loanDelinquencyRepository, entityManager, checkpointRepository);
+        inOrder.verify(loanInstallmentRepository).flagOverdue(1000L, 1100L, AS_OF);
+        inOrder.verify(loanDelinquencyRepository).deleteByLoanIdRange(1000L, 1100L);
+        ArgumentCaptor<LoanDelinquency> summaries = ArgumentCaptor.forClass(LoanDelinquency.class);
+        inOrder.verify(entityManager, times(2)).persist(summaries.capture());
+        inOrder.verify(checkpointRepository).advance(eq(3), eq(1100L), eq(true), any(LocalDateTime.class));
+
+        LoanDelinquency first = summaries.getAllValues().get(0);
+        assertEquals(45, first.getDaysPastDue());
+        assertEquals(DelinquencyBucket.DPD_31_60, first.getBucket());
+        assertEquals(DelinquencyBucket.DPD_1_30, summaries.getAllValues().get(1).getBucket());
+    }
+
+    @Test
+    void bucket_boundaries() {
+        assertEquals(DelinquencyBucket.DPD_1_30, DelinquencyBucket.of(1));
+        assertEquals(DelinquencyBucket.DPD_1_30, DelinquencyBucket.of(30));
+        assertEquals(DelinquencyBucket.DPD_31_60, DelinquencyBucket.of(31));
+        assertEquals(DelinquencyBucket.DPD_61_90, DelinquencyBucket.of(90));
+        assertEquals(DelinquencyBucket.DPD_91_PLUS, DelinquencyBucket.of(91));
+        assertThrows(IllegalArgumentException.class, () -> DelinquencyBucket.of(0));
+    }
+}
@@ -0,0 +1,79 @@
+package com.ing.loan.entity;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.RollbackException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+
+/**
+ * Two transactions updating the same customer concurrently, each with its own entity manager.
+ * @author Suleyman Yildirim
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OptimisticLockingTest {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void testStaleCustomerUpdateIsRejected() {
+        // Arrange
+        Long customerId = createCustomer();
+        EntityManager first = entityManagerFactory.createEntityManager();
+        EntityManager second = entityManagerFactory.createEntityManager();
+        try {
+            first.getTransaction().begin();
+            second.getTransaction().begin();
+            Customer firstCopy = first.find(Customer.class, customerId);
+            Customer secondCopy = second.find(Customer.class, customerId);
+
+            // Act: both reserve credit, the first one commits
+            firstCopy.setUsedCreditLimit(firstCopy.getUsedCreditLimit().add(new BigDecimal("1000.00")));
+            first.getTransaction().commit();
+            secondCopy.setUsedCreditLimit(secondCopy.getUsedCreditLimit().add(new BigDecimal("2000.00")));
+
+            // Assert: the second one would overwrite the first reservation, so it is rolled back
+            RollbackException exception = Assertions.assertThrows(RollbackException.class, () -> second.getTransaction().commit());
+            Assertions.assertInstanceOf(OptimisticLockException.class, exception.getCause());
+        } finally {
+            first.close();
+            second.close();
+        }
+
+        EntityManager reader = entityManagerFactory.createEntityManager();
+        try {
+            Customer customer = reader.find(Customer.class, customerId);
+            Assertions.assertEquals(0, new BigDecimal("1000.00").compareTo(customer.getUsedCreditLimit()));
+            Assertions.assertEquals(1L, customer.getVersion());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private Long createCustomer() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            Customer customer = Customer.builder()
+                    .name("Ada")
+                    .surname("Lovelace")
+                    .creditLimit(new BigDecimal("10000.00"))
+                    .usedCreditLimit(BigDecimal.ZERO)
+                    .build();
+            entityManager.persist(customer);
+            entityManager.getTransaction().commit();
+            return customer.getId();
+        } finally {
+            entityManager.close();
+        }
+    }
+}
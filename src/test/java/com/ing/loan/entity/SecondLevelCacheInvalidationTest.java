@@ -0,0 +1,75 @@
+package com.ing.loan.entity;
+
+import com.ing.loan.request.LoanRequest;
+import com.ing.loan.service.LoanService;
+import com.ing.loan.service.PaymentService;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.Comparator;
+
+/**
+ * A payment commits through the services while the paid loan is cached; the next read must see it.
+ * @author Suleyman Yildirim
+ */
+@SpringBootTest
+class SecondLevelCacheInvalidationTest {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void testPaidLoanIsNotServedStaleFromTheCache() {
+        // Arrange: the loan and its installments are read once, so they are cached
+        Long loanId = loanService.createLoan(LoanRequest.builder()
+                .customerId(1L)
+                .loanAmount(new BigDecimal("1200.00"))
+                .interestRate(new BigDecimal("0.1"))
+                .installments(6)
+                .build()).getLoanId();
+        Cache cache = entityManagerFactory.getCache();
+        cache.evictAll();
+        Loan cached = readLoan(loanId);
+        Assertions.assertTrue(cache.contains(Loan.class, loanId));
+        Assertions.assertEquals(0, cached.getPaidInstallments());
+        LoanInstallment first = cached.getInstallments().stream()
+                .min(Comparator.comparing(LoanInstallment::getDueDate))
+                .orElseThrow();
+
+        // Act: pay the first installment
+        paymentService.payLoan(loanId, first.getAmount());
+
+        // Assert: both the loan and its installments are read in their paid state
+        Loan fresh = readLoan(loanId);
+        Assertions.assertEquals(1, fresh.getPaidInstallments());
+        Assertions.assertEquals(0, cached.getRemainingAmount().subtract(first.getAmount()).compareTo(fresh.getRemainingAmount()));
+        Assertions.assertEquals(1, fresh.getInstallments().stream().filter(LoanInstallment::getIsPaid).count());
+        Assertions.assertTrue(fresh.getInstallments().stream()
+                .filter(installment -> installment.getId().equals(first.getId()))
+                .allMatch(LoanInstallment::getIsPaid));
+    }
+
+    // Reads the loan and its installments in a new persistence context, so they come from the second-level cache if present
+    private Loan readLoan(Long loanId) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            Loan loan = entityManager.find(Loan.class, loanId);
+            loan.getInstallments().size();
+            return loan;
+        } finally {
+            entityManager.close();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.ing.loan.entity;
+
+import jakarta.persistence.Cache;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@DataJpaTest
+class SecondLevelCacheTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void testCustomerIsCachedOnLoad() {
+        // Arrange: customer 1 is seeded by the migrations
+        Cache cache = entityManager.getEntityManager().getEntityManagerFactory().getCache();
+        cache.evictAll();
+
+        // Act
+        Customer customer = entityManager.find(Customer.class, 1L);
+
+        // Assert
+        Assertions.assertNotNull(customer);
+        Assertions.assertTrue(cache.contains(Customer.class, 1L));
+    }
+
+    @Test
+    void testCachedCustomerIsEvicted() {
+        // Arrange
+        Cache cache = entityManager.getEntityManager().getEntityManagerFactory().getCache();
+        entityManager.find(Customer.class, 1L);
+
+        // Act
+        cache.evict(Customer.class, 1L);
+
+        // Assert
+        Assertions.assertFalse(cache.contains(Customer.class, 1L));
+    }
+}
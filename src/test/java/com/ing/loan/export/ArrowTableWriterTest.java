@@ -0,0 +1,123 @@
+package com.ing.loan.export;
+
+import org.apache.arrow.compression.CommonsCompressionFactory;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.TimeStampMicroVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+class ArrowTableWriterTest {
+
+    private static final LocalDateTime UPDATED_AT = LocalDateTime.of(2025, 1, 15, 10, 30, 0, 123_456_000);
+
+    @TempDir
+    private Path directory;
+
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = DriverManager.getConnection("jdbc:h2:mem:arrow-table-writer");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE installment (id BIGINT PRIMARY KEY, amount DECIMAL(15, 2) NOT NULL, " +
+                    "due_date DATE NOT NULL, payment_date DATE, is_paid BOOLEAN NOT NULL, method VARCHAR(20), updated_at TIMESTAMP NOT NULL)");
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO installment VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (long id = 1; id <= 2500; id++) {
+                insert.setLong(1, id);
+                insert.setBigDecimal(2, new BigDecimal("916.67"));
+                insert.setObject(3, LocalDate.of(2025, 1, 1).plusDays(id));
+                // Every other installment is unpaid, without a payment date
+                insert.setObject(4, id % 2 == 0 ? LocalDate.of(2025, 1, 1) : null);
+                insert.setBoolean(5, id % 2 == 0);
+                insert.setString(6, id == 1 ? null : "ANNUITY");
+                insert.setObject(7, UPDATED_AT);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE installment");
+        }
+        connection.close();
+    }
+
+    @Test
+    void write_copiesEveryRowInBatches() throws Exception {
+        Path file = directory.resolve("installment.arrow");
+        long written;
+        try (BufferAllocator allocator = new RootAllocator();
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT * FROM installment ORDER BY id")) {
+            written = ArrowTableWriter.write(rows, file, Map.of("table", "installment"), allocator, 1000, CompressionUtil.CodecType.ZSTD);
+        }
+
+        assertEquals(2500, written);
+        try (BufferAllocator allocator = new RootAllocator();
+             FileChannel channel = FileChannel.open(file);
+             ArrowFileReader reader = new ArrowFileReader(channel, allocator, CommonsCompressionFactory.INSTANCE)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            assertEquals("installment", reader.getMetaData().get("table"));
+            assertEquals(3, reader.getRecordBlocks().size());
+            assertEquals(List.of("id", "amount", "due_date", "payment_date", "is_paid", "method", "updated_at"),
+                    root.getSchema().getFields().stream().map(Field::getName).toList());
+            assertFalse(root.getSchema().findField("id").isNullable());
+            assertTrue(root.getSchema().findField("payment_date").isNullable());
+
+            assertTrue(reader.loadNextBatch());
+            assertEquals(1000, root.getRowCount());
+            assertEquals(1L, ((BigIntVector) root.getVector("id")).get(0));
+            assertEquals(new BigDecimal("916.67"), ((DecimalVector) root.getVector("amount")).getObject(0));
+            assertEquals(LocalDate.of(2025, 1, 2).toEpochDay(), ((DateDayVector) root.getVector("due_date")).get(0));
+            assertTrue(root.getVector("payment_date").isNull(0));
+            assertEquals(0, ((BitVector) root.getVector("is_paid")).get(0));
+            assertEquals(1, ((BitVector) root.getVector("is_paid")).get(1));
+            assertTrue(root.getVector("method").isNull(0));
+            assertEquals("ANNUITY", ((VarCharVector) root.getVector("method")).getObject(1).toString());
+            assertEquals(UPDATED_AT, ((TimeStampMicroVector) root.getVector("updated_at")).getObject(0));
+
+            // Rows of the later batches are written from the start of the reused buffers
+            assertTrue(reader.loadNextBatch());
+            assertEquals(1001L, ((BigIntVector) root.getVector("id")).get(0));
+            assertTrue(root.getVector("payment_date").isNull(0));
+            assertTrue(reader.loadNextBatch());
+            assertEquals(500, root.getRowCount());
+            assertEquals(2500L, ((BigIntVector) root.getVector("id")).get(499));
+            assertFalse(reader.loadNextBatch());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.ing.loan.export;
+
+import com.ing.loan.entity.ExportWatermark;
+import com.ing.loan.repository.ExportWatermarkRepository;
+import com.ing.loan.response.ExportedTableResponse;
+import com.ing.loan.response.SnapshotExportResponse;
+import org.apache.arrow.vector.compression.CompressionUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@ExtendWith(MockitoExtension.class)
+class SnapshotExporterTest {
+
+    private static final LocalDateTime LAST_EXPORT = LocalDateTime.now().minusHours(1);
+
+    @Mock
+    private ExportWatermarkRepository watermarkRepository;
+
+    @TempDir
+    private Path directory;
+
+    private DriverManagerDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private OpenWriteTransactions openWriteTransactions;
+    private SnapshotExporter exporter;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:snapshot-exporter;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE loan (id BIGINT PRIMARY KEY, loan_amount DECIMAL(15, 2) NOT NULL, updated_at TIMESTAMP NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE loan_installment (id BIGINT PRIMARY KEY, loan_id BIGINT NOT NULL, is_paid BOOLEAN NOT NULL, " +
+                "updated_at TIMESTAMP NOT NULL)");
+        // Two loans and their installments, unchanged since before the last export
+        LocalDateTime before = LAST_EXPORT.minusMinutes(10);
+        jdbcTemplate.update("INSERT INTO loan VALUES (1000, 11000.00, ?), (1001, 5500.00, ?)", before, before);
+        jdbcTemplate.update("INSERT INTO loan_installment VALUES (1000, 1000, FALSE, ?), (1001, 1000, FALSE, ?), (1002, 1001, FALSE, ?)",
+                before, before, before);
+        openWriteTransactions = new OpenWriteTransactions();
+        exporter = new SnapshotExporter(dataSource, watermarkRepository, openWriteTransactions, directory, Duration.ZERO, 100, 2,
+                CompressionUtil.CodecType.ZSTD, DataSize.ofMegabytes(16));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TABLE loan_installment");
+        jdbcTemplate.execute("DROP TABLE loan");
+        exporter.destroy();
+    }
+
+    @Test
+    void export_fullExportWritesEveryRowAndRecordsTheWatermark() throws Exception {
+        SnapshotExportResponse response = exporter.export(ExportMode.FULL);
+
+        assertEquals(List.of(2L, 3L), response.getTables().stream().map(ExportedTableResponse::getRows).toList());
+        for (ExportedTableResponse table : response.getTables()) {
+            assertNull(table.getChangedAfter());
+            assertTrue(Files.size(Path.of(table.getFile())) > 0);
+        }
+        try (var files = Files.list(directory)) {
+            assertTrue(files.noneMatch(file -> file.toString().endsWith(".part")));
+        }
+        verify(watermarkRepository).saveAll(anyIterable());
+        verify(watermarkRepository, never()).findById(anyString());
+    }
+
+    @Test
+    void export_incrementalExportWritesTheRowsChangedSinceTheWatermark() {
+        when(watermarkRepository.findById(anyString())).thenAnswer(invocation -> Optional.of(ExportWatermark.builder()
+                .tableName(invocation.getArgument(0))
+                .exportedUpTo(LAST_EXPORT)
+                .updatedAt(LAST_EXPORT)
+                .build()));
+        // A new loan with one installment, and a payment of an existing installment
+        LocalDateTime after = LAST_EXPORT.plusMinutes(10);
+        jdbcTemplate.update("INSERT INTO loan VALUES (1050, 2200.00, ?)", after);
+        jdbcTemplate.update("INSERT INTO loan_installment VALUES (1050, 1050, FALSE, ?)", after);
+        jdbcTemplate.update("UPDATE loan_installment SET is_paid = TRUE, updated_at = ? WHERE id = 1000", after);
+
+        SnapshotExportResponse response = exporter.export(ExportMode.INCREMENTAL);
+
+        assertEquals(List.of(1L, 2L), response.getTables().stream().map(ExportedTableResponse::getRows).toList());
+        assertEquals(LAST_EXPORT, response.getTables().get(0).getChangedAfter());
+    }
+
+    @Test
+    void export_rowsOfATransactionOpenDuringAnExportAreExportedByTheNextOne() {
+        Map<String, LocalDateTime> watermarks = new HashMap<>(Map.of("loan", LAST_EXPORT, "loan_installment", LAST_EXPORT));
+        when(watermarkRepository.findById(anyString())).thenAnswer(invocation -> Optional.of(ExportWatermark.builder()
+                .tableName(invocation.getArgument(0))
+                .exportedUpTo(watermarks.get(invocation.<String>getArgument(0)))
+                .updatedAt(LAST_EXPORT)
+                .build()));
+        when(watermarkRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            for (ExportWatermark watermark : invocation.<Iterable<ExportWatermark>>getArgument(0)) {
+                watermarks.put(watermark.getTableName(), watermark.getExportedUpTo());
+            }
+            return List.of();
+        });
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        // A payment flushed before an export, but committed only after it
+        SnapshotExportResponse during = transactionTemplate.execute(transaction -> {
+            openWriteTransactions.register();
+            jdbcTemplate.update("UPDATE loan_installment SET is_paid = TRUE, updated_at = ? WHERE id = 1000", LocalDateTime.now());
+            return exporter.export(ExportMode.INCREMENTAL);
+        });
+        SnapshotExportResponse after = exporter.export(ExportMode.INCREMENTAL);
+
+        assertEquals(List.of(0L, 0L), during.getTables().stream().map(ExportedTableResponse::getRows).toList());
+        assertEquals(List.of(0L, 1L), after.getTables().stream().map(ExportedTableResponse::getRows).toList());
+    }
+
+    @Test
+    void export_failedExportLeavesNoFilesAndKeepsTheWatermark() throws Exception {
+        jdbcTemplate.execute("DROP TABLE loan_installment");
+        jdbcTemplate.execute("CREATE TABLE loan_installment (id BIGINT PRIMARY KEY, due_time TIME, updated_at TIMESTAMP NOT NULL)");
+        jdbcTemplate.update("INSERT INTO loan_installment VALUES (1000, CURRENT_TIME, ?)", LAST_EXPORT);
+
+        // TIME columns are not exported
+        assertThrows(IllegalArgumentException.class, () -> exporter.export(ExportMode.FULL));
+
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        verify(watermarkRepository, never()).saveAll(anyIterable());
+        // A failed export does not block the next one
+        assertThrows(IllegalArgumentException.class, () -> exporter.export(ExportMode.FULL));
+    }
+}
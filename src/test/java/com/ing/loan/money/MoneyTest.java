@@ -0,0 +1,60 @@
+package com.ing.loan.money;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Suleyman Yildirim
+ */
+class MoneyTest {
+
+    @Test
+    void of_roundsToCurrencyScale() {
+        assertEquals(123457L, Money.of(new BigDecimal("1234.565")).minorUnits());
+        assertEquals(120000L, Money.of(new BigDecimal("1200.0")).minorUnits());
+        assertEquals(new BigDecimal("1200.00"), Money.of(new BigDecimal("1200.0")).toBigDecimal());
+    }
+
+    @Test
+    void tendered_dropsFractionsOfACent() {
+        assertEquals(18332L, Money.tendered(new BigDecimal("183.325")).minorUnits());
+        assertEquals(18332L, Money.tendered(new BigDecimal("183.329")).minorUnits());
+        assertEquals(18333L, Money.tendered(new BigDecimal("183.33")).minorUnits());
+    }
+
+    @Test
+    void shares_addUpToTheAmount() {
+        Money amount = Money.of(new BigDecimal("13333.33"));
+
+        Money evenShare = amount.evenShare(9);
+        Money lastShare = amount.lastShare(9);
+
+        assertEquals(new BigDecimal("1481.48"), evenShare.toBigDecimal());
+        assertEquals(new BigDecimal("1481.49"), lastShare.toBigDecimal());
+        assertEquals(amount, evenShare.times(8).plus(lastShare));
+    }
+
+    @Test
+    void comparisons() {
+        Money small = Money.of(new BigDecimal("10.00"));
+        Money large = Money.of(new BigDecimal("10.01"));
+
+        assertTrue(large.isGreaterThan(small));
+        assertTrue(small.compareTo(large) < 0);
+        assertEquals(new BigDecimal("-0.01"), small.minus(large).toBigDecimal());
+    }
+
+    @Test
+    void arithmetic_failsOnOverflow() {
+        Money max = new Money(Long.MAX_VALUE);
+
+        assertThrows(ArithmeticException.class, () -> max.plus(new Money(1)));
+        assertThrows(ArithmeticException.class, () -> max.times(2));
+        assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("1e30")));
+    }
+}
@@ -0,0 +1,53 @@
+package com.ing.loan.outbox;
+
+import com.ing.loan.entity.OutboxEvent;
+import com.ing.loan.repository.OutboxEventRepository;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The batches the relay takes from the outbox table, on the real schema.
+ * @author Suleyman Yildirim
+ */
+@DataJpaTest
+class OutboxOrderingTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 12, 0);
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Test
+    void testLoansAreTakenInTheOrderOfTheirOldestPendingEvent() {
+        // Arrange: loan 900 has the older pending event, loan 100 the lower id and newer events, the later of its
+        // changes with the lower event id
+        OutboxEvent secondChangeOfLow = outboxEventRepository.save(event(100, 2, 3));
+        OutboxEvent firstChangeOfLow = outboxEventRepository.save(event(100, 1, 2));
+        OutboxEvent changeOfHigh = outboxEventRepository.save(event(900, 1, 1));
+
+        // Act
+        List<OutboxEvent> batch = outboxEventRepository.findNextBatch(Limit.of(2));
+
+        // Assert: the high loan is not held back, and the low loan's events follow its versions
+        Assertions.assertEquals(List.of(changeOfHigh.getId(), firstChangeOfLow.getId()),
+                batch.stream().map(OutboxEvent::getId).toList());
+        Assertions.assertEquals(List.of(changeOfHigh.getId(), firstChangeOfLow.getId(), secondChangeOfLow.getId()),
+                outboxEventRepository.findNextBatch(Limit.of(10)).stream().map(OutboxEvent::getId).toList());
+    }
+
+    private static OutboxEvent event(long loanId, long loanVersion, int minutesAfterStart) {
+        return OutboxEvent.builder()
+                .aggregateId(loanId)
+                .aggregateVersion(loanVersion)
+                .eventType("InstallmentPaid")
+                .payload("{\"loanId\":" + loanId + "}")
+                .createdAt(START.plusMinutes(minutesAfterStart))
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+package com.ing.loan.outbox;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ing.loan.entity.OutboxEvent;
+import com.ing.loan.repository.OutboxEventRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventRepository outboxEventRepository;
+
+    @Mock
+    private OutboxSink sink;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        // A long poll interval keeps the worker idle, the tests relay batches themselves
+        relay = new OutboxRelay(outboxEventRepository, sink, transactionManager, 2, Duration.ofHours(1), Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        relay.destroy();
+    }
+
+    private static OutboxEvent event(long id, long loanId) {
+        return OutboxEvent.builder()
+                .id(id)
+                .aggregateId(loanId)
+                .aggregateVersion(1L)
+                .eventType("InstallmentPaid")
+                .payload("{\"loanId\":" + loanId + "}")
+                .createdAt(LocalDateTime.of(2025, 1, 1, 12, 0))
+                .build();
+    }
+
+    @Test
+    void relayBatch_publishesNextEventsThenDeletesThem() throws Exception {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        List<OutboxEvent> events = List.of(event(1, 7), event(2, 7));
+        when(outboxEventRepository.findNextBatch(Limit.of(2))).thenReturn(events);
+
+        assertEquals(2, relay.relayBatch());
+
+        var inOrder = inOrder(sink, outboxEventRepository, transactionManager);
+        inOrder.verify(sink).publish(events);
+        inOrder.verify(outboxEventRepository).deleteByIds(List.of(1L, 2L));
+        inOrder.verify(transactionManager).commit(transactionStatus);
+    }
+
+    @Test
+    void relayBatch_keepsEventsWhenSinkFails() throws Exception {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        List<OutboxEvent> events = List.of(event(1, 7));
+        when(outboxEventRepository.findNextBatch(Limit.of(2))).thenReturn(events);
+        doThrow(new IOException("broker unavailable")).when(sink).publish(events);
+
+        assertThrows(IllegalStateException.class, () -> relay.relayBatch());
+
+        // The batch is rolled back and published again by the next attempt
+        verify(outboxEventRepository, never()).deleteByIds(anyCollection());
+        verify(transactionManager).rollback(transactionStatus);
+    }
+
+    @Test
+    void relayBatch_emptyOutboxPublishesNothing() {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(outboxEventRepository.findNextBatch(Limit.of(2))).thenReturn(List.of());
+
+        assertEquals(0, relay.relayBatch());
+
+        verifyNoInteractions(sink);
+    }
+
+    @Test
+    void fileSink_appendsOneJsonLinePerEvent(@TempDir Path directory) throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        Path file = directory.resolve("events.ndjson");
+        FileOutboxSink fileSink = new FileOutboxSink(file, objectMapper);
+        String payload = objectMapper.writeValueAsString(
+                new LoanEvent.InstallmentPaid(7L, 70L, new BigDecimal("100.00"), LocalDate.of(2025, 1, 1)));
+
+        fileSink.publish(List.of(event(1, 7)));
+        fileSink.publish(List.of(OutboxEvent.builder().id(2L).aggregateId(7L).eventType("InstallmentPaid")
+                .payload(payload).createdAt(LocalDateTime.of(2025, 1, 1, 12, 0)).build()));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        JsonNode second = objectMapper.readTree(lines.get(1));
+        assertEquals(2, second.get("id").asLong());
+        assertEquals("InstallmentPaid", second.get("type").asText());
+        assertEquals(70, second.get("payload").get("installmentId").asLong());
+    }
+}
@@ -0,0 +1,141 @@
+package com.ing.loan.payment;
+
+import com.ing.loan.exception.ErrorCode;
+import com.ing.loan.exception.LoanNotFoundException;
+import com.ing.loan.exception.PaymentQueueFullException;
+import com.ing.loan.payment.AsyncPaymentPipeline.QueuedPayment;
+import com.ing.loan.response.LoanPaymentResponse;
+import com.ing.loan.response.PaymentTrackingResponse;
+import com.ing.loan.response.PaymentTrackingResponse.Status;
+import com.ing.loan.service.PaymentService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@ExtendWith(MockitoExtension.class)
+class AsyncPaymentPipelineTest {
+
+    private static final BigDecimal AMOUNT = new BigDecimal("100.00");
+
+    @Mock
+    private PaymentService paymentService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    private AsyncPaymentPipeline pipeline;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.destroy();
+    }
+
+    private AsyncPaymentPipeline pipeline(int shards, int queueCapacity) {
+        pipeline = new AsyncPaymentPipeline(paymentService, transactionManager, shards, queueCapacity, 100, Duration.ofMinutes(1), 1000);
+        return pipeline;
+    }
+
+    private static LoanPaymentResponse paid(int installments) {
+        return LoanPaymentResponse.builder().paidInstallments(installments).totalAmountSpent(AMOUNT).build();
+    }
+
+    @Test
+    void apply_commitsBatchInOneTransaction() {
+        pipeline(1, 10);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        QueuedPayment first = new QueuedPayment(UUID.randomUUID(), 1L, AMOUNT);
+        QueuedPayment unknownLoan = new QueuedPayment(UUID.randomUUID(), 2L, AMOUNT);
+        QueuedPayment second = new QueuedPayment(UUID.randomUUID(), 3L, AMOUNT);
+        when(paymentService.applyPayment(1L, AMOUNT)).thenReturn(paid(1));
+        when(paymentService.applyPayment(2L, AMOUNT)).thenThrow(new LoanNotFoundException(ErrorCode.LOAN_NOT_FOUND, "Loan 2 not found"));
+        when(paymentService.applyPayment(3L, AMOUNT)).thenReturn(paid(2));
+
+        pipeline.apply(List.of(first, unknownLoan, second));
+
+        // A failed payment does not fail the others, and all are committed together
+        assertEquals(Status.COMPLETED, pipeline.status(first.trackingId()).orElseThrow().getStatus());
+        PaymentTrackingResponse failed = pipeline.status(unknownLoan.trackingId()).orElseThrow();
+        assertEquals(Status.FAILED, failed.getStatus());
+        assertEquals("Loan 2 not found", failed.getPayment().getErrorMessage());
+        assertEquals(2, pipeline.status(second.trackingId()).orElseThrow().getPayment().getPaidInstallments());
+        verify(transactionManager, times(1)).commit(transactionStatus);
+        verify(paymentService, never()).payLoan(anyLong(), any());
+    }
+
+    @Test
+    void apply_rolledBackBatchIsAppliedOneByOne() {
+        pipeline(1, 10);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        doThrow(new OptimisticLockingFailureException("conflict")).when(transactionManager).commit(transactionStatus);
+        QueuedPayment first = new QueuedPayment(UUID.randomUUID(), 1L, AMOUNT);
+        QueuedPayment second = new QueuedPayment(UUID.randomUUID(), 2L, AMOUNT);
+        when(paymentService.applyPayment(anyLong(), any())).thenReturn(paid(1));
+        when(paymentService.payLoan(1L, AMOUNT)).thenReturn(paid(1));
+        when(paymentService.payLoan(2L, AMOUNT)).thenThrow(new OptimisticLockingFailureException("still conflicting"));
+
+        pipeline.apply(List.of(first, second));
+
+        assertEquals(Status.COMPLETED, pipeline.status(first.trackingId()).orElseThrow().getStatus());
+        assertEquals(Status.FAILED, pipeline.status(second.trackingId()).orElseThrow().getStatus());
+        verify(paymentService).payLoan(1L, AMOUNT);
+        verify(paymentService).payLoan(2L, AMOUNT);
+    }
+
+    @Test
+    void submit_rejectsPaymentsWhenShardIsFull() throws InterruptedException {
+        pipeline(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(paymentService.applyPayment(anyLong(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return paid(1);
+        });
+
+        // The worker holds the first payment, the second fills the queue
+        PaymentTrackingResponse first = pipeline.submit(1L, AMOUNT);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        pipeline.submit(1L, AMOUNT);
+        PaymentQueueFullException exception = assertThrows(PaymentQueueFullException.class, () -> pipeline.submit(1L, AMOUNT));
+        assertEquals(ErrorCode.PAYMENT_QUEUE_FULL, exception.getErrorCode());
+
+        release.countDown();
+        pipeline.destroy();
+        assertEquals(Status.COMPLETED, pipeline.status(first.getTrackingId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void destroy_appliesQueuedPaymentsBeforeStopping() throws InterruptedException {
+        pipeline(2, 100);
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(paymentService.applyPayment(anyLong(), any())).thenReturn(paid(1));
+        List<PaymentTrackingResponse> queued = List.of(pipeline.submit(1L, AMOUNT), pipeline.submit(2L, AMOUNT), pipeline.submit(3L, AMOUNT));
+
+        pipeline.destroy();
+
+        queued.forEach(payment -> assertEquals(Status.COMPLETED, pipeline.status(payment.getTrackingId()).orElseThrow().getStatus()));
+        assertThrows(PaymentQueueFullException.class, () -> pipeline.submit(4L, AMOUNT));
+    }
+}
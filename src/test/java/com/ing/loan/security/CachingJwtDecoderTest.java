@@ -0,0 +1,99 @@
+package com.ing.loan.security;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@ExtendWith(MockitoExtension.class)
+class CachingJwtDecoderTest {
+
+    private static final Instant NOW = Instant.parse("2025-01-01T00:00:00Z");
+
+    @Mock
+    private JwtDecoder delegate;
+
+    private final MutableClock clock = new MutableClock(NOW);
+
+    private CachingJwtDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        decoder = new CachingJwtDecoder(delegate, 100, Duration.ofMinutes(10), clock);
+    }
+
+    @Test
+    void decode_verifiesEachTokenOnce() {
+        Jwt jwt = jwt("token-1", NOW.plus(Duration.ofMinutes(5)));
+        when(delegate.decode("token-1")).thenReturn(jwt);
+
+        assertSame(jwt, decoder.decode("token-1"));
+        assertSame(jwt, decoder.decode("token-1"));
+
+        verify(delegate, times(1)).decode("token-1");
+    }
+
+    @Test
+    void decode_expiredTokenIsVerifiedAgain() {
+        Jwt jwt = jwt("token-1", NOW.plus(Duration.ofMinutes(5)));
+        when(delegate.decode("token-1")).thenReturn(jwt).thenThrow(new BadJwtException("Jwt expired"));
+        decoder.decode("token-1");
+
+        // Past the expiry and the clock skew
+        clock.advance(Duration.ofMinutes(7));
+
+        assertThrows(BadJwtException.class, () -> decoder.decode("token-1"));
+        verify(delegate, times(2)).decode("token-1");
+    }
+
+    @Test
+    void decode_cachedTokenIsAcceptedWithinTheClockSkew() {
+        Jwt jwt = jwt("token-1", NOW.plus(Duration.ofMinutes(5)));
+        when(delegate.decode("token-1")).thenReturn(jwt);
+        decoder.decode("token-1");
+
+        // Expired 30 seconds ago, within the delegate's default skew of 60 seconds
+        clock.advance(Duration.ofSeconds(330));
+
+        assertSame(jwt, decoder.decode("token-1"));
+        verify(delegate, times(1)).decode("token-1");
+    }
+
+    @Test
+    void decode_rejectedTokensAndTokensWithoutExpiryAreNotCached() {
+        when(delegate.decode("forged")).thenThrow(new BadJwtException("Invalid signature"));
+        when(delegate.decode("no-expiry")).thenReturn(jwt("no-expiry", null));
+
+        assertThrows(BadJwtException.class, () -> decoder.decode("forged"));
+        assertThrows(BadJwtException.class, () -> decoder.decode("forged"));
+        decoder.decode("no-expiry");
+        decoder.decode("no-expiry");
+
+        verify(delegate, times(2)).decode("forged");
+        verify(delegate, times(2)).decode("no-expiry");
+    }
+
+    private static Jwt jwt(String token, Instant expiresAt) {
+        Jwt.Builder builder = Jwt.withTokenValue(token)
+                .header("alg", "RS256")
+                .subject("1")
+                .issuedAt(NOW.minus(Duration.ofMinutes(1)));
+        if (expiresAt != null) {
+            builder.expiresAt(expiresAt);
+        }
+        return builder.build();
+    }
+}
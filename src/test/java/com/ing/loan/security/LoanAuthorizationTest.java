@@ -0,0 +1,129 @@
+package com.ing.loan.security;
+
+import com.ing.loan.repository.LoanRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@ExtendWith(MockitoExtension.class)
+class LoanAuthorizationTest {
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    private LoanAuthorization authorization;
+
+    private final LoanJwtAuthenticationConverter converter = new LoanJwtAuthenticationConverter(100);
+
+    @BeforeEach
+    void setUp() {
+        authorization = new LoanAuthorization(new LoanOwnershipIndex(loanRepository, 100));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void convert_resolvesThePrincipalOncePerToken() {
+        Jwt jwt = jwt(List.of("CUSTOMER", "openid"), "7");
+
+        LoanAuthentication first = (LoanAuthentication) converter.convert(jwt);
+        LoanAuthentication second = (LoanAuthentication) converter.convert(jwt);
+
+        assertEquals(new LoanPrincipal("client", 7L, false, true), first.getPrincipal());
+        assertSame(first.getPrincipal(), second.getPrincipal());
+        assertNotSame(first, second);
+        assertEquals(List.of(new SimpleGrantedAuthority("CUSTOMER")), List.copyOf(first.getAuthorities()));
+        assertEquals("client", first.getName());
+    }
+
+    @Test
+    void convert_acceptsSpaceSeparatedScopes() {
+        LoanPrincipal principal = ((LoanAuthentication) converter.convert(jwt("ADMIN CUSTOMER", null))).getPrincipal();
+
+        assertTrue(principal.admin());
+        assertTrue(principal.customer());
+        assertNull(principal.customerId());
+    }
+
+    @Test
+    void checkLoan_adminNeedsNoLookup() {
+        authenticate(List.of("ADMIN"), null);
+
+        authorization.checkLoan(1L);
+
+        verifyNoInteractions(loanRepository);
+    }
+
+    @Test
+    void checkLoan_customerOwnLoan_ownerIsLookedUpOnce() {
+        authenticate(List.of("CUSTOMER"), 7L);
+        when(loanRepository.findCustomerIdById(1L)).thenReturn(Optional.of(7L));
+
+        authorization.checkLoan(1L);
+        authorization.checkLoan(1L);
+
+        verify(loanRepository, times(1)).findCustomerIdById(1L);
+    }
+
+    @Test
+    void checkLoan_customerIsDeniedOtherAndUnknownLoans() {
+        authenticate(List.of("CUSTOMER"), 7L);
+        when(loanRepository.findCustomerIdById(1L)).thenReturn(Optional.of(8L));
+        when(loanRepository.findCustomerIdById(2L)).thenReturn(Optional.empty());
+
+        assertThrows(AccessDeniedException.class, () -> authorization.checkLoan(1L));
+        assertThrows(AccessDeniedException.class, () -> authorization.checkLoan(2L));
+    }
+
+    @Test
+    void checkCustomer_customerActsForThemselvesOnly() {
+        authenticate(List.of("CUSTOMER"), 7L);
+
+        authorization.checkCustomer(7L);
+        assertThrows(AccessDeniedException.class, () -> authorization.checkCustomer(8L));
+        assertThrows(AccessDeniedException.class, () -> authorization.checkAdmin());
+    }
+
+    @Test
+    void checks_denyCallersWithoutALoanPrincipal() {
+        assertThrows(AccessDeniedException.class, () -> authorization.checkCustomer(7L));
+    }
+
+    private void authenticate(List<String> scopes, Long customerId) {
+        SecurityContextHolder.getContext().setAuthentication(
+                converter.convert(jwt(scopes, customerId != null ? customerId.toString() : null)));
+    }
+
+    private static Jwt jwt(Object scope, String customerId) {
+        Jwt.Builder builder = Jwt.withTokenValue("token")
+                .header("alg", "RS256")
+                .subject("client")
+                .claim("scope", scope)
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300));
+        if (customerId != null) {
+            builder.claim(LoanPrincipal.CUSTOMER_ID_CLAIM, customerId);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,80 @@
+package com.ing.loan.security;
+
+import com.ing.loan.repository.LoanOwner;
+import com.ing.loan.repository.LoanRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@ExtendWith(MockitoExtension.class)
+class LoanOwnershipIndexTest {
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    private LoanOwnershipIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new LoanOwnershipIndex(loanRepository, 2);
+    }
+
+    @Test
+    void ownerOf_loansAddedAreAnsweredFromMemory_pastTheInitialCapacity() {
+        for (long loanId = 1000; loanId < 6000; loanId++) {
+            index.put(loanId, loanId % 7 + 1);
+        }
+
+        for (long loanId = 1000; loanId < 6000; loanId++) {
+            assertEquals(loanId % 7 + 1, index.ownerOf(loanId));
+        }
+        verifyNoInteractions(loanRepository);
+    }
+
+    @Test
+    void ownerOf_missingLoanIsReadFromTheDatabaseOnce() {
+        when(loanRepository.findCustomerIdById(1000L)).thenReturn(Optional.of(7L));
+
+        assertEquals(7L, index.ownerOf(1000L));
+        assertEquals(7L, index.ownerOf(1000L));
+
+        verify(loanRepository, times(1)).findCustomerIdById(1000L);
+    }
+
+    @Test
+    void ownerOf_unknownLoanHasNoOwner_andIsReadAgain() {
+        when(loanRepository.findCustomerIdById(1000L)).thenReturn(Optional.empty());
+
+        assertEquals(LoanOwnershipIndex.NO_OWNER, index.ownerOf(1000L));
+        assertEquals(LoanOwnershipIndex.NO_OWNER, index.ownerOf(1000L));
+
+        verify(loanRepository, times(2)).findCustomerIdById(1000L);
+    }
+
+    @Test
+    void warmUp_loadsEveryLoanByKeyset() {
+        when(loanRepository.findOwnersAfter(0L, Limit.of(2)))
+                .thenReturn(List.of(new LoanOwner(1000L, 7L), new LoanOwner(1001L, 8L)));
+        when(loanRepository.findOwnersAfter(1001L, Limit.of(2)))
+                .thenReturn(List.of(new LoanOwner(1050L, 7L)));
+
+        assertEquals(3, index.warmUp());
+
+        assertEquals(7L, index.ownerOf(1000L));
+        assertEquals(8L, index.ownerOf(1001L));
+        assertEquals(7L, index.ownerOf(1050L));
+        verify(loanRepository, never()).findCustomerIdById(anyLong());
+    }
+}
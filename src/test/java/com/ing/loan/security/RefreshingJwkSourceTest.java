@@ -0,0 +1,103 @@
+package com.ing.loan.security;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@ExtendWith(MockitoExtension.class)
+class RefreshingJwkSourceTest {
+
+    @Mock
+    private RefreshingJwkSource.JwkSetFetcher fetcher;
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2025-01-01T00:00:00Z"));
+
+    private RSAKey currentKey;
+    private RSAKey rotatedKey;
+    private RefreshingJwkSource jwkSource;
+
+    @BeforeEach
+    void setUp() throws JOSEException {
+        currentKey = new RSAKeyGenerator(2048).keyID("current").generate().toPublicJWK();
+        rotatedKey = new RSAKeyGenerator(2048).keyID("rotated").generate().toPublicJWK();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jwkSource.destroy();
+    }
+
+    @Test
+    void get_servesKeysFetchedInTheBackground() throws Exception {
+        when(fetcher.fetch()).thenReturn(new JWKSet(currentKey));
+        start();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(List.of(currentKey), jwkSource.get(selectKey("current"), null));
+        }
+
+        verify(fetcher, times(1)).fetch();
+    }
+
+    @Test
+    void get_servesTheStaleSetWhileRefreshesFail_untilMaxStale() throws Exception {
+        when(fetcher.fetch()).thenReturn(new JWKSet(currentKey)).thenThrow(new IOException("Connection refused"));
+        start();
+
+        // Within max-stale the last set is served without waiting for the authorization server
+        clock.advance(Duration.ofMinutes(59));
+        assertEquals(List.of(currentKey), jwkSource.get(selectKey("current"), null));
+        verify(fetcher, times(1)).fetch();
+
+        // Past it, the request tries to fetch the set itself and is rejected
+        clock.advance(Duration.ofMinutes(2));
+        assertThrows(KeySourceException.class, () -> jwkSource.get(selectKey("current"), null));
+        verify(fetcher, times(2)).fetch();
+    }
+
+    @Test
+    void get_unknownKeyIdFetchesTheSetAgain_atMostOncePerGap() throws Exception {
+        when(fetcher.fetch()).thenReturn(new JWKSet(currentKey), new JWKSet(List.<JWK>of(currentKey, rotatedKey)));
+        start();
+        clock.advance(Duration.ofMinutes(1));
+
+        // The authorization server rotated its keys since the last refresh
+        assertEquals(List.of(rotatedKey), jwkSource.get(selectKey("rotated"), null));
+
+        // An unknown key id right after a fetch does not fetch again
+        assertEquals(List.of(), jwkSource.get(selectKey("unknown"), null));
+        verify(fetcher, times(2)).fetch();
+    }
+
+    // Starts the source and waits for its first background fetch; the next refreshes are an hour away
+    private void start() throws Exception {
+        jwkSource = new RefreshingJwkSource(fetcher, Duration.ofHours(1), Duration.ofHours(1), Duration.ofSeconds(30), clock);
+        verify(fetcher, timeout(5000)).fetch();
+    }
+
+    private static JWKSelector selectKey(String keyId) {
+        return new JWKSelector(new JWKMatcher.Builder().keyID(keyId).build());
+    }
+}
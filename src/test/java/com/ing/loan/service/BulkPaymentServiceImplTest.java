@@ -0,0 +1,184 @@
+package com.ing.loan.service;
+
+import com.ing.loan.credit.CreditLedger;
+import com.ing.loan.entity.Customer;
+import com.ing.loan.entity.Loan;
+import com.ing.loan.exception.ErrorCode;
+import com.ing.loan.export.OpenWriteTransactions;
+import com.ing.loan.metrics.LoanMetrics;
+import com.ing.loan.metrics.OptimisticLockRetryListener;
+import com.ing.loan.money.Money;
+import com.ing.loan.outbox.LoanEvent;
+import com.ing.loan.outbox.Outbox;
+import com.ing.loan.repository.LoanInstallmentRepository;
+import com.ing.loan.repository.LoanRepository;
+import com.ing.loan.repository.UnpaidInstallment;
+import com.ing.loan.request.PaymentRequest;
+import com.ing.loan.response.BulkPaymentRowResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Suleyman Yildirim
+ */
+@ExtendWith(MockitoExtension.class)
+class BulkPaymentServiceImplTest {
+
+    @Mock
+    private LoanRepository loanRepository;
+
+    @Mock
+    private LoanInstallmentRepository loanInstallmentRepository;
+
+    @Mock
+    private CreditLedger creditLedger;
+
+    @Mock
+    private Outbox outbox;
+
+    @Mock
+    private LoanMetrics loanMetrics;
+
+    @Mock
+    private OpenWriteTransactions openWriteTransactions;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    private BulkPaymentServiceImpl bulkPaymentService;
+
+    private Loan loan1;
+    private Loan loan2;
+
+    @BeforeEach
+    void setUp() {
+        bulkPaymentService = new BulkPaymentServiceImpl(loanRepository, loanInstallmentRepository, creditLedger, outbox, loanMetrics,
+                openWriteTransactions, transactionManager, new OptimisticLockRetryListener(loanMetrics), 2, 3, 1, 2, 10);
+        Customer customer = Customer.builder().id(7L).build();
+        loan1 = Loan.builder().id(1L).customer(customer).loanAmount(new BigDecimal("300.00")).isPaid(false)
+                .remainingAmount(new BigDecimal("300.00")).version(5L).build();
+        loan2 = Loan.builder().id(2L).customer(customer).loanAmount(new BigDecimal("200.00")).isPaid(false)
+                .remainingAmount(new BigDecimal("200.00")).version(0L).build();
+    }
+
+    private static PaymentRequest payment(Long loanId, String amount) {
+        return PaymentRequest.builder().loanId(loanId).paymentAmount(amount == null ? null : new BigDecimal(amount)).build();
+    }
+
+    private static UnpaidInstallment unpaid(long loanId, long id, int monthsFromNow) {
+        return new UnpaidInstallment(loanId, id, new BigDecimal("100.00"), LocalDate.now().plusMonths(monthsFromNow));
+    }
+
+    private List<BulkPaymentRowResponse> payLoans(PaymentRequest... payments) {
+        List<BulkPaymentRowResponse> rows = new ArrayList<>();
+        bulkPaymentService.payLoans(List.of(payments).iterator(), rows::add);
+        return rows;
+    }
+
+    @Test
+    void payLoans_allocatesRowsOfOneLoanInOrder() {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(loanRepository.findVersionedByIdIn(Set.of(1L))).thenReturn(List.of(loan1));
+        // The third installment is due beyond the payable window
+        when(loanInstallmentRepository.findUnpaidInstallments(Set.of(1L)))
+                .thenReturn(List.of(unpaid(1, 11, -1), unpaid(1, 12, 0), unpaid(1, 13, 5)));
+        when(loanInstallmentRepository.markPaid(List.of(11L, 12L), LocalDate.now())).thenReturn(2);
+
+        List<BulkPaymentRowResponse> rows = payLoans(payment(1L, "100"), payment(1L, "150"));
+
+        // The second row continues where the first stopped, and nothing is left payable within the window
+        assertEquals(1, rows.get(0).getPaidInstallments());
+        assertEquals(1, rows.get(1).getPaidInstallments());
+        assertEquals(new BigDecimal("100.00"), rows.get(1).getTotalAmountSpent());
+        assertEquals(false, rows.get(1).isLoanPaid());
+        // The balance summary points at the installment beyond the window
+        assertEquals(2, loan1.getPaidInstallments());
+        assertEquals(new BigDecimal("100.00"), loan1.getRemainingAmount());
+        assertEquals(LocalDate.now().plusMonths(5), loan1.getNextDueDate());
+        verify(outbox).append(new LoanEvent.InstallmentPaid(1L, 11L, new BigDecimal("100.00"), LocalDate.now()), 6L);
+        verify(outbox).append(new LoanEvent.InstallmentPaid(1L, 12L, new BigDecimal("100.00"), LocalDate.now()), 6L);
+        verify(loanInstallmentRepository, times(1)).markPaid(anyCollection(), any(LocalDate.class));
+        verifyNoInteractions(creditLedger);
+    }
+
+    @Test
+    void payLoans_reportsRejectedRowsAndPaysOffLoans() {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(loanRepository.findVersionedByIdIn(Set.of(99L))).thenReturn(List.of());
+        when(loanRepository.findVersionedByIdIn(Set.of(2L))).thenReturn(List.of(loan2));
+        when(loanInstallmentRepository.findUnpaidInstallments(Set.of(2L)))
+                .thenReturn(List.of(unpaid(2, 21, 0), unpaid(2, 22, 1)));
+        when(loanInstallmentRepository.markPaid(List.of(21L, 22L), LocalDate.now())).thenReturn(2);
+
+        // Chunks of two rows: the invalid and unknown rows share a chunk, the payoff is in the second
+        List<BulkPaymentRowResponse> rows = payLoans(payment(null, "100"), payment(99L, "100"), payment(2L, "250"));
+
+        assertEquals(3, rows.size());
+        assertEquals(ErrorCode.INVALID_PAYMENT.getCode(), rows.get(0).getErrorCode());
+        assertEquals(ErrorCode.LOAN_NOT_FOUND.getCode(), rows.get(1).getErrorCode());
+        assertNull(rows.get(2).getErrorCode());
+        assertEquals(2, rows.get(2).getIndex());
+        assertTrue(rows.get(2).isLoanPaid());
+        assertTrue(loan2.getIsPaid());
+        assertEquals(new BigDecimal("0.00"), loan2.getRemainingAmount());
+        assertNull(loan2.getNextDueDate());
+        verify(creditLedger).release(7L, Money.of(new BigDecimal("200.00")));
+        verify(outbox).append(new LoanEvent.LoanFullyPaid(2L, 7L, new BigDecimal("200.00"), LocalDate.now()), 1L);
+        verify(transactionManager, times(2)).commit(transactionStatus);
+    }
+
+    @Test
+    void payLoans_retriesChunkWhenInstallmentsWerePaidConcurrently() {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(loanRepository.findVersionedByIdIn(Set.of(1L))).thenReturn(List.of(loan1));
+        when(loanInstallmentRepository.findUnpaidInstallments(Set.of(1L)))
+                .thenReturn(List.of(unpaid(1, 11, -1), unpaid(1, 12, 0)))
+                .thenReturn(List.of(unpaid(1, 12, 0)));
+        // The first attempt loses the race for installment 11
+        when(loanInstallmentRepository.markPaid(List.of(11L), LocalDate.now())).thenReturn(0);
+        when(loanInstallmentRepository.markPaid(List.of(12L), LocalDate.now())).thenReturn(1);
+
+        List<BulkPaymentRowResponse> rows = payLoans(payment(1L, "100"));
+
+        assertEquals(1, rows.get(0).getPaidInstallments());
+        verify(transactionManager).rollback(transactionStatus);
+        verify(loanMetrics).recordOptimisticLockConflict("loan.payment.bulk");
+        // Only the committed attempt is counted
+        verify(loanMetrics, times(1)).recordInstallmentsPaid(anyInt());
+        verify(loanMetrics).recordInstallmentsPaid(1);
+    }
+
+    @Test
+    void payLoans_rejectsChunkWhenEveryAttemptConflicts() {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(loanRepository.findVersionedByIdIn(Set.of(1L))).thenReturn(List.of(loan1));
+        when(loanInstallmentRepository.findUnpaidInstallments(Set.of(1L))).thenReturn(List.of(unpaid(1, 11, -1)));
+        when(loanInstallmentRepository.markPaid(List.of(11L), LocalDate.now())).thenReturn(0);
+
+        List<BulkPaymentRowResponse> rows = payLoans(payment(1L, "100"));
+
+        assertEquals(ErrorCode.CONCURRENT_MODIFICATION.getCode(), rows.get(0).getErrorCode());
+        verify(transactionManager, times(3)).rollback(transactionStatus);
+        verify(loanMetrics).recordRetriesExhausted("loan.payment.bulk");
+        verify(loanMetrics, never()).recordInstallmentsPaid(anyInt());
+    }
+}
@@ -0,0 +1,198 @@
+package com.ing.loan.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ing.loan.entity.IdempotencyRecord;
+import com.ing.loan.exception.ErrorCode;
+import com.ing.loan.exception.IdempotencyConflictException;
+import com.ing.loan.metrics.LoanMetrics;
+import com.ing.loan.metrics.OptimisticLockRetryListener;
+import com.ing.loan.repository.IdempotencyRecordRepository;
+import com.ing.loan.request.PaymentRequest;
+import com.ing.loan.response.LoanPaymentResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceImplTest {
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private TransactionStatus transactionStatus;
+
+    @Mock
+    private LoanMetrics loanMetrics;
+
+    private IdempotencyServiceImpl idempotencyService;
+
+    private final PaymentRequest request = PaymentRequest.builder().loanId(1L).paymentAmount(new BigDecimal("1000.00")).build();
+    private final AtomicInteger payments = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        idempotencyService = newInstance();
+    }
+
+    private IdempotencyServiceImpl newInstance() {
+        return new IdempotencyServiceImpl(idempotencyRecordRepository, new ObjectMapper(), transactionManager,
+                new OptimisticLockRetryListener(loanMetrics), Duration.ofHours(24), 100, 3, 1, 2, 10);
+    }
+
+    private ResponseEntity<LoanPaymentResponse> pay() {
+        payments.incrementAndGet();
+        return ResponseEntity.ok(LoanPaymentResponse.builder().paidInstallments(2).totalAmountSpent(new BigDecimal("1000.00")).build());
+    }
+
+    @Test
+    void execute_withoutKey_runsActionWithoutRecord() {
+        ResponseEntity<?> response = idempotencyService.execute("pay-loan", null, request, this::pay);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1, payments.get());
+        verifyNoInteractions(idempotencyRecordRepository);
+    }
+
+    @Test
+    void execute_retryWithSameKey_replaysStoredResponse() {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        ResponseEntity<?> first = idempotencyService.execute("pay-loan", "key-1", request, this::pay);
+        ResponseEntity<?> retry = idempotencyService.execute("pay-loan", "key-1", request, this::pay);
+
+        assertEquals(1, payments.get());
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyServiceImpl.REPLAYED_HEADER));
+        assertTrue(((String) retry.getBody()).contains("\"paidInstallments\":2"));
+        assertNull(first.getHeaders().getFirst(IdempotencyServiceImpl.REPLAYED_HEADER));
+        verify(idempotencyRecordRepository).insertClaim(anyString(), anyString(), any());
+        verify(idempotencyRecordRepository).complete(anyString(), eq(200), anyString());
+        // The response is stored in the transaction of the payment
+        InOrder inOrder = inOrder(transactionManager, idempotencyRecordRepository);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(idempotencyRecordRepository).complete(anyString(), eq(200), anyString());
+        inOrder.verify(transactionManager).commit(transactionStatus);
+    }
+
+    @Test
+    void execute_keyClaimedElsewhere_replaysStoredRecord() {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        idempotencyService.execute("pay-loan", "key-1", request, this::pay);
+        IdempotencyServiceImpl otherInstance = newInstance();
+        String requestHash = captureRequestHash();
+        when(idempotencyRecordRepository.insertClaim(anyString(), anyString(), any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(idempotencyRecordRepository.findById(anyString())).thenReturn(Optional.of(IdempotencyRecord.builder()
+                .requestHash(requestHash).statusCode(200).responseBody("{\"paidInstallments\":2}").build()));
+
+        ResponseEntity<?> retry = otherInstance.execute("pay-loan", "key-1", request, this::pay);
+
+        assertEquals(1, payments.get());
+        assertEquals("{\"paidInstallments\":2}", retry.getBody());
+    }
+
+    @Test
+    void execute_firstRequestStillRunning_throwsInProgress() {
+        when(idempotencyRecordRepository.insertClaim(anyString(), anyString(), any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+        when(idempotencyRecordRepository.findById(anyString())).thenReturn(Optional.of(IdempotencyRecord.builder().requestHash("hash").build()));
+
+        IdempotencyConflictException exception = assertThrows(IdempotencyConflictException.class,
+                () -> idempotencyService.execute("pay-loan", "key-1", request, this::pay));
+
+        assertEquals(ErrorCode.IDEMPOTENCY_REQUEST_IN_PROGRESS, exception.getErrorCode());
+        assertEquals(0, payments.get());
+    }
+
+    @Test
+    void execute_keyReusedForDifferentRequest_throwsKeyReused() {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        idempotencyService.execute("pay-loan", "key-1", request, this::pay);
+        PaymentRequest otherRequest = PaymentRequest.builder().loanId(1L).paymentAmount(new BigDecimal("5.00")).build();
+
+        IdempotencyConflictException exception = assertThrows(IdempotencyConflictException.class,
+                () -> idempotencyService.execute("pay-loan", "key-1", otherRequest, this::pay));
+
+        assertEquals(ErrorCode.IDEMPOTENCY_KEY_REUSED, exception.getErrorCode());
+        assertEquals(1, payments.get());
+    }
+
+    @Test
+    void execute_actionFails_releasesClaim() {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        assertThrows(IllegalStateException.class, () -> idempotencyService.execute("pay-loan", "key-1", request, () -> {
+            throw new IllegalStateException("boom");
+        }));
+        ResponseEntity<?> notFound = idempotencyService.execute("pay-loan", "key-2", request,
+                () -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+
+        assertEquals(HttpStatus.NOT_FOUND, notFound.getStatusCode());
+        verify(idempotencyRecordRepository).release(endsWith(":key-1"));
+        verify(idempotencyRecordRepository).release(endsWith(":key-2"));
+        verify(idempotencyRecordRepository, never()).complete(anyString(), anyInt(), any());
+        verify(transactionManager).rollback(transactionStatus);
+        verify(transactionStatus).setRollbackOnly();
+    }
+
+    @Test
+    void execute_storingTheResponseFails_rollsBackThePaymentAndReleasesTheClaim() {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        when(idempotencyRecordRepository.complete(anyString(), anyInt(), anyString()))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"))
+                .thenReturn(1);
+
+        assertThrows(DataAccessResourceFailureException.class, () -> idempotencyService.execute("pay-loan", "key-1", request, this::pay));
+
+        // The payment is rolled back with the response, so a retry with the key pays instead of finding it in progress
+        verify(transactionManager).rollback(transactionStatus);
+        verify(transactionManager, never()).commit(transactionStatus);
+        verify(idempotencyRecordRepository).release(endsWith(":key-1"));
+
+        ResponseEntity<?> retry = idempotencyService.execute("pay-loan", "key-1", request, this::pay);
+
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertNull(retry.getHeaders().getFirst(IdempotencyServiceImpl.REPLAYED_HEADER));
+        assertEquals(2, payments.get());
+        verify(transactionManager).commit(transactionStatus);
+    }
+
+    @Test
+    void execute_conflictAtCommit_runsTheActionAgainInANewTransaction() {
+        when(transactionManager.getTransaction(any())).thenReturn(transactionStatus);
+        doThrow(new OptimisticLockingFailureException("loan changed")).doNothing().when(transactionManager).commit(transactionStatus);
+
+        ResponseEntity<?> response = idempotencyService.execute("pay-loan", "key-1", request, this::pay);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(2, payments.get());
+        verify(transactionManager, times(2)).getTransaction(any());
+        verify(loanMetrics).recordOptimisticLockConflict("pay-loan");
+        verify(idempotencyRecordRepository, never()).release(anyString());
+    }
+
+    private String captureRequestHash() {
+        ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+        verify(idempotencyRecordRepository).insertClaim(anyString(), hash.capture(), any());
+        return hash.getValue();
+    }
+}
@@ -3,6 +3,12 @@ package com.ing.loan.service;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.ing.loan.amortization.AmortizationEngine;
+import com.ing.loan.amortization.AmortizationMethod;
+import com.ing.loan.amortization.AnnuityAmortization;
+import com.ing.loan.amortization.DecliningBalanceAmortization;
+import com.ing.loan.amortization.FlatAmortization;
+import com.ing.loan.credit.CreditLedger;
 import com.ing.loan.entity.Customer;
 import com.ing.loan.entity.Loan;
 import com.ing.loan.entity.LoanInstallment;
@@ -10,19 +16,35 @@ import com.ing.loan.exception.ErrorCode;
 import com.ing.loan.exception.InsufficientCreditLimitException;
 import com.ing.loan.exception.LoanInstallmentNotFoundException;
 import com.ing.loan.exception.LoanNotFoundException;
+import com.ing.loan.export.OpenWriteTransactions;
+import com.ing.loan.metrics.LoanMetrics;
+import com.ing.loan.money.Money;
+import com.ing.loan.outbox.LoanEvent;
+import com.ing.loan.outbox.Outbox;
 import com.ing.loan.repository.CustomerRepository;
 import com.ing.loan.repository.LoanInstallmentRepository;
 import com.ing.loan.repository.LoanRepository;
+import com.ing.loan.request.LoanFilter;
 import com.ing.loan.request.LoanRequest;
+import com.ing.loan.response.BulkLoanResponse;
+import com.ing.loan.response.LoanInstallmentResponse;
+import com.ing.loan.response.LoanListItemResponse;
+import com.ing.loan.response.LoanPageResponse;
 import com.ing.loan.response.LoanResponse;
+import com.ing.loan.response.LoanSummaryResponse;
+import com.ing.loan.security.LoanOwnershipIndex;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.io.File;
 import java.io.IOException;
@@ -31,6 +53,7 @@ import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -52,6 +75,28 @@ class LoanServiceImplTest {
     @Mock
     private LoanInstallmentRepository loanInstallmentRepository;
 
+    @Mock
+    private LoanMetrics loanMetrics;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private CreditLedger creditLedger;
+
+    @Mock
+    private Outbox outbox;
+
+    @Mock
+    private LoanOwnershipIndex ownershipIndex;
+
+    @Spy
+    private AmortizationEngine amortizationEngine = new AmortizationEngine(
+            List.of(new FlatAmortization(), new AnnuityAmortization(), new DecliningBalanceAmortization()), 100);
+
+    @Mock
+    private OpenWriteTransactions openWriteTransactions;
+
     @InjectMocks
     private LoanServiceImpl loanService;
 
@@ -83,12 +128,11 @@ class LoanServiceImplTest {
         Customer mockCustomer = Customer.builder()
                 .id(1L)
                 .name("John Doe")
-                .creditLimit(BigDecimal.valueOf(500000))
-                .usedCreditLimit(BigDecimal.valueOf(100000))
                 .build();
 
         Loan mockLoan = Loan.builder()
                 .id(1L)
+                .customer(mockCustomer)
                 .loanAmount(BigDecimal.valueOf(10000))
                 .numberOfInstallment(12)
                 .createDate(LocalDate.now())
@@ -96,7 +140,8 @@ class LoanServiceImplTest {
                 .installments(loanInstallments)
                 .build();
 
-        when(customerRepository.findById(anyLong())).thenReturn(Optional.of(mockCustomer));
+        when(creditLedger.tryReserve(eq(1L), any(Money.class))).thenReturn(true);
+        when(customerRepository.getReferenceById(1L)).thenReturn(mockCustomer);
         when(loanRepository.save(any(Loan.class))).thenReturn(mockLoan);
 
         // Invoke the method
@@ -107,9 +152,83 @@ class LoanServiceImplTest {
         assertEquals(12, response.getInstallments().size());
         assertEquals(BigDecimal.valueOf(916.67).setScale(2, RoundingMode.HALF_UP), response.getInstallments().get(0).getAmount());
 
-        // Verify interactions
-        verify(customerRepository, times(1)).findById(1L);
+        // Verify interactions: principal plus 10% interest is reserved from the customer's credit
+        verify(creditLedger, times(1)).tryReserve(1L, Money.of(new BigDecimal("11000")));
         verify(loanRepository, times(1)).save(any(Loan.class));
+        verify(outbox).append(new LoanEvent.LoanCreated(1L, 1L, BigDecimal.valueOf(10000), 12, LocalDate.now()), 0L);
+        verify(ownershipIndex).put(1L, 1L);
+    }
+
+    @Test
+    void testCreateLoan_annuityScheduleAddsUpToLoanAmount() {
+        // Arrange
+        LoanRequest loanRequest = LoanRequest.builder()
+                .customerId(CUSTOMER_ID).loanAmount(BigDecimal.valueOf(10000))
+                .interestRate(BigDecimal.valueOf(0.12)).installments(12)
+                .amortizationMethod(AmortizationMethod.ANNUITY)
+                .build();
+        when(creditLedger.tryReserve(eq(CUSTOMER_ID), any(Money.class))).thenReturn(true);
+        when(customerRepository.getReferenceById(CUSTOMER_ID)).thenReturn(Customer.builder().id(CUSTOMER_ID).build());
+        when(loanRepository.save(any(Loan.class))).thenAnswer(invocation -> {
+            Loan loan = invocation.getArgument(0);
+            loan.setId(LOAN_ID);
+            return loan;
+        });
+
+        // Act
+        LoanResponse response = loanService.createLoan(loanRequest);
+
+        // Assert: equal installments, with the rounding remainder on the last one
+        assertEquals(12, response.getInstallments().size());
+        assertEquals(new BigDecimal("888.48"), response.getInstallments().get(0).getAmount());
+        assertEquals(new BigDecimal("10661.85"), response.getInstallments().stream()
+                .map(LoanInstallmentResponse::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add));
+
+        // The balance summary starts with the whole schedule unpaid
+        ArgumentCaptor<Loan> saved = ArgumentCaptor.forClass(Loan.class);
+        verify(loanRepository).save(saved.capture());
+        assertEquals(0, saved.getValue().getPaidInstallments());
+        assertEquals(new BigDecimal("10661.85"), saved.getValue().getRemainingAmount());
+        assertEquals(response.getInstallments().get(0).getDueDate(), saved.getValue().getNextDueDate());
+        assertEquals(new BigDecimal("888.48"), saved.getValue().getNextDueAmount());
+    }
+
+    @Test
+    void testGetLoanSummary_Success() {
+        // Arrange: a loan with one of three installments paid
+        Loan loan = Loan.builder()
+                .id(LOAN_ID)
+                .customer(Customer.builder().id(CUSTOMER_ID).build())
+                .loanAmount(new BigDecimal("300.00"))
+                .numberOfInstallment(3)
+                .paidInstallments(1)
+                .remainingAmount(new BigDecimal("200.00"))
+                .nextDueDate(LocalDate.of(2025, 3, 1))
+                .nextDueAmount(new BigDecimal("100.00"))
+                .isPaid(false)
+                .build();
+        when(loanRepository.findById(LOAN_ID)).thenReturn(Optional.of(loan));
+
+        // Act
+        LoanSummaryResponse summary = loanService.getLoanSummary(LOAN_ID);
+
+        // Assert: read from the loan row alone, without touching its installments
+        assertEquals(CUSTOMER_ID, summary.getCustomerId());
+        assertEquals(1, summary.getPaidInstallments());
+        assertEquals(new BigDecimal("200.00"), summary.getRemainingAmount());
+        assertEquals(LocalDate.of(2025, 3, 1), summary.getNextDueDate());
+        assertEquals(new BigDecimal("100.00"), summary.getNextDueAmount());
+        verifyNoInteractions(loanInstallmentRepository);
+    }
+
+    @Test
+    void testGetLoanSummary_NotFound() {
+        when(loanRepository.findById(LOAN_ID)).thenReturn(Optional.empty());
+
+        LoanNotFoundException exception = assertThrows(LoanNotFoundException.class,
+                () -> loanService.getLoanSummary(LOAN_ID));
+
+        assertEquals("Loan 1 not found", exception.getMessage());
     }
 
     @Test
@@ -146,27 +265,63 @@ class LoanServiceImplTest {
         Assertions.assertEquals("No loans found for customer with ID: " + CUSTOMER_ID, exception.getMessage());
     }
 
+    @Test
+    void testListLoansPage_returnsCursorWhenMoreLoansExist() {
+        // Arrange: the repository returns one row more than the page size
+        LoanFilter filter = LoanFilter.builder().isPaid(false).build();
+        List<LoanListItemResponse> rows = List.of(
+                LoanListItemResponse.builder().id(11L).build(),
+                LoanListItemResponse.builder().id(12L).build(),
+                LoanListItemResponse.builder().id(13L).build());
+        when(loanRepository.findLoanPage(CUSTOMER_ID, 10L, false, null, null, Limit.of(3))).thenReturn(rows);
+
+        // Act
+        LoanPageResponse page = loanService.listLoansPage(CUSTOMER_ID, filter, 10L, 2);
+
+        // Assert: the extra row is dropped and the cursor points at the last returned loan
+        assertEquals(List.of(11L, 12L), page.getLoans().stream().map(LoanListItemResponse::getId).toList());
+        assertEquals(12L, page.getNextCursor());
+    }
+
+    @Test
+    void testListLoansPage_lastPageHasNoCursor() {
+        // Arrange: no cursor means start from the first loan
+        LoanFilter filter = new LoanFilter();
+        when(loanRepository.findLoanPage(CUSTOMER_ID, 0L, null, null, null, Limit.of(3)))
+                .thenReturn(List.of(LoanListItemResponse.builder().id(11L).build()));
+
+        // Act
+        LoanPageResponse page = loanService.listLoansPage(CUSTOMER_ID, filter, null, 2);
+
+        // Assert
+        assertEquals(1, page.getLoans().size());
+        Assertions.assertNull(page.getNextCursor());
+    }
+
     @Test
     void testListInstallmentsByLoan_Success() {
         // Arrange: Mock repository response
-        LoanInstallment installment = new LoanInstallment();
-        installment.setLoan(Loan.builder().id(LOAN_ID).build());
-        List<LoanInstallment> installments = List.of(installment);
-        Mockito.when(loanInstallmentRepository.findByLoanId(LOAN_ID)).thenReturn(Optional.of(installments));
+        LoanInstallmentResponse installment = LoanInstallmentResponse.builder()
+                .id(1L)
+                .amount(BigDecimal.valueOf(100))
+                .paidAmount(BigDecimal.ZERO)
+                .dueDate(LocalDate.now())
+                .build();
+        Mockito.when(loanInstallmentRepository.findInstallmentResponses(LOAN_ID)).thenReturn(List.of(installment));
 
         // Act: Call the service method
-        List<LoanInstallment> result = loanService.listInstallmentsByLoan(LOAN_ID);
+        List<LoanInstallmentResponse> result = loanService.listInstallmentsByLoan(LOAN_ID);
 
         // Assert: Verify the result and interaction with the mock
         Assertions.assertNotNull(result);
         Assertions.assertEquals(1, result.size());
-        Mockito.verify(loanInstallmentRepository).findByLoanId(LOAN_ID);
+        Mockito.verify(loanInstallmentRepository).findInstallmentResponses(LOAN_ID);
     }
 
     @Test
     void testListInstallmentsByLoan_NotFound() {
-        // Arrange: Mock repository to return empty
-        Mockito.when(loanInstallmentRepository.findByLoanId(LOAN_ID)).thenReturn(Optional.empty());
+        // Arrange: Mock repository to return no rows
+        Mockito.when(loanInstallmentRepository.findInstallmentResponses(LOAN_ID)).thenReturn(List.of());
 
         // Act & Assert: Call the service method and expect an exception
         LoanInstallmentNotFoundException exception = assertThrows(
@@ -186,14 +341,8 @@ class LoanServiceImplTest {
                 .interestRate(BigDecimal.valueOf(0.1)) // 10% interest rate
                 .build();
 
-        Customer mockCustomer = Customer.builder()
-                .id(1L)
-                .name("John Doe")
-                .creditLimit(BigDecimal.valueOf(15000)) // Credit limit
-                .usedCreditLimit(BigDecimal.valueOf(15000)) // Used credit limit (no remaining credit)
-                .build();
-
-        when(customerRepository.findById(anyLong())).thenReturn(Optional.of(mockCustomer));
+        // No remaining credit
+        when(creditLedger.tryReserve(eq(1L), any(Money.class))).thenReturn(false);
 
         // Act & Assert
         InsufficientCreditLimitException exception = assertThrows(
@@ -205,9 +354,69 @@ class LoanServiceImplTest {
 
 
         // Verify interactions
-        verify(customerRepository, times(1)).findById(1L);
+        verify(customerRepository, never()).getReferenceById(anyLong());
         verify(loanRepository, times(0)).save(any(Loan.class)); // Loan should not be saved
+        verify(loanMetrics).recordCreditLimitRejection();
     }
 
+    @Test
+    void testCreateLoans_reportsEveryRow() {
+        // Arrange: one customer with room for a single 11000 loan
+        Customer mockCustomer = Customer.builder()
+                .id(CUSTOMER_ID)
+                .name("John Doe")
+                .creditLimit(BigDecimal.valueOf(20000))
+                .usedCreditLimit(BigDecimal.ZERO)
+                .build();
+
+        LoanRequest accepted = LoanRequest.builder()
+                .customerId(CUSTOMER_ID).loanAmount(BigDecimal.valueOf(10000))
+                .interestRate(BigDecimal.valueOf(0.1)).installments(12)
+                .build();
+        LoanRequest overLimit = LoanRequest.builder()
+                .customerId(CUSTOMER_ID).loanAmount(BigDecimal.valueOf(10000))
+                .interestRate(BigDecimal.valueOf(0.1)).installments(12)
+                .build();
+        LoanRequest unknownCustomer = LoanRequest.builder()
+                .customerId(99L).loanAmount(BigDecimal.valueOf(1000))
+                .interestRate(BigDecimal.valueOf(0.1)).installments(6)
+                .build();
+        LoanRequest invalidInstallments = LoanRequest.builder()
+                .customerId(CUSTOMER_ID).loanAmount(BigDecimal.valueOf(1000))
+                .interestRate(BigDecimal.valueOf(0.1)).installments(15)
+                .build();
+
+        AtomicLong sequence = new AtomicLong(100);
+        when(customerRepository.findAllById(anyIterable())).thenReturn(List.of(mockCustomer));
+        when(creditLedger.tryReserve(eq(CUSTOMER_ID), any(Money.class))).thenReturn(true, false);
+        when(loanRepository.saveAll(anyIterable())).thenAnswer(invocation -> {
+            Iterable<Loan> loans = invocation.getArgument(0);
+            loans.forEach(loan -> loan.setId(sequence.incrementAndGet()));
+            return List.of();
+        });
+
+        // Act
+        BulkLoanResponse response = loanService.createLoans(List.of(accepted, overLimit, unknownCustomer, invalidInstallments));
+
+        // Assert: a single accepted row, the others rejected with their reason
+        assertEquals(1, response.getCreatedCount());
+        assertEquals(3, response.getRejectedCount());
+        assertEquals(101L, response.getResults().get(0).getLoanId());
+        Assertions.assertTrue(response.getResults().get(0).isCreated());
+        assertEquals(ErrorCode.INSUFFICIENT_CREDIT.getCode(), response.getResults().get(1).getErrorCode());
+        assertEquals(ErrorCode.CUSTOMER_NOT_FOUND.getCode(), response.getResults().get(2).getErrorCode());
+        assertEquals(ErrorCode.INVALID_INSTALLMENTS.getCode(), response.getResults().get(3).getErrorCode());
+
+        // Verify the customers were loaded once and the accepted loan was flushed as a batch
+        verify(customerRepository, times(1)).findAllById(anyIterable());
+        verify(customerRepository, never()).findById(anyLong());
+        verify(loanRepository, times(1)).saveAll(anyIterable());
+        verify(entityManager).flush();
+        verify(entityManager).clear();
+        verify(loanMetrics, times(1)).recordCreditLimitRejection();
+        verify(outbox).append(new LoanEvent.LoanCreated(101L, CUSTOMER_ID, new BigDecimal("11000.00"), 12, LocalDate.now()), 0L);
+        verifyNoMoreInteractions(outbox);
+        verify(ownershipIndex).put(101L, CUSTOMER_ID);
+    }
 
-}
\ No newline at end of file
+}
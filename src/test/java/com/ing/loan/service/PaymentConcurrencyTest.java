@@ -0,0 +1,105 @@
+package com.ing.loan.service;
+
+import com.ing.loan.repository.LoanInstallmentRepository;
+import com.ing.loan.request.LoanRequest;
+import com.ing.loan.response.LoanPaymentResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Two payments of the same loan, both reading it before either commits. One of them conflicts on the loan's version
+ * and is retried in a new transaction, where it pays the next installment.
+ * @author Suleyman Yildirim
+ */
+@SpringBootTest
+class PaymentConcurrencyTest {
+
+    @Autowired
+    private LoanService loanService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @SpyBean
+    private LoanInstallmentRepository loanInstallmentRepository;
+
+    @Test
+    void testConcurrentPaymentsOfOneLoanAreRetried() throws Exception {
+        // Arrange: a loan of six equal installments, and both first attempts held until each has read the loan
+        Long loanId = loanService.createLoan(LoanRequest.builder()
+                .customerId(2L)
+                .loanAmount(new BigDecimal("1200.00"))
+                .interestRate(new BigDecimal("0.1"))
+                .installments(6)
+                .build()).getLoanId();
+        BigDecimal installmentAmount = jdbcTemplate.queryForObject(
+                "SELECT MIN(amount) FROM loan_installment WHERE loan_id = ?", BigDecimal.class, loanId);
+        CyclicBarrier bothRead = new CyclicBarrier(2);
+        AtomicInteger reads = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (reads.getAndIncrement() < 2) {
+                bothRead.await(5, TimeUnit.SECONDS);
+            }
+            return invocation.callRealMethod();
+        }).when(loanInstallmentRepository).findPayableInstallments(anyLong(), any(LocalDate.class));
+        double conflictsBefore = count("loan.optimistic-lock.conflicts");
+        double exhaustedBefore = count("loan.optimistic-lock.retries.exhausted");
+        DistributionSummary installmentsPaid = meterRegistry.get("loan.payment.installments.paid").summary();
+        long paymentsBefore = installmentsPaid.count();
+        double installmentsBefore = installmentsPaid.totalAmount();
+
+        // Act
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<LoanPaymentResponse> first = executor.submit(() -> paymentService.payLoan(loanId, installmentAmount));
+            Future<LoanPaymentResponse> second = executor.submit(() -> paymentService.payLoan(loanId, installmentAmount));
+
+            // Assert: each payment applied exactly once, the loser after a retry
+            assertEquals(1, first.get(10, TimeUnit.SECONDS).getPaidInstallments());
+            assertEquals(1, second.get(10, TimeUnit.SECONDS).getPaidInstallments());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM loan_installment WHERE loan_id = ? AND is_paid = TRUE", Integer.class, loanId));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT paid_installments FROM loan WHERE id = ?", Integer.class, loanId));
+        assertTrue(reads.get() > 2, "the conflicting payment is read again by its retry");
+        assertTrue(count("loan.optimistic-lock.conflicts") > conflictsBefore);
+        assertEquals(exhaustedBefore, count("loan.optimistic-lock.retries.exhausted"));
+        // The attempt rolled back by the conflict is not counted
+        assertEquals(paymentsBefore + 2, installmentsPaid.count());
+        assertEquals(installmentsBefore + 2, installmentsPaid.totalAmount());
+    }
+
+    private double count(String name) {
+        Counter counter = meterRegistry.find(name).tag("operation", "loan.payment").counter();
+        return counter != null ? counter.count() : 0;
+    }
+}
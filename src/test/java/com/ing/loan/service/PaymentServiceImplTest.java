@@ -1,14 +1,21 @@
 package com.ing.loan.service;
 
+import com.ing.loan.credit.CreditLedger;
 import com.ing.loan.entity.Customer;
 import com.ing.loan.entity.Loan;
 import com.ing.loan.entity.LoanInstallment;
 import com.ing.loan.exception.ErrorCode;
 import com.ing.loan.exception.LoanInstallmentNotFoundException;
 import com.ing.loan.exception.LoanNotFoundException;
-import com.ing.loan.repository.CustomerRepository;
+import com.ing.loan.export.OpenWriteTransactions;
+import com.ing.loan.metrics.LoanMetrics;
+import com.ing.loan.money.Money;
+import com.ing.loan.outbox.LoanEvent;
+import com.ing.loan.outbox.Outbox;
 import com.ing.loan.repository.LoanInstallmentRepository;
 import com.ing.loan.repository.LoanRepository;
+import com.ing.loan.repository.PayableInstallment;
+import com.ing.loan.repository.UnpaidInstallment;
 import com.ing.loan.response.LoanPaymentResponse;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,14 +23,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.temporal.TemporalAdjusters;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
@@ -34,11 +44,20 @@ class PaymentServiceImplTest {
     private LoanRepository loanRepository;
 
     @Mock
-    private CustomerRepository customerRepository;
+    private CreditLedger creditLedger;
 
     @Mock
     private LoanInstallmentRepository loanInstallmentRepository;
 
+    @Mock
+    private LoanMetrics loanMetrics;
+
+    @Mock
+    private Outbox outbox;
+
+    @Mock
+    private OpenWriteTransactions openWriteTransactions;
+
     @InjectMocks
     private PaymentServiceImpl paymentService;
 
@@ -88,6 +107,9 @@ class PaymentServiceImplTest {
         loan = Loan.builder()
                 .id(1L)
                 .loanAmount(BigDecimal.valueOf(10000))
+                .numberOfInstallment(3)
+                .remainingAmount(new BigDecimal("300.00"))
+                .version(3L)
                 .isPaid(false)
                 .customer(customer)
                 .installments(Arrays.asList(installment1, installment2, installment3))
@@ -97,27 +119,110 @@ class PaymentServiceImplTest {
     @Test
     void payLoan_successfulPayment() {
         // Mock repository behavior
-        when(loanRepository.findById(1L)).thenReturn(Optional.of(loan));
-        when(loanInstallmentRepository.findByLoanId(1L)).thenReturn(Optional.of(Arrays.asList(installment1, installment2, installment3)));
+        when(loanRepository.findVersionedById(1L)).thenReturn(Optional.of(loan));
+        when(loanInstallmentRepository.findPayableInstallments(eq(1L), any(LocalDate.class))).thenReturn(payable(installment1, installment2, installment3));
+        when(loanInstallmentRepository.markPaid(List.of(1L, 2L), LocalDate.now())).thenReturn(2);
+        when(loanInstallmentRepository.findEarliestUnpaid(1L, Limit.of(1)))
+                .thenReturn(List.of(new UnpaidInstallment(1L, 3L, new BigDecimal("100.00"), installment3.getDueDate())));
 
         // Call the method under test
         LoanPaymentResponse response = paymentService.payLoan(1L, BigDecimal.valueOf(200));
 
         // Verify installment updates
         assertEquals(2, response.getPaidInstallments());
-        assertEquals(BigDecimal.valueOf(200), response.getTotalAmountSpent());
+        assertEquals(new BigDecimal("200.00"), response.getTotalAmountSpent());
         assertEquals(false, response.isLoanPaid());
 
-        // Verify repository interactions
-        verify(loanInstallmentRepository).saveAll(Arrays.asList(installment1, installment2));
+        // Verify the balance summary now points at the third installment
+        assertEquals(2, loan.getPaidInstallments());
+        assertEquals(new BigDecimal("100.00"), loan.getRemainingAmount());
+        assertEquals(installment3.getDueDate(), loan.getNextDueDate());
+        assertEquals(new BigDecimal("100.00"), loan.getNextDueAmount());
+
+        // Verify repository interactions: one select, one bounded update, no per-installment saves
+        verify(loanInstallmentRepository).markPaid(List.of(1L, 2L), LocalDate.now());
+        verify(loanInstallmentRepository).findEarliestUnpaid(1L, Limit.of(1));
+        verify(loanRepository).save(loan);
+        verify(loanMetrics).recordInstallmentsPaidOnCommit(2);
+        verify(outbox).append(new LoanEvent.InstallmentPaid(1L, 1L, new BigDecimal("100.00"), LocalDate.now()), 4L);
+        verify(outbox).append(new LoanEvent.InstallmentPaid(1L, 2L, new BigDecimal("100.00"), LocalDate.now()), 4L);
+        verifyNoMoreInteractions(loanInstallmentRepository, loanRepository, creditLedger, outbox);
+    }
+
+    @Test
+    void payLoan_lastInstallmentsPaysOffLoan() {
+        // Mock repository behavior
+        when(loanRepository.findVersionedById(1L)).thenReturn(Optional.of(loan));
+        when(loanInstallmentRepository.findPayableInstallments(eq(1L), any(LocalDate.class))).thenReturn(payable(installment3));
+        when(loanInstallmentRepository.markPaid(List.of(3L), LocalDate.now())).thenReturn(1);
+        // The first two installments were paid earlier
+        loan.setPaidInstallments(2);
+        loan.setRemainingAmount(new BigDecimal("100.00"));
+
+        // Call the method under test
+        LoanPaymentResponse response = paymentService.payLoan(1L, BigDecimal.valueOf(150));
+
+        // Verify the loan is closed and the customer's credit is released
+        assertEquals(1, response.getPaidInstallments());
+        assertEquals(new BigDecimal("100.00"), response.getTotalAmountSpent());
+        assertEquals(true, response.isLoanPaid());
+        assertEquals(true, loan.getIsPaid());
+        assertEquals(3, loan.getPaidInstallments());
+        assertEquals(new BigDecimal("0.00"), loan.getRemainingAmount());
+        assertNull(loan.getNextDueDate());
+        verify(loanInstallmentRepository, never()).findEarliestUnpaid(anyLong(), any(Limit.class));
+        verify(creditLedger).release(1L, Money.of(BigDecimal.valueOf(10000)));
+        verify(outbox).append(new LoanEvent.LoanFullyPaid(1L, 1L, loan.getLoanAmount(), LocalDate.now()), 4L);
         verify(loanRepository).save(loan);
-        verifyNoMoreInteractions(loanInstallmentRepository, loanRepository, customerRepository);
+    }
+
+    @Test
+    void payLoan_amountBelowInstallmentPaysNothing() {
+        // Mock repository behavior
+        when(loanRepository.findVersionedById(1L)).thenReturn(Optional.of(loan));
+        when(loanInstallmentRepository.findPayableInstallments(eq(1L), any(LocalDate.class))).thenReturn(payable(installment1, installment2));
+
+        // Call the method under test
+        LoanPaymentResponse response = paymentService.payLoan(1L, BigDecimal.valueOf(50));
+
+        // Verify nothing is updated
+        assertEquals(0, response.getPaidInstallments());
+        assertEquals(false, response.isLoanPaid());
+        verify(loanInstallmentRepository, never()).markPaid(anyCollection(), any(LocalDate.class));
+        verify(loanInstallmentRepository, never()).findEarliestUnpaid(anyLong(), any(Limit.class));
+        assertEquals(0, loan.getPaidInstallments());
+        verifyNoInteractions(outbox);
+    }
+
+    @Test
+    void payableCount_lastInstallmentCarriesRemainder() {
+        // The last installment of a schedule can be a few cents larger than the others
+        List<PayableInstallment> installments = List.of(
+                new PayableInstallment(1L, new BigDecimal("183.33")),
+                new PayableInstallment(2L, new BigDecimal("183.35")));
+
+        assertEquals(1, PaymentServiceImpl.payableCount(Money.of(new BigDecimal("366.67")), installments));
+        assertEquals(2, PaymentServiceImpl.payableCount(Money.of(new BigDecimal("366.68")), installments));
+    }
+
+    @Test
+    void payLoan_fractionOfACentShortPaysNothing() {
+        // Mock repository behavior
+        when(loanRepository.findVersionedById(1L)).thenReturn(Optional.of(loan));
+        when(loanInstallmentRepository.findPayableInstallments(eq(1L), any(LocalDate.class)))
+                .thenReturn(List.of(new PayableInstallment(1L, new BigDecimal("183.33"))));
+
+        // Half a cent short of the installment
+        LoanPaymentResponse response = paymentService.payLoan(1L, new BigDecimal("183.325"));
+
+        assertEquals(0, response.getPaidInstallments());
+        verify(loanInstallmentRepository, never()).markPaid(anyCollection(), any(LocalDate.class));
     }
 
     @Test
     void payLoan_loanNotFound() {
         // Mock repository behavior
-        when(loanRepository.findById(1L)).thenReturn(Optional.empty());
+        when(loanRepository.findVersionedById(1L)).thenReturn(Optional.empty());
 
         // Verify exception thrown
         LoanNotFoundException exception = assertThrows(
@@ -129,19 +234,17 @@ class PaymentServiceImplTest {
         assertEquals(ErrorCode.LOAN_NOT_FOUND, exception.getErrorCode());
 
         // Verify no interactions with other repositories
-        verifyNoInteractions(customerRepository, loanInstallmentRepository);
+        verifyNoInteractions(creditLedger, loanInstallmentRepository, outbox);
     }
 
     @Test
     void payLoan_failPaymentBeyondThreeMonths() {
-        // Adjust installment3 due date beyond 3 months
-        installment1.setDueDate(LocalDate.now().plusMonths(3).with(TemporalAdjusters.lastDayOfMonth()).plusDays(1));
-        installment2.setDueDate(LocalDate.now().plusMonths(4));
-        installment3.setDueDate(LocalDate.now().plusMonths(4));
+        // Installments due after the end of the third month are filtered out by the query
+        LocalDate maxDueDate = LocalDate.now().plusMonths(3).with(TemporalAdjusters.lastDayOfMonth());
 
         // Mock repository behavior
-        when(loanRepository.findById(1L)).thenReturn(Optional.of(loan));
-        when(loanInstallmentRepository.findByLoanId(1L)).thenReturn(Optional.of(Arrays.asList(installment1, installment2, installment3)));
+        when(loanRepository.findVersionedById(1L)).thenReturn(Optional.of(loan));
+        when(loanInstallmentRepository.findPayableInstallments(1L, maxDueDate)).thenReturn(List.of());
 
         // Call the method under test
         LoanInstallmentNotFoundException exception = assertThrows(
@@ -153,12 +256,15 @@ class PaymentServiceImplTest {
         assertEquals("No valid installments found for loan 1", exception.getMessage());
 
         // Verify no updates to repositories
-        verifyNoInteractions(customerRepository);
-        verify(loanInstallmentRepository, times(0)).saveAll(anyList());
+        verifyNoInteractions(creditLedger, outbox);
+        verify(loanInstallmentRepository, times(0)).markPaid(anyCollection(), any(LocalDate.class));
         verify(loanRepository, times(0)).save(any(Loan.class));
     }
 
-
-
+    private static List<PayableInstallment> payable(LoanInstallment... installments) {
+        return Arrays.stream(installments)
+                .map(installment -> new PayableInstallment(installment.getId(), installment.getAmount()))
+                .toList();
+    }
 
 }